@@ -51,6 +51,9 @@ dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-security")
 	implementation("org.springframework.boot:spring-boot-starter-oauth2-client")
 	implementation("org.springframework.boot:spring-boot-starter-oauth2-resource-server")
+	implementation("org.springframework.boot:spring-boot-starter-rsocket")
+	implementation("org.springframework.security:spring-security-rsocket")
+	implementation("org.springframework.security:spring-security-messaging")
 
 	implementation("org.springframework.cloud:spring-cloud-starter-netflix-eureka-client") {
 		exclude(group = "org.springframework.cloud", module = "spring-cloud-starter-ribbon")
@@ -77,6 +80,9 @@ dependencies {
 	implementation("com.fasterxml.jackson.module:jackson-module-kotlin")
 	implementation("com.fasterxml.jackson.datatype:jackson-datatype-jsr310")
 	implementation("com.fasterxml.jackson.datatype:jackson-datatype-jdk8")
+	implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
+	implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile")
+	// ^ binary content negotiation (application/cbor and application/x-jackson-smile)
 
 	implementation("com.ailegorreta:ailegorreta-kit-commons-utils:${property("ailegorreta-kit-version")}")
 	implementation("com.ailegorreta:ailegorreta-kit-resource-server-security:${property("ailegorreta-kit-version")}")
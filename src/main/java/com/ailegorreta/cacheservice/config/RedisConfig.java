@@ -25,6 +25,10 @@ package com.ailegorreta.cacheservice.config;
 import com.ailegorreta.cacheservice.model.DocumentType;
 import com.ailegorreta.cacheservice.model.SystemDate;
 import com.ailegorreta.cacheservice.model.SystemRate;
+import com.ailegorreta.cacheservice.repository.TrackedHashCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -32,8 +36,10 @@ import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisOperations;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -114,4 +120,40 @@ public class RedisConfig {
 
         return new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
     }
+
+    /**
+     * The entries of the configured catalogs (see CatalogCacheService) are plain JSON objects, without type
+     * information.
+     */
+    @Bean
+    public ReactiveRedisOperations<String, ObjectNode> redisOperationsCatalog(LettuceConnectionFactory connectionFactory,
+                                                                              ObjectMapper mapper) {
+        RedisSerializationContext<String, ObjectNode> serializationContext = RedisSerializationContext
+                .<String, ObjectNode>newSerializationContext(new StringRedisSerializer())
+                .key(new StringRedisSerializer())
+                .value(new Jackson2JsonRedisSerializer<>(mapper, ObjectNode.class))
+                .hashKey(new StringRedisSerializer())
+                .hashValue(new Jackson2JsonRedisSerializer<>(mapper, ObjectNode.class))
+                .build();
+
+        return new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
+    }
+
+    /**
+     * Plain String operations for the Redis keys that are not catalogs (e.g., the catalog loader leases).
+     *
+     * note: the bean name is the same as the Spring Boot auto-configuration so only one instance is created.
+     */
+    @Bean
+    public ReactiveStringRedisTemplate reactiveStringRedisTemplate(LettuceConnectionFactory connectionFactory) {
+        return new ReactiveStringRedisTemplate(connectionFactory);
+    }
+
+    /**
+     * Local copy of the catalog hash reads, used just if the client-side caching is enabled (see RedisClientTracking).
+     */
+    @Bean
+    public TrackedHashCache trackedHashCache(MeterRegistry meterRegistry) {
+        return new TrackedHashCache(meterRegistry);
+    }
 }
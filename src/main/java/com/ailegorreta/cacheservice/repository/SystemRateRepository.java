@@ -23,12 +23,11 @@
 package com.ailegorreta.cacheservice.repository;
 
 import com.ailegorreta.cacheservice.model.SystemRate;
-import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Mono;
 
 /**
  * SystemRateRepository redis repository. This repository is a CRUD reactive repository. Since Redis reactive does not
- * support reactive CRUD repositories we implemented one (i.e., DocumentTypeRepositoryImp
+ * support reactive CRUD repositories we implemented one (i.e., SystemRateRepositoryImpl, see ReactiveCatalogRepository)
  *
  * note : redis does not support reactive repositories (and will not) because:
  * https://github.com/spring-projects/spring-data-redis/issues/1405
@@ -40,7 +39,7 @@ import reactor.core.publisher.Mono;
  * @author rlh
  * @date September 2023
  */
-public interface SystemRateRepository extends ReactiveCrudRepository<SystemRate, String> {
+public interface SystemRateRepository extends CatalogRepository<SystemRate> {
 
     /* These two extra methods is because the SystemRate name is unique */
     Mono<SystemRate> findByName(String name);
@@ -23,157 +23,96 @@
 package com.ailegorreta.cacheservice.repository.impl;
 
 import com.ailegorreta.cacheservice.model.SystemRate;
+import com.ailegorreta.cacheservice.repository.CatalogIndex;
+import com.ailegorreta.cacheservice.repository.HotKeyCache;
+import com.ailegorreta.cacheservice.repository.HotKeys;
+import com.ailegorreta.cacheservice.repository.ReactiveCatalogRepository;
 import com.ailegorreta.cacheservice.repository.SystemRateRepository;
-import org.reactivestreams.Publisher;
+import com.ailegorreta.cacheservice.repository.TrackedHashCache;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.DuplicateKeyException;
-import org.springframework.dao.OptimisticLockingFailureException;
-import org.springframework.data.redis.core.ReactiveHashOperations;
 import org.springframework.data.redis.core.ReactiveRedisOperations;
 import org.springframework.stereotype.Repository;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
-import java.util.UUID;
+import java.util.List;
 
 /**
- * Implementation for the CRUD reactive repository for SystemRates
+ * Implementation for the CRUD reactive repository for SystemRates. The name is a unique index, see
+ * ReactiveCatalogRepository.
+ *
+ * The hot rates (the most read names) are kept in memory, see HotKeyCache. The in-memory copy of a rate is
+ * invalidated when it is saved or deleted.
  *
  * @project: cache-service
  * @author rlh
  * @date: September 2023
  */
 @Repository("systemRateRepositoryImpl")
-public class SystemRateRepositoryImpl implements SystemRateRepository {
+public class SystemRateRepositoryImpl extends ReactiveCatalogRepository<SystemRate> implements SystemRateRepository {
 
     private final static String KEY = "SYSTEM_RATE";
-    private final static String REDIS_PREFIX = "_R";
-    private final ReactiveRedisOperations<String, SystemRate> redisOperations;
-    private final ReactiveHashOperations<String, String, SystemRate> hashOperations;
+    private final static String NAME = "name";
+    private final HotKeyCache<SystemRate> hotRates;         // null if the hot keys are disabled
 
     @Autowired
-    public SystemRateRepositoryImpl(ReactiveRedisOperations<String, SystemRate> redisOperations) {
-        this.redisOperations = redisOperations;
-        this.hashOperations = redisOperations.opsForHash();
+    public SystemRateRepositoryImpl(ReactiveRedisOperations<String, SystemRate> redisOperations, HotKeys hotKeys,
+                                    TrackedHashCache trackedCache) {
+        super(redisOperations, KEY, List.of(new CatalogIndex<>(NAME, SystemRate::getName)), trackedCache);
+        this.hotRates = hotKeys.cache(KEY);
     }
 
     @Override
-    public Mono<SystemRate> findById(String id) {
-        return hashOperations.get(KEY, id);
-    }
+    protected String id(SystemRate systemRate) { return systemRate.getId(); }
+    @Override
+    protected void assignId(SystemRate systemRate, String id) { systemRate.setId(id); }
+    @Override
+    protected int version(SystemRate systemRate) { return systemRate.getVersion(); }
+    @Override
+    protected void version(SystemRate systemRate, int version) { systemRate.setVersion(version); }
 
     @Override
-    public Flux<SystemRate> findAll() {
-        return hashOperations.values(KEY);
+    protected SystemRate copy(SystemRate systemRate) {
+        return new SystemRate(systemRate.getId(), systemRate.getName(), systemRate.getRate(), systemRate.getVersion());
     }
 
     @Override
-    public Mono<SystemRate> save(SystemRate systemRate) {
+    protected String validate(SystemRate systemRate) {
         if (systemRate.getName().isEmpty() || systemRate.getRate().equals(BigDecimal.ZERO))
-            return Mono.error(new IllegalArgumentException("Cannot be saved: name and rate are required, but one or both is empty."))
-                    .thenReturn(systemRate);
-
-        if (systemRate.getId() == null || systemRate.getId().toString().isEmpty() ||
-            (!systemRate.getId().toString().startsWith(REDIS_PREFIX))) {
-
-            String systemRateId = REDIS_PREFIX + UUID.randomUUID().toString().replaceAll("-", "");
-                                    /* ^ This is not the UUID came from the param-service, we add a prefix REDIS_PREFIX ("_R") */
-            systemRate.setId(systemRateId);
-            systemRate.setVersion(0);
-
-            return Mono.defer(() -> addOrUpdateSystemRate(systemRate, existsByName(systemRate.getName())));
-        } else {
-            return findById(systemRate.getId())
-                    .flatMap(r -> {
-                        if (r.getVersion() != systemRate.getVersion()) {
-                            return Mono.error(
-                                    new OptimisticLockingFailureException(
-                                            "This record has already been updated earlier by another object."));
-                        } else {
-                            systemRate.setVersion(systemRate.getVersion() + 1);
-
-                            return Mono.defer(() -> {
-                                Mono<Boolean> exists = Mono.just(false);
-
-                                if (!r.getName().equals(systemRate.getName())) {
-                                    exists = existsByName(systemRate.getName());
-                                }
-
-                                return addOrUpdateSystemRate(systemRate, exists);
-                            });
-                        }
-                    })
-                    .switchIfEmpty(Mono.defer(() -> addOrUpdateSystemRate(systemRate, existsByName(systemRate.getName()))));
-        }
+            return "name and rate are required, but one or both is empty.";
+
+        return null;
     }
 
     @Override
     public Mono<SystemRate> findByName(String name) {
-        return hashOperations.values(KEY)
-                            .filter(d -> d.getName().equals(name))
-                            .singleOrEmpty();
-    }
+        if (hotRates == null)
+            return findByIndex(NAME, name);
 
-    @Override
-    public Mono<Boolean> existsById(String id) { return hashOperations.hasKey(KEY, id); }
-    @Override
-    public Mono<Boolean> existsByName(String name) { return findByName(name).hasElement(); }
-    @Override
-    public Mono<Long> count() { return hashOperations.values(KEY).count(); }
-    @Override
-    public Mono<Void> deleteAll() { return hashOperations.delete(KEY).then(); }
-    @Override
-    public Mono<Void> delete(SystemRate systemRate) {
-        return hashOperations.remove(KEY, systemRate.getId()).then();
-    }
-    @Override
-    public Mono<Void> deleteById(String id) { return hashOperations.remove(KEY, id).then(); }
-    @Override
-    public <S extends SystemRate> Flux<S> saveAll(Iterable<S> iterable) {
-        return (Flux<S>) Flux.fromIterable(iterable).flatMap(d -> save(d));
-    }
-    @Override
-    public Mono<Void> deleteAll(Iterable<? extends SystemRate> iterable) {
-        Flux.fromIterable(iterable).flatMap(d -> delete(d));
+        SystemRate hot = hotRates.get(name);
+
+        if (hot != null)
+            return Mono.just(copy(hot));        // a copy, the callers modify it (e.g. to update its rate)
 
-        return Mono.empty();
+        return Mono.defer(() -> {
+            long stamp = hotRates.stamp(name);      // before the read, a write meanwhile discards the value read
+
+            return findByIndex(NAME, name).doOnNext(systemRate -> hotRates.put(name, copy(systemRate), stamp));
+        });
     }
 
-    /**
-     * These methods are not implemented because teh service does not need them. But can be extended if in the
-     * future the service need them.
-     */
-    @Override
-    public Mono<Void> deleteAllById(Iterable<? extends String> strings) { return null; }
-    @Override
-    public <S extends SystemRate> Flux<S> saveAll(Publisher<S> publisher) { return null; }
-    @Override
-    public Mono<SystemRate> findById(Publisher<String> publisher) { return null; }
     @Override
-    public Mono<Boolean> existsById(Publisher<String> publisher) { return null; }
-    @Override
-    public Flux<SystemRate> findAllById(Iterable<String> iterable) { return null; }
-    @Override
-    public Flux<SystemRate> findAllById(Publisher<String> publisher) { return null; }
-    @Override
-    public Mono<Void> deleteById(Publisher<String> publisher) { return null; }
-    @Override
-    public Mono<Void> deleteAll(Publisher<? extends SystemRate> publisher) { return null; }
-
+    public Mono<Boolean> existsByName(String name) { return findByName(name).hasElement(); }
 
     /**
-     * Private utility method to add new DocumentType if not exist with name
+     * The in-memory copies of the changed rates are evicted (all of them if the whole catalog changed).
      */
-    private Mono<SystemRate> addOrUpdateSystemRate(SystemRate systemRate, Mono<Boolean> exists) {
-        return exists.flatMap(exist -> {
-                    if (exist)
-                        return Mono.error(new DuplicateKeyException("Duplicate key, Name: " + systemRate.getName() + " exists."));
-                    else
-                        return hashOperations.put(KEY, systemRate.getId(), systemRate)
-                                .map(isSaved -> systemRate);
-                })
-                .thenReturn(systemRate);
+    @Override
+    protected void changed(List<? extends SystemRate> systemRates) {
+        if (hotRates == null) return;
+        if (systemRates == null)
+            hotRates.invalidateAll();
+        else
+            systemRates.forEach(systemRate -> hotRates.invalidate(systemRate.getName()));
     }
-
 }
@@ -0,0 +1,80 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogProperties.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.config
+
+import org.springframework.boot.context.properties.ConfigurationProperties
+import java.time.DayOfWeek
+
+/**
+ * The additional param-service catalogs cached by configuration (see CatalogCacheService), one entry per catalog
+ * under `cache-service.catalogs`:
+ *
+ *  cache-service:
+ *    catalogs:
+ *      currencies:
+ *        query: allCurrencies         # a query of the graphql folder, or the query text
+ *        key: code                    # unique field used by GET /cache/catalog/currencies/{key}
+ *        indexes: name                # other unique fields (optional)
+ *        event: MONEDA                # the param-service events that contain it invalidate the catalog
+ *
+ * note: the query must answer one list, e.g. `query allCurrencies { currencies { code name } }`.
+ *
+ * The named calendars (see CalendarService) are read from these catalogs, one entry per holiday, under
+ * `cache-service.calendars`:
+ *
+ *  cache-service:
+ *    calendars:
+ *      US:
+ *        catalog: usHolidays          # a catalog of cache-service.catalogs
+ *        field: day                   # the field with the holiday date (yyyy-MM-dd)
+ *        weekend: SATURDAY,SUNDAY     # the days of the week that are not working days
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@ConfigurationProperties(prefix = "cache-service")
+data class CatalogProperties(val catalogs: Map<String, Catalog> = emptyMap(),
+                             val calendars: Map<String, Calendar> = emptyMap()) {
+
+    data class Catalog(val query: String,
+                       val key: String,
+                       val event: String,
+                       val indexes: List<String> = emptyList()) {
+        /**
+         * The name of the query in the GraphqlRequestRegistry, the inline queries are registered with the
+         * catalog name.
+         */
+        fun queryName(catalog: String) = if (isInline()) "$INLINE_PREFIX$catalog" else query
+
+        fun isInline() = query.contains('{')
+    }
+
+    data class Calendar(val catalog: String,
+                        val field: String = "day",
+                        val weekend: List<DayOfWeek> = listOf(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY))
+
+    companion object {
+        const val INLINE_PREFIX = "catalog:"
+    }
+}
@@ -0,0 +1,68 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CodecConfig.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.config
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory
+import com.fasterxml.jackson.dataformat.smile.SmileFactory
+import org.springframework.boot.web.codec.CodecCustomizer
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Configuration
+import org.springframework.http.MediaType
+import org.springframework.http.codec.cbor.Jackson2CborDecoder
+import org.springframework.http.codec.cbor.Jackson2CborEncoder
+import org.springframework.http.codec.json.Jackson2SmileDecoder
+import org.springframework.http.codec.json.Jackson2SmileEncoder
+
+/**
+ * Binary content negotiation. Besides JSON (the default) the REST calls answer CBOR (Accept: application/cbor) and
+ * Smile (Accept: application/x-jackson-smile), both encoded by Jackson with the same configuration (modules, dates,
+ * null inclusion) as the JSON ObjectMapper.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Configuration(proxyBeanMethods = false)
+class CodecConfig {
+
+    @Bean
+    fun binaryCodecsCustomizer(mapper: ObjectMapper) = CodecCustomizer { configurer ->
+        val cbor = cborMapper(mapper)
+        val smile = smileMapper(mapper)
+
+        configurer.customCodecs().register(Jackson2CborEncoder(cbor))
+        configurer.customCodecs().register(Jackson2CborDecoder(cbor))
+        configurer.defaultCodecs().jackson2SmileEncoder(Jackson2SmileEncoder(smile))
+        configurer.defaultCodecs().jackson2SmileDecoder(Jackson2SmileDecoder(smile))
+    }
+
+    companion object {
+        const val APPLICATION_SMILE_VALUE = "application/x-jackson-smile"
+        val APPLICATION_SMILE = MediaType.parseMediaType(APPLICATION_SMILE_VALUE)
+
+        fun cborMapper(mapper: ObjectMapper): ObjectMapper = mapper.copyWith(CBORFactory())
+
+        fun smileMapper(mapper: ObjectMapper): ObjectMapper = mapper.copyWith(SmileFactory())
+    }
+}
@@ -0,0 +1,73 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RSocketSecurityConfig.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.config
+
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Configuration
+import org.springframework.messaging.rsocket.RSocketStrategies
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler
+import org.springframework.security.config.Customizer
+import org.springframework.security.config.annotation.rsocket.EnableRSocketSecurity
+import org.springframework.security.config.annotation.rsocket.RSocketSecurity
+import org.springframework.security.messaging.handler.invocation.reactive.AuthenticationPrincipalArgumentResolver
+import org.springframework.security.rsocket.core.PayloadSocketAcceptorInterceptor
+
+/**
+ * Security of the RSocket endpoint (see CacheRSocketController).
+ *
+ * The client sends its JWT (bearer metadata) in the setup payload. It is validated once, with the same
+ * ReactiveJwtDecoder as the REST calls, and the connection keeps the authentication for all its requests. The routes
+ * need the same scopes as the GET REST calls. The pattern is cache.** because the routes are matched by segments
+ * (separated by '.') and the calendar routes have two, e.g., cache.holiday.US.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableRSocketSecurity
+class RSocketSecurityConfig {
+
+    // @formatter:off
+    @Bean
+    fun rsocketInterceptor(rsocket: RSocketSecurity): PayloadSocketAcceptorInterceptor {
+        rsocket.authorizePayload { authorize -> authorize
+                    .setup().authenticated()
+                    .route("cache.**").hasAnyAuthority(
+                                            "SCOPE_iam.facultad",
+                                            "SCOPE_sys.facultad",
+                                            "SCOPE_acme.facultad")
+                    .anyExchange().authenticated()
+                }
+               .jwt(Customizer.withDefaults())
+
+        return rsocket.build()
+    }
+    // @formatter:on
+
+    @Bean
+    fun messageHandler(strategies: RSocketStrategies) = RSocketMessageHandler().apply {
+        rSocketStrategies = strategies
+        argumentResolverConfigurer.addCustomResolver(AuthenticationPrincipalArgumentResolver())
+    }
+}
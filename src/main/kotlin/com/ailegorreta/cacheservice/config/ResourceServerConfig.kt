@@ -71,6 +71,10 @@ class ResourceServerConfig {
                                                                 "SCOPE_iam.facultad",
                                                                 "SCOPE_sys.facultad",
                                                                 "SCOPE_acme.facultad")
+                .pathMatchers(HttpMethod.POST, "/cache/sysvar/**", "/cache/calendar/**").hasAnyAuthority(
+                                                                "SCOPE_iam.facultad",
+                                                                "SCOPE_sys.facultad",
+                                                                "SCOPE_acme.facultad")
                 .pathMatchers(HttpMethod.POST, "/cache/invalid/**").hasAnyAuthority(
                                                                                 "SCOPE_iam.facultad",
                                                                                 "SCOPE_sys.facultad")
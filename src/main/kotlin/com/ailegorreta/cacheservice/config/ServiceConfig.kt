@@ -24,6 +24,7 @@ package com.ailegorreta.cacheservice.config
 
 import com.ailegorreta.resourceserver.security.config.SecurityServiceConfig
 import org.springframework.beans.factory.annotation.Value
+import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.Configuration
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration
@@ -32,6 +33,7 @@ import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactor
 import org.springframework.data.redis.core.RedisTemplate
 import org.springframework.data.redis.serializer.GenericToStringSerializer
 import org.springframework.stereotype.Component
+import java.time.Duration
 
 
 /**
@@ -44,6 +46,7 @@ import org.springframework.stereotype.Component
  */
 @Component
 @Configuration
+@EnableConfigurationProperties(CatalogProperties::class)
 class ServiceConfig : SecurityServiceConfig {
 
     @Value("\${spring.application.name}")
@@ -52,6 +55,141 @@ class ServiceConfig : SecurityServiceConfig {
     @Value("\${cache-service.testing}")
     val testing = false
 
+    @Value("\${cache-service.loader-lock.lease}")
+    val loaderLockLease: Duration = Duration.ofSeconds(30)
+
+    @Value("\${cache-service.loader-lock.wait}")
+    val loaderLockWait: Duration = Duration.ofSeconds(5)
+
+    @Value("\${cache-service.loader-lock.poll}")
+    val loaderLockPoll: Duration = Duration.ofMillis(50)
+
+    @Value("\${cache-service.param-client.timeout}")
+    val paramClientTimeout: Duration = Duration.ofSeconds(2)
+
+    @Value("\${cache-service.param-client.catalog-timeout}")
+    val paramClientCatalogTimeout: Duration = Duration.ofSeconds(5)
+
+    @Value("\${cache-service.param-client.limit.initial}")
+    val paramClientLimitInitial = 20
+
+    @Value("\${cache-service.param-client.limit.min}")
+    val paramClientLimitMin = 1
+
+    @Value("\${cache-service.param-client.limit.max}")
+    val paramClientLimitMax = 200
+
+    @Value("\${cache-service.param-client.limit.latency-target}")
+    val paramClientLatencyTarget: Duration = Duration.ofMillis(500)
+
+    @Value("\${cache-service.param-client.limit.backoff}")
+    val paramClientLimitBackoff = 0.9
+
+    @Value("\${cache-service.param-client.breaker.failures}")
+    val paramClientBreakerFailures = 5
+
+    @Value("\${cache-service.param-client.breaker.open}")
+    val paramClientBreakerOpen: Duration = Duration.ofSeconds(10)
+
+    @Value("\${cache-service.param-client.breaker.probes}")
+    val paramClientBreakerProbes = 1
+
+    @Value("\${cache-service.param-client.hedge.enabled}")
+    val paramClientHedgeEnabled = false
+
+    @Value("\${cache-service.param-client.hedge.uri}")
+    val paramClientHedgeUri = "http://param-service"
+
+    @Value("\${cache-service.param-client.hedge.percentile}")
+    val paramClientHedgePercentile = 0.95
+
+    @Value("\${cache-service.param-client.hedge.min-delay}")
+    val paramClientHedgeMinDelay: Duration = Duration.ofMillis(50)
+
+    @Value("\${cache-service.param-client.hedge.budget}")
+    val paramClientHedgeBudget = 0.1
+
+    @Value("\${cache-service.changes.replay-size}")
+    val changesReplaySize = 1000
+
+    @Value("\${cache-service.changes.heartbeat}")
+    val changesHeartbeat: Duration = Duration.ofSeconds(10)
+
+    @Value("\${cache-service.jwt-cache.enabled}")
+    val jwtCacheEnabled = true
+
+    @Value("\${cache-service.jwt-cache.max-size}")
+    val jwtCacheMaxSize = 10_000
+
+    @Value("\${cache-service.token-refresh.enabled}")
+    val tokenRefreshEnabled = true
+
+    @Value("\${cache-service.token-refresh.refresh-at}")
+    val tokenRefreshAt = 0.75
+
+    @Value("\${cache-service.token-refresh.jitter}")
+    val tokenRefreshJitter = 0.05
+
+    @Value("\${cache-service.token-refresh.retry}")
+    val tokenRefreshRetry: Duration = Duration.ofSeconds(1)
+
+    @Value("\${cache-service.redis-probe.interval}")
+    val redisProbeInterval: Duration = Duration.ofMillis(500)
+
+    @Value("\${cache-service.redis-probe.timeout}")
+    val redisProbeTimeout: Duration = Duration.ofMillis(200)
+
+    @Value("\${cache-service.redis-probe.failures}")
+    val redisProbeFailures = 2
+
+    @Value("\${cache-service.redis-probe.local-refresh}")
+    val redisLocalRefresh: Duration = Duration.ofSeconds(60)
+
+    @Value("\${cache-service.hot-keys.enabled}")
+    val hotKeysEnabled = true
+
+    @Value("\${cache-service.hot-keys.sample-rate}")
+    val hotKeysSampleRate = 0.125
+
+    @Value("\${cache-service.hot-keys.threshold}")
+    val hotKeysThreshold = 32
+
+    @Value("\${cache-service.hot-keys.max}")
+    val hotKeysMax = 64
+
+    @Value("\${cache-service.hot-keys.decay}")
+    val hotKeysDecay: Duration = Duration.ofSeconds(10)
+
+    @Value("\${cache-service.hot-keys.ttl}")
+    val hotKeysTtl: Duration = Duration.ofSeconds(30)
+
+    @Value("\${cache-service.client-tracking.enabled}")
+    val clientTrackingEnabled = false
+
+    @Value("\${cache-service.client-tracking.prefixes}")
+    val clientTrackingPrefixes = arrayOf("SYSTEM_RATE", "SYSTEM_DATE", "DOCUMENT_TYPE")
+
+    @Value("\${cache-service.rate-filter.enabled}")
+    val rateFilterEnabled = true
+
+    @Value("\${cache-service.rate-filter.fpp}")
+    val rateFilterFpp = 0.01
+
+    @Value("\${cache-service.rate-filter.rebuild}")
+    val rateFilterRebuild: Duration = Duration.ofHours(1)
+
+    @Value("\${cache-service.rate-history.enabled}")
+    val rateHistoryEnabled = true
+
+    @Value("\${cache-service.rate-history.max}")
+    val rateHistoryMax = 5000
+
+    @Value("\${cache-service.calendar-window.from}")
+    val calendarFromYear = 2000
+
+    @Value("\${cache-service.calendar-window.to}")
+    val calendarToYear = 2100
+
     @Value("\${security.clientId}")
     val clientId = "false"
 
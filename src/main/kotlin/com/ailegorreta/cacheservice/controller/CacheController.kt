@@ -22,10 +22,22 @@
  */
 package com.ailegorreta.cacheservice.controller
 
-import com.ailegorreta.cacheservice.model.DocumentType
+import com.ailegorreta.cacheservice.config.CodecConfig
+import com.ailegorreta.cacheservice.model.CacheChange
+import com.ailegorreta.cacheservice.model.CalendarAnswer
+import com.ailegorreta.cacheservice.model.CalendarBitmap
+import com.ailegorreta.cacheservice.model.CalendarQuery
 import com.ailegorreta.cacheservice.service.CacheService
+import com.ailegorreta.cacheservice.service.ChangeFeed
 import com.ailegorreta.commons.utils.HasLogger
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
+import org.springframework.http.ResponseEntity
+import org.springframework.http.codec.ServerSentEvent
 import org.springframework.web.bind.annotation.*
+import org.springframework.web.server.ResponseStatusException
+import reactor.core.publisher.Flux
 import reactor.core.publisher.Mono
 import java.math.BigDecimal
 import java.time.LocalDate
@@ -35,6 +47,8 @@ import java.time.LocalDate
  * in the Redis memory database. If exists then the data is returned, else the source microservice is called for the
  * data and stored in Redis database for subsequents calls
  *
+ * The responses are JSON by default, or CBOR and Smile if the client accepts them (see CodecConfig).
+ *
  * @project: cache-service
  * @author: rlh
  * @date: September 2023
@@ -42,9 +56,11 @@ import java.time.LocalDate
 @CrossOrigin
 @RestController
 @RequestMapping("/cache")
-class CacheController(val cacheService: CacheService): HasLogger {
+class CacheController(val cacheService: CacheService,
+                      val encodedCatalogs: EncodedCatalogCache,
+                      val changeFeed: ChangeFeed): HasLogger {
 
-    @GetMapping("/sysvar", produces = ["application/json"])
+    @GetMapping("/sysvar", produces = ["application/json", "application/cbor", CodecConfig.APPLICATION_SMILE_VALUE])
     fun getVariableSystem(@RequestParam(required=true) nombre: String): Mono<BigDecimal> {
         return cacheService.getSystemRate(nombre)
                            .flatMap { systemRate -> Mono.just(systemRate.rate) }
@@ -52,26 +68,140 @@ class CacheController(val cacheService: CacheService): HasLogger {
     }
 
     @GetMapping("/day", produces = ["application/json"])
-    suspend fun getDay(@RequestParam(required=true) days: Int): LocalDate {
+    suspend fun getDay(@RequestParam(required=true) days: Int,
+                       @RequestParam(required=false) calendar: String?): LocalDate {
         logger.debug("Se requiere el dia del calendario despues de : $days dia(s)")
 
-        return cacheService.getDay(days)
+        return calendarRequest { cacheService.getDay(days, calendar) }
     }
 
     @GetMapping("/addday", produces = ["application/json"])
-    suspend fun addDay(@RequestParam(required=true) days: Int): LocalDate {
-        return cacheService.addDay(days)
+    suspend fun addDay(@RequestParam(required=true) days: Int,
+                       @RequestParam(required=false) calendar: String?): LocalDate {
+        return calendarRequest { cacheService.addDay(days, calendar) }
     }
 
     @GetMapping("/holiday", produces = ["application/json"])
-    suspend fun isHoliday(@RequestParam(required=true) day: LocalDate): Boolean {
+    suspend fun isHoliday(@RequestParam(required=true) day: LocalDate,
+                          @RequestParam(required=false) calendar: String?): Boolean {
         logger.debug("Se valida si es festivo $day")
-        return cacheService.isHoliday(day)
+        return calendarRequest { cacheService.isHoliday(day, calendar) }
+    }
+
+    @GetMapping("/workingdays", produces = ["application/json"])
+    suspend fun workingDays(@RequestParam(required=true) from: LocalDate,
+                            @RequestParam(required=true) to: LocalDate,
+                            @RequestParam(required=false) calendar: String?): Long {
+        logger.debug("Se requieren los dias habiles entre $from y $to")
+        return calendarRequest { cacheService.workingDaysBetween(from, to, calendar) }
+    }
+
+    @GetMapping("/holidays", produces = ["application/json"])
+    suspend fun holidays(@RequestParam(required=true) from: LocalDate,
+                         @RequestParam(required=true) to: LocalDate,
+                         @RequestParam(required=false) calendar: String?): List<LocalDate> {
+        logger.debug("Se requieren los dias festivos entre $from y $to")
+        return calendarRequest { cacheService.holidaysBetween(from, to, calendar) }
+    }
+
+    @GetMapping("/nextday", produces = ["application/json"])
+    suspend fun nextDay(@RequestParam(required=false) day: LocalDate?,
+                        @RequestParam(required=false) calendar: String?): LocalDate {
+        return calendarRequest { cacheService.nextWorkingDay(day, calendar) }
+    }
+
+    @GetMapping("/previousday", produces = ["application/json"])
+    suspend fun previousDay(@RequestParam(required=false) day: LocalDate?,
+                            @RequestParam(required=false) calendar: String?): LocalDate {
+        return calendarRequest { cacheService.previousWorkingDay(day, calendar) }
+    }
+
+    /**
+     * All the system dates of the calendar. The response is encoded once per calendar generation.
+     */
+    @GetMapping("/calendar", produces = ["application/json", "application/cbor", CodecConfig.APPLICATION_SMILE_VALUE])
+    suspend fun calendar(@RequestHeader(HttpHeaders.ACCEPT, required = false) accept: String?,
+                         @RequestHeader(HttpHeaders.ACCEPT_ENCODING, required = false) acceptEncoding: String?): ResponseEntity<ByteArray> {
+        val calendar = cacheService.getCalendar()
+
+        return encodedCatalogs.get(CacheService.SYSTEM_DATE_CATALOG, encodedCatalogs.mediaType(accept),
+                                   calendar.generation) { calendar.systemDates }
+                              .response(acceptEncoding)
     }
 
-    @GetMapping("/doctypes", produces = ["application/json"])
-    suspend fun allDocumentTypes(): List<DocumentType> {
-        return cacheService.getDocumentTypes()
+    /**
+     * The calendar of the years as a bitmap (see CalendarBitmap), in JSON (the bits in base64) or binary. The ETag
+     * is the version of the bitmap (the same in every replica), so clients refresh it with a conditional GET.
+     */
+    @GetMapping("/calendar/bitmap", produces = [MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE])
+    suspend fun calendarBitmap(@RequestParam(required=true) from: Int,
+                               @RequestParam(required=false) to: Int?,
+                               @RequestParam(required=false) calendar: String?,
+                               @RequestHeader(HttpHeaders.ACCEPT, required = false) accept: String?,
+                               @RequestHeader(HttpHeaders.IF_NONE_MATCH, required = false) ifNoneMatch: String?): ResponseEntity<Any> {
+        logger.debug("Se requiere el calendario en bits de $from a ${to ?: from}")
+
+        val bitmap = calendarRequest { CalendarBitmap.of(cacheService.getBusinessCalendar(calendar), from, to ?: from) }
+        val binary = runCatching { MediaType.parseMediaTypes(accept) }.getOrDefault(emptyList())
+                              .sortedByDescending { it.qualityValue }
+                              .firstOrNull { it.isCompatibleWith(MediaType.APPLICATION_JSON) ||
+                                             it.isCompatibleWith(MediaType.APPLICATION_OCTET_STREAM) }
+                              ?.let { it.isCompatibleWith(MediaType.APPLICATION_OCTET_STREAM) &&
+                                      !it.isWildcardType } ?: false
+        val eTag = "\"${bitmap.version}${if (binary) "-bin" else ""}\""
+
+        if (ifNoneMatch?.split(',')?.any { it.trim() == eTag } == true)
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build()
+
+        val response = ResponseEntity.ok().eTag(eTag).header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+
+        return if (binary) response.contentType(MediaType.APPLICATION_OCTET_STREAM).body(bitmap.toBinary())
+               else response.contentType(MediaType.APPLICATION_JSON).body(bitmap)
+    }
+
+    /**
+     * Batch calendar queries, a JSON array or NDJSON stream of CalendarQuery. The answers are streamed (NDJSON by
+     * default) in the same order, computed with one calendar snapshot.
+     */
+    @PostMapping("/calendar/batch",
+                 consumes = [MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE],
+                 produces = [MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE])
+    fun calendarBatch(@RequestBody queries: Flux<CalendarQuery>,
+                      @RequestParam(required=false) calendar: String?): Flux<CalendarAnswer> {
+        logger.debug("Se reciben consultas del calendario en lote")
+
+        return cacheService.calendarBatch(queries, calendar)
+                           .onErrorMap(IllegalArgumentException::class.java) {
+                               ResponseStatusException(HttpStatus.BAD_REQUEST, it.message)
+                           }
+    }
+
+    /**
+     * All the document types. The response is encoded once per catalog generation.
+     */
+    @GetMapping("/doctypes", produces = ["application/json", "application/cbor", CodecConfig.APPLICATION_SMILE_VALUE])
+    suspend fun allDocumentTypes(@RequestHeader(HttpHeaders.ACCEPT, required = false) accept: String?,
+                                 @RequestHeader(HttpHeaders.ACCEPT_ENCODING, required = false) acceptEncoding: String?): ResponseEntity<ByteArray> {
+        val generation = cacheService.documentTypesGeneration()
+
+        return encodedCatalogs.get(CacheService.DOCUMENT_TYPE_CATALOG, encodedCatalogs.mediaType(accept),
+                                   generation) {
+                                  val (documentTypes, current) = cacheService.readDocumentTypes()
+
+                                  if (current) documentTypes else EncodedCatalogCache.Uncached(documentTypes)
+                              }
+                              .response(acceptEncoding)
+    }
+
+    /**
+     * Server-Sent Events with the changes of the system rates (with the new rate), system dates and document types.
+     * A client that reconnects sends the Last-Event-ID header and receives the changes it missed.
+     */
+    @GetMapping("/changes", produces = [MediaType.TEXT_EVENT_STREAM_VALUE])
+    fun changes(@RequestHeader("Last-Event-ID", required = false) lastEventId: Long?): Flux<ServerSentEvent<CacheChange>> {
+        logger.debug("Se suscribe a los cambios del caché desde: $lastEventId")
+
+        return changeFeed.changes(lastEventId)
     }
 
     /**
@@ -102,4 +232,14 @@ class CacheController(val cacheService: CacheService): HasLogger {
 
         return LocalDate.now()
     }
+
+    /**
+     * The day math of an unknown calendar, or out of the window of the named calendars, is a bad request.
+     */
+    private inline fun <T> calendarRequest(block: () -> T): T =
+        try {
+            block()
+        } catch (e: IllegalArgumentException) {
+            throw ResponseStatusException(HttpStatus.BAD_REQUEST, e.message)
+        }
 }
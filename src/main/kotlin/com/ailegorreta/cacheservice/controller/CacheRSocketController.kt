@@ -0,0 +1,125 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CacheRSocketController.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.controller
+
+import com.ailegorreta.cacheservice.model.CacheChange
+import com.ailegorreta.cacheservice.model.DocumentType
+import com.ailegorreta.cacheservice.model.SystemRate
+import com.ailegorreta.cacheservice.service.CacheService
+import com.ailegorreta.cacheservice.service.ChangeFeed
+import com.ailegorreta.commons.utils.HasLogger
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.reactor.mono
+import org.springframework.messaging.handler.annotation.DestinationVariable
+import org.springframework.messaging.handler.annotation.MessageMapping
+import org.springframework.messaging.handler.annotation.Payload
+import org.springframework.stereotype.Controller
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.math.BigDecimal
+import java.time.LocalDate
+
+/**
+ * The CacheController operations over RSocket (see spring.rsocket.server). The connections are persistent and
+ * multiplexed, and the JWT is validated once per connection in the setup payload (see RSocketSecurityConfig), so a
+ * lookup does not pay an HTTP request and a JWT validation each time.
+ *
+ * Routes:
+ *  - cache.sysvar    request-response: rate name -> rate.
+ *  - cache.sysvars   request-channel: rate names -> SystemRate (batch lookup), in the same order.
+ *  - cache.day       request-response: days -> day (see CacheService.getDay).
+ *  - cache.addday    request-response: working days -> day (see CacheService.addDay).
+ *  - cache.holiday   request-response: day -> is holiday.
+ *  - cache.holidays  request-channel: days -> is holiday, in the same order.
+ *  - cache.doctypes  request-stream: all the document types.
+ *  - cache.changes   request-stream: the changes after the sequence received (see ChangeFeed).
+ *
+ * The calendar routes use the system calendar. Other calendar is selected appending its name to the route, as the
+ * 'calendar' parameter of the REST endpoints (see CalendarService), e.g., cache.holiday.US or cache.day.system,US.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Controller
+class CacheRSocketController(val cacheService: CacheService,
+                             val changeFeed: ChangeFeed): HasLogger {
+
+    @MessageMapping("cache.sysvar")
+    fun systemRate(name: String): Mono<BigDecimal> = cacheService.getSystemRate(name)
+                                                                 .map { it.rate }
+                                                                 .switchIfEmpty(Mono.just(BigDecimal.ZERO))
+
+    /**
+     * The rates in the order of the names. A name that does not exist (or fails) answers a zero rate, as cache.sysvar,
+     * so it does not end the channel.
+     */
+    @MessageMapping("cache.sysvars")
+    fun systemRates(names: Flux<String>): Flux<SystemRate> =
+        names.flatMapSequential({ name ->
+                                    cacheService.getSystemRate(name)
+                                                .onErrorResume { e ->
+                                                    logger.warn("No se pudo leer la variable $name: ${e.message}")
+                                                    Mono.empty()
+                                                }
+                                                .defaultIfEmpty(SystemRate(name = name))
+                                }, BATCH_CONCURRENCY)
+
+    @MessageMapping("cache.day")
+    suspend fun day(days: Int): LocalDate = cacheService.getDay(days)
+
+    @MessageMapping("cache.day.{calendar}")
+    suspend fun day(@DestinationVariable calendar: String, days: Int): LocalDate = cacheService.getDay(days, calendar)
+
+    @MessageMapping("cache.addday")
+    suspend fun addDay(days: Int): LocalDate = cacheService.addDay(days)
+
+    @MessageMapping("cache.addday.{calendar}")
+    suspend fun addDay(@DestinationVariable calendar: String, days: Int): LocalDate = cacheService.addDay(days, calendar)
+
+    @MessageMapping("cache.holiday")
+    suspend fun isHoliday(day: LocalDate): Boolean = cacheService.isHoliday(day)
+
+    @MessageMapping("cache.holiday.{calendar}")
+    suspend fun isHoliday(@DestinationVariable calendar: String, day: LocalDate): Boolean =
+        cacheService.isHoliday(day, calendar)
+
+    @MessageMapping("cache.holidays")
+    fun holidays(days: Flux<LocalDate>): Flux<Boolean> = holidays(null, days)
+
+    @MessageMapping("cache.holidays.{calendar}")
+    fun holidays(@DestinationVariable calendar: String?, days: Flux<LocalDate>): Flux<Boolean> =
+        days.concatMap { day -> mono { cacheService.isHoliday(day, calendar) } }
+
+    @MessageMapping("cache.doctypes")
+    suspend fun documentTypes(): Flow<DocumentType> = cacheService.getDocumentTypes().asFlow()
+
+    @MessageMapping("cache.changes")
+    fun changes(@Payload(required = false) lastSequence: Long?): Flux<CacheChange> = changeFeed.changes(lastSequence)
+                                                                    .mapNotNull { it.data() }
+
+    companion object {
+        const val BATCH_CONCURRENCY = 32
+    }
+}
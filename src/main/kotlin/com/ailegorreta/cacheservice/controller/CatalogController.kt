@@ -0,0 +1,73 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogController.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.controller
+
+import com.ailegorreta.cacheservice.config.CodecConfig
+import com.ailegorreta.cacheservice.service.CatalogCacheService
+import com.ailegorreta.commons.utils.HasLogger
+import com.fasterxml.jackson.databind.node.ObjectNode
+import org.springframework.http.HttpStatus
+import org.springframework.web.bind.annotation.*
+import org.springframework.web.server.ResponseStatusException
+
+/**
+ * API REST of the catalogs declared in the configuration (see CatalogCacheService). The same cache rules of
+ * CacheController apply: the data is read from Redis, or from the param microservice the first time.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@CrossOrigin
+@RestController
+@RequestMapping("/cache/catalog")
+class CatalogController(val catalogs: CatalogCacheService): HasLogger {
+
+    /**
+     * The names of the configured catalogs.
+     */
+    @GetMapping(produces = ["application/json"])
+    fun names(): Set<String> = catalogs.names()
+
+    @GetMapping("/{name}", produces = ["application/json", "application/cbor", CodecConfig.APPLICATION_SMILE_VALUE])
+    suspend fun catalog(@PathVariable name: String): List<ObjectNode> {
+        logger.debug("Se lee el catálogo $name")
+
+        return catalogs.getAll(checked(name))
+    }
+
+    @GetMapping("/{name}/{key}", produces = ["application/json", "application/cbor", CodecConfig.APPLICATION_SMILE_VALUE])
+    suspend fun entry(@PathVariable name: String, @PathVariable key: String): ObjectNode {
+        logger.debug("Se lee $key del catálogo $name")
+
+        return catalogs.get(checked(name), key)
+                ?: throw ResponseStatusException(HttpStatus.NOT_FOUND, "No $key found in the catalog $name")
+    }
+
+    private fun checked(name: String): String {
+        if (!catalogs.isCatalog(name))
+            throw ResponseStatusException(HttpStatus.NOT_FOUND, "The catalog $name is not configured in cache")
+
+        return name
+    }
+}
@@ -0,0 +1,173 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  EncodedCatalogCache.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.controller
+
+import com.ailegorreta.cacheservice.config.CodecConfig
+import com.ailegorreta.commons.utils.HasLogger
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.springframework.http.HttpHeaders
+import org.springframework.http.InvalidMediaTypeException
+import org.springframework.http.MediaType
+import org.springframework.http.ResponseEntity
+import org.springframework.stereotype.Component
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.GZIPOutputStream
+
+/**
+ * Cache of the encoded responses of the catalog endpoints.
+ *
+ * The catalogs are encoded in JSON, CBOR or Smile according to the Accept header (see CodecConfig). The catalogs
+ * do not change between invalidations, so the response of a catalog is encoded once per catalog generation and media
+ * type, together with its gzip and deflate variants. A request just writes the variant preferred by its
+ * Accept-Encoding header (see EncodedCatalog.response), instead of serializing and compressing the same data again.
+ * The ByteArray is wrapped as a DataBuffer without copying it.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Component
+class EncodedCatalogCache(mapper: ObjectMapper): HasLogger {
+    private val catalogs = ConcurrentHashMap<String, EncodedCatalog>()
+    private val mappers = linkedMapOf(MediaType.APPLICATION_JSON to mapper,
+                                      MediaType.APPLICATION_CBOR to CodecConfig.cborMapper(mapper),
+                                      CodecConfig.APPLICATION_SMILE to CodecConfig.smileMapper(mapper))
+    // ^ in preference order, JSON is the default
+
+    /**
+     * The media type (JSON, CBOR or Smile) of the response for the Accept header. JSON if none is accepted.
+     */
+    fun mediaType(accept: String?): MediaType {
+        val accepted = try {
+            MediaType.parseMediaTypes(accept).sortedByDescending { it.qualityValue }
+        } catch (e: InvalidMediaTypeException) {
+            emptyList()
+        }
+
+        return accepted.filter { it.qualityValue > 0.0 }
+                       .firstNotNullOfOrNull { type -> mappers.keys.find { type.isCompatibleWith(it) } }
+                       ?: MediaType.APPLICATION_JSON
+    }
+
+    /**
+     * Gets the encoded catalog of the generation. If it does not exist 'load' reads the catalog and it is encoded.
+     * The generation must be read before the load, so a load that races an invalidation is never stored as current.
+     *
+     * An empty catalog or an Uncached answer (e.g., the last catalog read because param is down) is encoded for this
+     * request but not stored, otherwise it would be served for the whole generation.
+     */
+    suspend fun get(catalog: String, mediaType: MediaType, generation: Long, load: suspend () -> Any): EncodedCatalog {
+        val key = "$catalog:$mediaType"
+
+        catalogs[key]?.let { if (it.generation == generation) return it }
+
+        val mapper = mappers[mediaType] ?: throw IllegalArgumentException("The media type $mediaType is not supported")
+        val loaded = load()
+        val value = if (loaded is Uncached) loaded.value else loaded
+        val encoded = EncodedCatalog.encode(generation, mediaType, mapper.writeValueAsBytes(value))
+
+        if (loaded is Uncached || (value is Collection<*> && value.isEmpty())) {
+            logger.debug("The catalog {} generation {} is empty or a fallback, it is not cached", catalog, generation)
+
+            return encoded
+        }
+        logger.debug("Encoded the catalog {} generation {} as {}: {} bytes", catalog, generation, mediaType,
+                     encoded.identity.size)
+        catalogs.merge(key, encoded) { old, new -> if (new.generation >= old.generation) new else old }
+
+        return encoded
+    }
+
+    /**
+     * A catalog answered by 'load' that is not the one of the generation, so it must not be cached.
+     */
+    class Uncached(val value: Any)
+
+    /**
+     * Encoded response of a catalog, in JSON, gzip and deflate.
+     */
+    class EncodedCatalog(val generation: Long, val mediaType: MediaType,
+                         val identity: ByteArray, val gzip: ByteArray, val deflate: ByteArray) {
+
+        /**
+         * The response with the variant that the client prefers: the highest q-value and, between the variants with
+         * the same q-value, the smaller one. No encoding (identity) is one of the variants.
+         */
+        fun response(acceptEncoding: String?): ResponseEntity<ByteArray> {
+            val qualities = acceptedEncodings(acceptEncoding)
+            val preference = compareByDescending<Pair<String, ByteArray>> { qualities[it.first] }
+                                 .thenBy { it.second.size }
+            val (encoding, body) = listOf("gzip" to gzip, "deflate" to deflate, IDENTITY to identity)
+                                       .filter { it.first in qualities }
+                                       .minWithOrNull(preference)
+                                       ?: (IDENTITY to identity)            // nothing is accepted, identity anyway
+            val response = ResponseEntity.ok()
+                                         .contentType(mediaType)
+                                         .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+
+            if (encoding != IDENTITY) response.header(HttpHeaders.CONTENT_ENCODING, encoding)
+
+            return response.body(body)
+        }
+
+        companion object {
+            const val IDENTITY = "identity"
+
+            fun encode(generation: Long, mediaType: MediaType, identity: ByteArray): EncodedCatalog {
+                val gzip = ByteArrayOutputStream(identity.size / 4)
+                val deflate = ByteArrayOutputStream(identity.size / 4)
+
+                GZIPOutputStream(gzip).use { it.write(identity) }
+                DeflaterOutputStream(deflate).use { it.write(identity) }
+
+                return EncodedCatalog(generation, mediaType, identity, gzip.toByteArray(), deflate.toByteArray())
+            }
+
+            /**
+             * The q-values of the encodings (gzip, deflate and identity) accepted by the header. A 'q=0' means not
+             * accepted. Identity is accepted unless it is excluded (e.g., 'identity;q=0' or '*;q=0'), if it is not
+             * listed it is as preferred as the best encoding listed, so the smaller of them is sent.
+             */
+            fun acceptedEncodings(acceptEncoding: String?): Map<String, Double> {
+                if (acceptEncoding.isNullOrBlank()) return mapOf(IDENTITY to 1.0)
+
+                val qualities = acceptEncoding.split(',').associate { token ->
+                    val parts = token.split(';').map { it.trim() }
+                    val quality = parts.drop(1)
+                                       .find { it.startsWith("q=") }
+                                       ?.substring(2)?.toDoubleOrNull() ?: 1.0
+
+                    parts[0].lowercase() to quality
+                }
+
+                val best = qualities.values.max()
+
+                return listOf("gzip", "deflate", IDENTITY)
+                           .associateWith { qualities[it] ?: qualities["*"] ?: if (it == IDENTITY) best else 0.0 }
+                           .filterValues { it > 0.0 }
+            }
+        }
+    }
+}
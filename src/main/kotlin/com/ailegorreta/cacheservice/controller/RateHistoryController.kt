@@ -0,0 +1,74 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RateHistoryController.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.controller
+
+import com.ailegorreta.cacheservice.config.CodecConfig
+import com.ailegorreta.cacheservice.model.RateAsOf
+import com.ailegorreta.cacheservice.model.RateAsOfQuery
+import com.ailegorreta.cacheservice.service.RateHistoryService
+import com.ailegorreta.commons.utils.HasLogger
+import org.springframework.http.HttpStatus
+import org.springframework.web.bind.annotation.*
+import org.springframework.web.server.ResponseStatusException
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.math.BigDecimal
+import java.time.LocalDate
+
+/**
+ * API REST of the system rates as of a date (see RateHistoryService). The GET is the same /cache/sysvar of the
+ * CacheController with the 'asOf' parameter.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@CrossOrigin
+@RestController
+@RequestMapping("/cache/sysvar")
+class RateHistoryController(val rateHistory: RateHistoryService): HasLogger {
+
+    /**
+     * The rate as of a date, 404 if the rate has no value as of the date.
+     */
+    @GetMapping(params = ["asOf"], produces = ["application/json", "application/cbor", CodecConfig.APPLICATION_SMILE_VALUE])
+    fun getVariableSystemAsOf(@RequestParam(required=true) nombre: String,
+                              @RequestParam(required=true) asOf: LocalDate): Mono<BigDecimal> {
+        logger.debug("Se requiere la variable $nombre al $asOf")
+
+        return rateHistory.asOf(nombre, asOf)
+                          .switchIfEmpty(Mono.error(ResponseStatusException(HttpStatus.NOT_FOUND,
+                                                                            "No hay historia de $nombre al $asOf")))
+    }
+
+    /**
+     * Batch lookup: many rates and dates in one request, answered in the same order. A rate without value as of its
+     * date is answered with the status NO_HISTORY (see RateAsOf).
+     */
+    @PostMapping("/asof", produces = ["application/json", "application/cbor", CodecConfig.APPLICATION_SMILE_VALUE])
+    fun getVariablesSystemAsOf(@RequestBody queries: List<RateAsOfQuery>): Flux<RateAsOf> {
+        logger.debug("Se requieren ${queries.size} variables a una fecha")
+
+        return rateHistory.asOf(queries)
+    }
+}
@@ -0,0 +1,182 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  BitmapCalendar.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.model
+
+import java.lang.Long.bitCount
+import java.lang.Long.numberOfTrailingZeros
+import java.time.DayOfWeek
+import java.time.LocalDate
+
+/**
+ * A named calendar (or the combination of several ones) as per-day bitmaps over a window of years: one bit per day
+ * set if it is not a working day (its weekend days or a declared holiday) and one bit per declared holiday. A year is
+ * 6 longs per bitmap.
+ *
+ * A combined calendar is the bitwise OR of its calendars: a day is a working day if it is a working day in all of
+ * them. So the weekends need not be Saturday and Sunday, and a combination gets the union of them.
+ *
+ * The 'closed' bitmap keeps the count of closed days before each long, so isHoliday and workingDaysBetween are O(1)
+ * and addWorkingDays is a binary search over the longs (O(log n) with n the days of the window). The days out of the
+ * window are rejected.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+class BitmapCalendar private constructor(val names: List<String>,
+                                         override val generation: Long,
+                                         val from: LocalDate,
+                                         val days: Int,
+                                         private val closed: LongArray,
+                                         private val declared: LongArray) : BusinessCalendar {
+    private val start = from.toEpochDay()
+    private val rank = IntArray(closed.size + 1).also { rank ->
+        closed.forEachIndexed { w, bits -> rank[w + 1] = rank[w] + bitCount(bits) }
+    }
+    private val workingDays = workingBefore(days)
+
+    val name: String
+        get() = names.joinToString(",")
+
+    val to: LocalDate
+        get() = from.plusDays(days - 1L)
+
+    fun contains(day: LocalDate) = day.toEpochDay() - start in 0 until days
+
+    override fun isHoliday(day: LocalDate) = index(day).let { closed[it ushr 6] and (1L shl it) != 0L }
+
+    override fun holidaysBetween(from: LocalDate, to: LocalDate): List<LocalDate> {
+        val first = maxOf(from.toEpochDay() - start, 0L).toInt()
+        val last = minOf(to.toEpochDay() - start, days - 1L).toInt()
+        val holidays = ArrayList<LocalDate>()
+
+        if (first > last) return holidays
+        for (w in (first ushr 6)..(last ushr 6)) {
+            var bits = declared[w]
+
+            if (w == first ushr 6) bits = bits and (-1L shl first)
+            if (w == last ushr 6 && (last and 63) < 63) bits = bits and ((1L shl (last + 1)) - 1)
+            while (bits != 0L) {
+                holidays.add(this.from.plusDays(64L * w + numberOfTrailingZeros(bits)))
+                bits = bits and (bits - 1)
+            }
+        }
+        return holidays
+    }
+
+    override fun addWorkingDays(from: LocalDate, days: Int): LocalDate {
+        val i = index(from)
+
+        if (days == 0) return from
+
+        val k = if (days > 0) workingBefore(i + 1) + days - 1L else workingBefore(i) + days.toLong()
+
+        if (k < 0 || k >= workingDays)
+            throw IllegalArgumentException("$days working days from $from are out of the calendar $name (${this.from} to $to)")
+        return this.from.plusDays(selectWorking(k.toInt()).toLong())
+    }
+
+    override fun workingDaysBetween(from: LocalDate, to: LocalDate): Long {
+        val a = index(from)
+        val b = index(to)
+
+        return if (b >= a) (workingBefore(b + 1) - workingBefore(a + 1)).toLong()
+               else -(workingBefore(a) - workingBefore(b)).toLong()
+    }
+
+    /**
+     * The combination of both calendars (same window): a day is closed if it is closed in any of them.
+     */
+    infix fun or(other: BitmapCalendar): BitmapCalendar {
+        if (other.from != from || other.days != days)
+            throw IllegalArgumentException("The calendars $name and ${other.name} have different windows")
+
+        return BitmapCalendar((names + other.names).distinct().sorted(), maxOf(generation, other.generation), from, days,
+                              LongArray(closed.size) { closed[it] or other.closed[it] },
+                              LongArray(declared.size) { declared[it] or other.declared[it] })
+    }
+
+    private fun index(day: LocalDate): Int {
+        val i = day.toEpochDay() - start
+
+        if (i !in 0 until days) throw IllegalArgumentException("The day $day is out of the calendar $name ($from to $to)")
+        return i.toInt()
+    }
+
+    /**
+     * Number of working days in the days [0, i).
+     */
+    private fun workingBefore(i: Int): Int {
+        val w = i ushr 6
+        val closedBefore = if (i and 63 == 0) rank[w] else rank[w] + bitCount(closed[w] and ((1L shl i) - 1))
+
+        return i - closedBefore
+    }
+
+    /**
+     * The day of the k-th (from 0) working day of the window.
+     */
+    private fun selectWorking(k: Int): Int {
+        var low = 0
+        var high = closed.size - 1
+
+        while (low < high) {                    // the last long with at most k working days before it
+            val mid = (low + high + 1) ushr 1
+
+            if (64 * mid - rank[mid] <= k) low = mid else high = mid - 1
+        }
+
+        var free = closed[low].inv()
+
+        repeat(k - (64 * low - rank[low])) { free = free and (free - 1) }
+        return 64 * low + numberOfTrailingZeros(free)
+    }
+
+    companion object {
+        val WEEKEND: Set<DayOfWeek> = setOf(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY)
+
+        /**
+         * The calendar of the window with its weekend days and declared holidays (the ones out of the window are
+         * ignored).
+         */
+        fun of(name: String, generation: Long, from: LocalDate, days: Int,
+               weekend: Set<DayOfWeek>, holidays: Collection<LocalDate>): BitmapCalendar {
+            val closed = LongArray((days + 63) / 64)
+            val declared = LongArray(closed.size)
+            val firstDay = from.dayOfWeek.value - 1                                   // 0 is Monday
+            val weekendDays = weekend.map { it.value - 1 }.toSet()
+
+            for (i in 0 until days)
+                if ((firstDay + i) % 7 in weekendDays) closed[i ushr 6] = closed[i ushr 6] or (1L shl i)
+            holidays.forEach { day ->
+                val i = day.toEpochDay() - from.toEpochDay()
+
+                if (i in 0 until days) {
+                    declared[(i ushr 6).toInt()] = declared[(i ushr 6).toInt()] or (1L shl i.toInt())
+                    closed[(i ushr 6).toInt()] = closed[(i ushr 6).toInt()] or (1L shl i.toInt())
+                }
+            }
+            return BitmapCalendar(listOf(name), generation, from, days, closed, declared)
+        }
+    }
+}
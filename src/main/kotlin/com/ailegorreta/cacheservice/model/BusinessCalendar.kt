@@ -0,0 +1,71 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  BusinessCalendar.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.model
+
+import java.time.LocalDate
+
+/**
+ * The day math of a calendar: the system calendar (see CalendarSnapshot) or the named and combined calendars (see
+ * BitmapCalendar).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+interface BusinessCalendar {
+    /**
+     * The stamp of the data the calendar was built from, it changes each time the calendar changes.
+     */
+    val generation: Long
+
+    /**
+     * Validate if the date is holiday: is weekend or a holiday is declared.
+     */
+    fun isHoliday(day: LocalDate): Boolean
+
+    /**
+     * The declared holidays from 'from' to 'to' (both inclusive), sorted. Weekends are not listed.
+     */
+    fun holidaysBetween(from: LocalDate, to: LocalDate): List<LocalDate>
+
+    /**
+     * The day after (or before if negative) 'days' working days from the date. With 0 days it is the date itself.
+     */
+    fun addWorkingDays(from: LocalDate, days: Int): LocalDate
+
+    /**
+     * The number of working days passed going from 'from' to 'to': 'to' is counted, 'from' is not. It is negative
+     * if 'to' is before 'from'. So workingDaysBetween(d, addWorkingDays(d, n)) == n.
+     */
+    fun workingDaysBetween(from: LocalDate, to: LocalDate): Long
+
+    /**
+     * The next working day after the date.
+     */
+    fun nextWorkingDay(from: LocalDate) = addWorkingDays(from, 1)
+
+    /**
+     * The previous working day before the date.
+     */
+    fun previousWorkingDay(from: LocalDate) = addWorkingDays(from, -1)
+}
@@ -0,0 +1,56 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CacheChange.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.model
+
+import com.fasterxml.jackson.annotation.JsonInclude
+
+/**
+ * A change notification sent by the /cache/changes events (Server-Sent Events).
+ *
+ * - sequence: the event id. A client that reconnects sends the last one in the Last-Event-ID header.
+ * - catalog: SYSTEM_RATE, SYSTEM_DATE or DOCUMENT_TYPE, or RESET if the client missed changes and must read again
+ *   all the data it keeps.
+ * - key: the changed entry (e.g., the system rate name) or null if the whole catalog changed.
+ * - value: the new value of the entry (e.g., the system rate).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+data class CacheChange(val sequence: Long,
+                       val catalog: String,
+                       val key: String? = null,
+                       val value: String? = null,
+                       val changedAt: Long) {
+
+    companion object {
+        const val RESET = "RESET"
+
+        fun of(invalidation: CacheInvalidation) = CacheChange(sequence = invalidation.sequence,
+                                                              catalog = invalidation.catalog,
+                                                              key = invalidation.key,
+                                                              value = invalidation.value,
+                                                              changedAt = invalidation.sentAt)
+    }
+}
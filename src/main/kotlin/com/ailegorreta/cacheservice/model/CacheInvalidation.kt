@@ -0,0 +1,48 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CacheInvalidation.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.model
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties
+
+/**
+ * Message broadcast to all cache-service replicas (Redis pub/sub) when a catalog or a system rate changed, so every
+ * replica clears or updates its in-memory state.
+ *
+ * - catalog: the Redis catalog that changed (e.g., SYSTEM_RATE, SYSTEM_DATE, DOCUMENT_TYPE).
+ * - key: the changed entry (e.g., the system rate name) or null if the whole catalog changed.
+ * - value: the new value of the entry, if it is a single value (e.g., the system rate).
+ * - sequence: cluster-wide sequence of the change (Redis INCR), the id of the /cache/changes events.
+ * - origin: the replica that processed the change. It does not need to process its own message.
+ * - sentAt: epoch millis when the message was published, used to measure the propagation lag.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+data class CacheInvalidation(val catalog: String,
+                             val key: String? = null,
+                             val value: String? = null,
+                             val sequence: Long = 0,
+                             val origin: String,
+                             val sentAt: Long)
@@ -0,0 +1,134 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CalendarBitmap.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.model
+
+import com.fasterxml.jackson.annotation.JsonIgnore
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+import java.time.LocalDate
+import java.util.Base64
+
+/**
+ * Compact export of the calendar: one bit per day, set if the day is a holiday (weekend or FESTIVO), from the first
+ * of January of the first year to the 31st of December of the last year. Day i of the range is the bit (i and 7) of
+ * the byte (i shr 3). A year is 46 bytes.
+ *
+ * It is also the client helper: a client that checks many days keeps the decoded bitmap (fromBinary or, for the JSON
+ * response, the bits are base64) and asks the cache-service for a new one only when the version changes. The version
+ * is a digest of the range and the bits, the same in every replica (the calendar generation is a counter of each
+ * replica, so it is not exported), and it is the response ETag: a conditional GET answers 304 Not Modified while the
+ * calendar is the same, whichever replica answers it.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@JsonIgnoreProperties(value = ["version"], allowGetters = true)
+data class CalendarBitmap(val from: LocalDate, val days: Int, val bits: ByteArray) {
+
+    @get:JsonIgnore
+    val to: LocalDate
+        get() = from.plusDays(days - 1L)
+
+    fun contains(day: LocalDate) = day.toEpochDay() - from.toEpochDay() in 0 until days
+
+    /**
+     * Validate if the day is a holiday. The day must be in the range of the bitmap.
+     */
+    fun isHoliday(day: LocalDate): Boolean {
+        val i = day.toEpochDay() - from.toEpochDay()
+
+        if (i !in 0 until days) throw IllegalArgumentException("The day $day is not in the calendar from $from to $to")
+        return bits[(i shr 3).toInt()].toInt() and (1 shl (i and 7).toInt()) != 0
+    }
+
+    fun isWorkingDay(day: LocalDate) = !isHoliday(day)
+
+    /**
+     * The binary format: first day as epoch day (8 bytes), number of days (4 bytes) and the bits, big endian.
+     */
+    fun toBinary(): ByteArray = ByteBuffer.allocate(HEADER_SIZE + bits.size)
+                                          .putLong(from.toEpochDay())
+                                          .putInt(days)
+                                          .put(bits)
+                                          .array()
+
+    /**
+     * Cluster wide version: the digest of the range and the bits.
+     */
+    val version: String
+        get() = MessageDigest.getInstance("SHA-256")
+                             .digest(toBinary())
+                             .take(12)
+                             .joinToString("") { "%02x".format(it) }
+
+    override fun equals(other: Any?) = other is CalendarBitmap && from == other.from && days == other.days &&
+                                       bits.contentEquals(other.bits)
+
+    override fun hashCode() = (from.hashCode() * 31 + days) * 31 + bits.contentHashCode()
+
+    companion object {
+        const val HEADER_SIZE = 12
+        const val MAX_YEARS = 100
+
+        /**
+         * The bitmap of the calendar (the system one or a named calendar, see BusinessCalendar) for the years.
+         */
+        fun of(calendar: BusinessCalendar, fromYear: Int, toYear: Int): CalendarBitmap {
+            if (toYear < fromYear || toYear - fromYear >= MAX_YEARS)
+                throw IllegalArgumentException("The years must be a range of 1 to $MAX_YEARS years: $fromYear-$toYear")
+
+            val from = LocalDate.of(fromYear, 1, 1)
+            val to = LocalDate.of(toYear, 12, 31)
+            val days = (to.toEpochDay() - from.toEpochDay() + 1).toInt()
+            val bits = ByteArray((days + 7) / 8)
+            var day = from
+
+            for (i in 0 until days) {
+                if (calendar.isHoliday(day)) bits[i shr 3] = (bits[i shr 3].toInt() or (1 shl (i and 7))).toByte()
+                day = day.plusDays(1)
+            }
+
+            return CalendarBitmap(from, days, bits)
+        }
+
+        fun fromBinary(bytes: ByteArray): CalendarBitmap {
+            val buffer = ByteBuffer.wrap(bytes)
+            val from = LocalDate.ofEpochDay(buffer.getLong())
+            val days = buffer.getInt()
+            val bits = ByteArray(buffer.remaining())
+
+            buffer.get(bits)
+            if (bits.size != (days + 7) / 8)
+                throw IllegalArgumentException("Invalid calendar bitmap: $days days in ${bits.size} bytes")
+
+            return CalendarBitmap(from, days, bits)
+        }
+
+        /**
+         * Decodes the base64 of the binary format (e.g., stored by a client as text).
+         */
+        fun fromBase64(base64: String) = fromBinary(Base64.getDecoder().decode(base64))
+    }
+}
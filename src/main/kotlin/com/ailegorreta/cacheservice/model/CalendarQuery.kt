@@ -0,0 +1,48 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CalendarQuery.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.model
+
+import com.fasterxml.jackson.annotation.JsonInclude
+import java.time.LocalDate
+
+/**
+ * A query of the batch calendar API (see CacheService.calendarBatch):
+ *  - date: the base date, HOY if it is not given. The answer always says if it is a holiday.
+ *  - days: the working day 'days' working days after (or before if negative) the date, as /cache/addday.
+ *  - to:   the number of working days after the date up to 'to' (negative if 'to' is before the date).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+data class CalendarQuery(val date: LocalDate? = null,
+                         val days: Int? = null,
+                         val to: LocalDate? = null)
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+data class CalendarAnswer(val date: LocalDate,
+                          val holiday: Boolean,
+                          val days: Int? = null,
+                          val workingDay: LocalDate? = null,
+                          val to: LocalDate? = null,
+                          val workingDays: Long? = null)
@@ -0,0 +1,154 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CalendarSnapshot.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.model
+
+import java.time.DayOfWeek
+import java.time.LocalDate
+import java.util.Arrays
+
+/**
+ * Immutable snapshot of the system calendar (all the system dates) with its precomputed lookups.
+ *
+ * The CacheService publishes a new snapshot, as a whole, each time the system dates change. So a request always
+ * computes with one consistent calendar (e.g., never a new holiday list with the old HOY).
+ *
+ * The generation is the CacheService calendar generation when the load of this snapshot started. Just the snapshot
+ * with the current generation is valid.
+ *
+ * The working-day math does not iterate day by day: the week days between two dates are computed with a formula and
+ * the holidays declared on week days are counted with a binary search over their sorted epoch days. So any range
+ * operation is O(log n) with n the number of holidays, however far apart the dates are.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+class CalendarSnapshot(override val generation: Long, systemDates: List<SystemDate>) : BusinessCalendar {
+    val systemDates: List<SystemDate> = systemDates.map { it.copy() }
+    val today: LocalDate? = this.systemDates.find { it.name == DayType.HOY }?.day
+    val holidays: Set<LocalDate> = this.systemDates.filter { it.name == DayType.FESTIVO }
+                                                   .mapTo(HashSet()) { it.day }
+    private val byName: Map<DayType, SystemDate> = this.systemDates.filter { it.name != DayType.FESTIVO }
+                                                                   .associateBy { it.name }
+    private val sortedHolidays: LongArray = holidays.map { it.toEpochDay() }.toLongArray().apply { sort() }
+    private val weekdayHolidays: LongArray = sortedHolidays.filter { isWeekday(it) }.toLongArray()
+
+    fun isEmpty() = systemDates.isEmpty()
+
+    fun findByName(name: DayType): SystemDate? = byName[name]
+
+    override fun isHoliday(day: LocalDate) = day.dayOfWeek == DayOfWeek.SATURDAY ||
+                                    day.dayOfWeek == DayOfWeek.SUNDAY ||
+                                    holidays.contains(day)
+
+    override fun holidaysBetween(from: LocalDate, to: LocalDate): List<LocalDate> {
+        if (to.isBefore(from)) return emptyList()
+
+        val first = lowerBound(sortedHolidays, from.toEpochDay())
+        val last = lowerBound(sortedHolidays, to.toEpochDay() + 1)
+
+        return (first until last).map { LocalDate.ofEpochDay(sortedHolidays[it]) }
+    }
+
+    /**
+     * The day is the week day 'days + j' week days away, where j is the number of holidays skipped on the way. The
+     * holidays skipped minus j never increases with j, so j is found with a binary search.
+     */
+    override fun addWorkingDays(from: LocalDate, days: Int): LocalDate {
+        if (days == 0) return from
+
+        val start = from.toEpochDay()
+        var low = 0L
+        var high = if (days > 0) weekdayHolidays.size - lowerBound(weekdayHolidays, start + 1).toLong()
+                   else lowerBound(weekdayHolidays, start).toLong()
+
+        while (low < high) {
+            val j = (low + high) ushr 1
+
+            if (skippedHolidays(start, days, j) <= j) high = j else low = j + 1
+        }
+        return LocalDate.ofEpochDay(addWeekdays(start, if (days > 0) days + low else days - low))
+    }
+
+    override fun workingDaysBetween(from: LocalDate, to: LocalDate): Long {
+        val a = from.toEpochDay()
+        val b = to.toEpochDay()
+
+        return if (b >= a) workingDaysIn(a + 1, b + 1) else -workingDaysIn(b, a)
+    }
+
+    /**
+     * Working days in the epoch days [from, to).
+     */
+    private fun workingDaysIn(from: Long, to: Long) =
+        weekdaysBefore(to) - weekdaysBefore(from) -
+        (lowerBound(weekdayHolidays, to) - lowerBound(weekdayHolidays, from))
+
+    /**
+     * Holidays on week days between the start and the week day 'days + j' (or 'days - j') week days away.
+     */
+    private fun skippedHolidays(start: Long, days: Int, j: Long): Long {
+        val end = addWeekdays(start, if (days > 0) days + j else days - j)
+
+        return if (days > 0) (lowerBound(weekdayHolidays, end + 1) - lowerBound(weekdayHolidays, start + 1)).toLong()
+               else (lowerBound(weekdayHolidays, start) - lowerBound(weekdayHolidays, end)).toLong()
+    }
+
+    companion object {
+        val EMPTY = CalendarSnapshot(0L, emptyList())
+
+        // Weeks are counted from Monday 1969-12-29, i.e., epoch day -3
+        private const val MONDAY_OFFSET = 3L
+
+        internal fun isWeekday(epochDay: Long) = Math.floorMod(epochDay + MONDAY_OFFSET, 7L) < 5L
+
+        /**
+         * Number of week days before the epoch day, counted from the Monday 1969-12-29 (negative before it).
+         */
+        internal fun weekdaysBefore(epochDay: Long): Long {
+            val k = epochDay + MONDAY_OFFSET
+
+            return 5L * Math.floorDiv(k, 7L) + minOf(Math.floorMod(k, 7L), 5L)
+        }
+
+        /**
+         * The epoch day of the week day with the index (as counted by weekdaysBefore).
+         */
+        private fun weekday(index: Long) = 7L * Math.floorDiv(index, 5L) + Math.floorMod(index, 5L) - MONDAY_OFFSET
+
+        /**
+         * The week day 'n' week days after (or before if negative) the epoch day, not counting the day itself.
+         */
+        private fun addWeekdays(epochDay: Long, n: Long) =
+            if (n > 0) weekday(weekdaysBefore(epochDay + 1) + n - 1) else weekday(weekdaysBefore(epochDay) + n)
+
+        /**
+         * Index of the first element not less than the value.
+         */
+        private fun lowerBound(values: LongArray, value: Long): Int {
+            val i = Arrays.binarySearch(values, value)
+
+            return if (i >= 0) i else -i - 1
+        }
+    }
+}
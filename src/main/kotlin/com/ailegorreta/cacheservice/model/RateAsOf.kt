@@ -0,0 +1,47 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RateAsOf.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.model
+
+import java.math.BigDecimal
+import java.time.LocalDate
+
+/**
+ * A system rate as of a date (see RateHistoryService). Used by the batch lookups of the rate history.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+data class RateAsOfQuery(val nombre: String,
+                         val asOf: LocalDate)
+
+/**
+ * The answer of a query. The rate is null if the rate has no value as of the date (NO_HISTORY) or it could not be
+ * read (ERROR), a zero would be taken as a real rate.
+ */
+data class RateAsOf(val nombre: String,
+                    val asOf: LocalDate,
+                    val rate: BigDecimal?,
+                    val status: Status = Status.FOUND) {
+    enum class Status { FOUND, NO_HISTORY, ERROR }
+}
@@ -43,5 +43,9 @@ data class SystemRate(var id: String? = null,
 }
 
 data class GraphqlResponseGetSystemRate constructor(val data: Data) {
-    data class Data constructor(val systemRate: SystemRate)
+    data class Data constructor(val systemRate: SystemRate?)      // null if param does not have it
+}
+
+data class GraphqlResponseSystemRates constructor(val data: Data) {
+    data class Data constructor(val systemRates: List<SystemRate>)
 }
@@ -0,0 +1,79 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogRepository.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.repository
+
+import kotlinx.coroutines.flow.Flow
+import org.springframework.data.repository.reactive.ReactiveCrudRepository
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.util.function.Function
+
+/**
+ * Reactive CRUD repository of a catalog stored in a Redis hash (see ReactiveCatalogRepository), with lookups by
+ * its unique indexes (e.g., the name), atomic replace of the whole catalog and a coroutine facade.
+ *
+ * note : redis does not support reactive repositories (and will not) because:
+ * https://github.com/spring-projects/spring-data-redis/issues/1405
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+interface CatalogRepository<T : Any> : ReactiveCrudRepository<T, String> {
+    /**
+     * The entity whose unique 'index' is 'value'.
+     */
+    fun findByIndex(index: String, value: String): Mono<T>
+
+    /**
+     * Replaces the whole catalog. The new entities are written in a staging hash that is renamed over the live
+     * hash, so readers see the complete old catalog or the complete new one, never an empty one.
+     */
+    fun replaceAll(iterable: Iterable<T>): Flux<T>
+    fun replaceAll(iterable: Iterable<T>, swap: CatalogSwap): Flux<T>
+
+    /**
+     * Kotlin Coroutines to handle reactive Redis Crud Repository
+     */
+    suspend fun kFindById(id: String): T?
+    suspend fun kFindAll(): Flow<T>
+    suspend fun kFindByIndex(index: String, value: String): T?
+    suspend fun <S : T> kSave(entity: S): S
+    suspend fun kExistsById(id: String): Boolean
+    suspend fun kCount(): Long
+    suspend fun kDeleteAll()
+    suspend fun kDelete(entity: T)
+    suspend fun kDeleteById(id: String)
+    suspend fun kSaveAll(iterable: Iterable<T>): Flow<T>
+    suspend fun kDeleteAll(iterable: Iterable<T>)
+    suspend fun kReplaceAll(iterable: Iterable<T>): Flow<T>
+    suspend fun kReplaceAll(iterable: Iterable<T>, swap: CatalogSwap): Flow<T>
+}
+
+/**
+ * A unique index of a catalog. The extractor answers null for the entities that are not indexed (e.g., the
+ * SystemDate FESTIVO can be repeated).
+ */
+class CatalogIndex<T>(val name: String, val extractor: Function<T, String?>) {
+    fun valueOf(entity: T): String? = extractor.apply(entity)
+}
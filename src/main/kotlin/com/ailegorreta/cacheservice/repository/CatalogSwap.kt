@@ -0,0 +1,51 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogSwap.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.repository
+
+import reactor.core.publisher.Mono
+
+/**
+ * Strategy used by the catalog repositories (see replaceAll) to move a complete staging hash over the live
+ * catalog hash.
+ *
+ * The swap answers false when it was refused (e.g., the loader lost its lease and another replica owns the
+ * catalog load). In that case the staging hash is discarded and the live catalog is not touched.
+ *
+ * A catalog with indexes swaps more than one key (the entities and their index), see swap(keys, derived).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+fun interface CatalogSwap {
+    /**
+     * Swaps each staging key (map key) over its live key (map value) and deletes the keys derived from the live
+     * catalog (see ReactiveCatalogRepository.derivedKeys). All of it or nothing must be done (e.g., in one Lua
+     * script), otherwise a reader could find the new entities with the old index or an old derived key.
+     */
+    fun swap(keys: Map<String, String>, derived: List<String>): Mono<Boolean>
+
+    fun swap(keys: Map<String, String>): Mono<Boolean> = swap(keys, emptyList())
+
+    fun swap(stagingKey: String, liveKey: String): Mono<Boolean> = swap(mapOf(stagingKey to liveKey))
+}
@@ -23,14 +23,12 @@
 package com.ailegorreta.cacheservice.repository
 
 import com.ailegorreta.cacheservice.model.DocumentType
-import com.ailegorreta.cacheservice.model.SystemDate
-import kotlinx.coroutines.flow.Flow
-import org.springframework.data.repository.reactive.ReactiveCrudRepository
 import reactor.core.publisher.Mono
 
 /**
  * DocumentType redis repository. This repository is a CRUD reactive repository. Since Redis reactive does not
- * support reactive CRUD repositories we implemented one (i.e., DocumentTypeRepositoryImp
+ * support reactive CRUD repositories we implemented one (i.e., DocumentTypeRepositoryImp, see
+ * ReactiveCatalogRepository)
  *
  * note : redis does not support reactive repositories (and will not) because:
  * https://github.com/spring-projects/spring-data-redis/issues/1405
@@ -39,23 +37,10 @@ import reactor.core.publisher.Mono
  * @author rlh
  * @date September 2023
  */
-interface DocumentTypeRepository : ReactiveCrudRepository<DocumentType, String> {
+interface DocumentTypeRepository : CatalogRepository<DocumentType> {
     fun findByName(name: String): Mono<DocumentType>
     fun existsByName(name: String): Mono<Boolean>
 
-    /**
-     * Kotlin Coroutines to handle reactive Redis Crud Repository
-     */
-    suspend fun kFindById(id: String): DocumentType?
-    suspend fun kFindAll(): Flow<DocumentType>
-    suspend fun <D: DocumentType> kSave(documentType: D): D
     suspend fun kFindByName(name: String): DocumentType?
-    suspend fun kExistsById(id: String): Boolean
     suspend fun kExistsByName(name: String): Boolean
-    suspend fun kCount(): Long
-    suspend fun kDeleteAll(): Void
-    suspend fun kDelete(documentType: DocumentType): Void
-    suspend fun kDeleteById(id: String): Void
-    suspend fun kSaveAll(iterable: Iterable<DocumentType>): Flow<DocumentType>
-    suspend fun kDeleteAll(iterable: Iterable<DocumentType>): Void
-}
\ No newline at end of file
+}
@@ -0,0 +1,179 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  HotKeyCache.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.repository
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicIntegerArray
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * In-process (L1) cache of the hot keys of a catalog.
+ *
+ * A sample of the reads ('sampleRate') is counted in a count-min sketch whose counters are halved every 'decay', so
+ * the estimate is a recent frequency. A key whose estimate reaches 'threshold' is promoted: its next value read
+ * from Redis is kept in memory (for 'ttl' at most) and the following reads do not go to Redis. At each decay the
+ * keys under half the threshold are demoted (the hysteresis avoids promote/demote of keys near the threshold).
+ *
+ * The repository must invalidate a key when it is written, and the other replicas writes arrive as invalidations
+ * (see CacheService). The 'ttl' bounds the staleness of any write not seen.
+ *
+ * A read from Redis that started before a write can finish after the write invalidated the key. So the reader takes
+ * the stamp of the key before the Redis read and the value is kept just if the key was not invalidated since (each
+ * invalidation gives the key a new stamp), as the epoch of the TrackedHashCache.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+class HotKeyCache<V : Any>(val catalog: String,
+                           private val sampleRate: Double,
+                           private val threshold: Int,
+                           private val maxHot: Int,
+                           private val decay: Duration,
+                           private val ttl: Duration,
+                           private val clock: () -> Long = System::nanoTime) {
+    private val sketch = CountMinSketch()
+    private val hot = ConcurrentHashMap<String, Entry<V>>()
+    private val stamps = AtomicLong()
+    @Volatile private var nextDecay = clock() + decay.toNanos()
+
+    val hits = AtomicLong()
+    val promotions = AtomicLong()
+    val demotions = AtomicLong()
+
+    /**
+     * Records the read of the key. Returns its value if the key is hot and its value is in memory.
+     */
+    fun get(key: String): V? {
+        record(key)
+
+        val entry = hot[key] ?: return null
+        val value = entry.value ?: return null
+
+        if (clock() - entry.loadedAt > ttl.toNanos()) return null
+        hits.incrementAndGet()
+
+        return value
+    }
+
+    /**
+     * The stamp of the key, to be read before the value is read from Redis (see put).
+     */
+    fun stamp(key: String): Long = hot[key]?.stamp ?: NOT_HOT
+
+    /**
+     * The value read from Redis. It is kept just if the key is hot and it was not invalidated since 'stamp' was read,
+     * otherwise the value could be older than the write that invalidated it.
+     */
+    fun put(key: String, value: V, stamp: Long) {
+        if (stamp == NOT_HOT) return
+        hot.computeIfPresent(key) { _, entry -> if (entry.stamp == stamp) Entry(value, clock(), stamp) else entry }
+    }
+
+    fun invalidate(key: String) {
+        hot.computeIfPresent(key) { _, _ -> Entry(stamp = stamps.incrementAndGet()) }
+    }
+
+    fun invalidateAll() {
+        hot.replaceAll { _, _ -> Entry(stamp = stamps.incrementAndGet()) }
+    }
+
+    fun isHot(key: String) = hot.containsKey(key)
+
+    /**
+     * The hot keys with their estimated (sampled) frequency.
+     */
+    fun hotKeys(): Map<String, Int> = hot.keys.associateWith { sketch.estimate(it) }
+
+    fun size() = hot.size
+
+    private fun record(key: String) {
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) return
+        decayIfNeeded()
+
+        if (sketch.add(key) >= threshold && !hot.containsKey(key) && hot.size < maxHot &&
+            hot.putIfAbsent(key, Entry(stamp = stamps.incrementAndGet())) == null)
+            promotions.incrementAndGet()
+    }
+
+    private fun decayIfNeeded() {
+        val now = clock()
+
+        if (now < nextDecay) return
+        synchronized(this) {
+            if (now < nextDecay) return
+            sketch.halve()
+            hot.keys.filter { sketch.estimate(it) < threshold / 2 }
+                    .forEach { if (hot.remove(it) != null) demotions.incrementAndGet() }
+            nextDecay = now + decay.toNanos()
+        }
+    }
+
+    private class Entry<V>(val value: V? = null, val loadedAt: Long = 0L, val stamp: Long)
+
+    companion object {
+        const val NOT_HOT = -1L
+    }
+
+    /**
+     * Count-min sketch: 'depth' rows of 'width' counters, the estimate is the minimum of the key counters so it
+     * never under counts.
+     */
+    class CountMinSketch(private val depth: Int = 4, private val width: Int = 1024) {
+        private val counters = AtomicIntegerArray(depth * width)
+
+        fun add(key: String): Int {
+            var min = Int.MAX_VALUE
+
+            for (row in 0 until depth)
+                min = minOf(min, counters.incrementAndGet(index(key, row)))
+
+            return min
+        }
+
+        fun estimate(key: String): Int {
+            var min = Int.MAX_VALUE
+
+            for (row in 0 until depth)
+                min = minOf(min, counters.get(index(key, row)))
+
+            return min
+        }
+
+        fun halve() {
+            for (i in 0 until counters.length())
+                counters.updateAndGet(i) { it shr 1 }
+        }
+
+        private fun index(key: String, row: Int): Int {
+            var h = key.hashCode() * -0x61c88647 + row * -0x7a143589      // golden ratio and other odd seeds
+            h = h xor (h ushr 16)
+            h *= -0x7a143595
+            h = h xor (h ushr 13)
+
+            return row * width + (h and Int.MAX_VALUE) % width
+        }
+    }
+}
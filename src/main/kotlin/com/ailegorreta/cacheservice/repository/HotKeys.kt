@@ -0,0 +1,90 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  HotKeys.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.repository
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import io.micrometer.core.instrument.FunctionCounter
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.MeterRegistry
+import org.springframework.stereotype.Component
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * The hot key caches (see HotKeyCache) of the repositories, one per catalog, configured in the
+ * 'cache-service.hot-keys' properties. If they are disabled cache() returns null.
+ *
+ * Metrics per catalog: hotkeys.size, hotkeys.hits, hotkeys.promotions and hotkeys.demotions. The hot keys are
+ * reported by the actuator endpoint 'hotkeys'.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Component
+class HotKeys(private val serviceConfig: ServiceConfig,
+              private val meterRegistry: MeterRegistry) {
+    private val caches = ConcurrentHashMap<String, HotKeyCache<*>>()
+
+    @Suppress("UNCHECKED_CAST")
+    fun <V : Any> cache(catalog: String): HotKeyCache<V>? {
+        if (!serviceConfig.hotKeysEnabled) return null
+
+        return caches.computeIfAbsent(catalog) {
+            HotKeyCache<V>(catalog, serviceConfig.hotKeysSampleRate, serviceConfig.hotKeysThreshold,
+                           serviceConfig.hotKeysMax, serviceConfig.hotKeysDecay, serviceConfig.hotKeysTtl)
+                .also(::registerMetrics)
+        } as HotKeyCache<V>
+    }
+
+    /**
+     * Other replica changed the entry 'key' of the catalog (or all of them if key is null).
+     */
+    fun invalidate(catalog: String, key: String?) {
+        val cache = caches[catalog] ?: return
+
+        if (key == null) cache.invalidateAll()
+        else cache.invalidate(key)
+    }
+
+    /**
+     * The hot keys of each catalog with their estimated (sampled) frequency.
+     */
+    fun report(): Map<String, Map<String, Int>> = caches.mapValues { (_, cache) -> cache.hotKeys() }
+
+    private fun registerMetrics(cache: HotKeyCache<*>) {
+        Gauge.builder("hotkeys.size", cache) { it.size().toDouble() }
+             .description("Keys promoted to the in-process cache")
+             .tag("catalog", cache.catalog)
+             .register(meterRegistry)
+        FunctionCounter.builder("hotkeys.hits", cache) { it.hits.get().toDouble() }
+                       .description("Reads served by the in-process cache")
+                       .tag("catalog", cache.catalog)
+                       .register(meterRegistry)
+        FunctionCounter.builder("hotkeys.promotions", cache) { it.promotions.get().toDouble() }
+                       .tag("catalog", cache.catalog)
+                       .register(meterRegistry)
+        FunctionCounter.builder("hotkeys.demotions", cache) { it.demotions.get().toDouble() }
+                       .tag("catalog", cache.catalog)
+                       .register(meterRegistry)
+    }
+}
@@ -0,0 +1,71 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  JsonCatalogRepository.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.repository
+
+import com.ailegorreta.cacheservice.config.CatalogProperties
+import com.fasterxml.jackson.databind.node.ObjectNode
+import org.springframework.data.redis.core.ReactiveRedisOperations
+
+/**
+ * Repository of a configured catalog (see CatalogProperties). The entries are the JSON objects read from the
+ * param-service as they are, stored in the hash CATALOG:<name> and indexed by the catalog key and indexes.
+ *
+ * The Redis id and version are kept in the fields "_id" and "_version" so the fields of param-service (e.g., its
+ * own id and version) are not changed.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+class JsonCatalogRepository(val name: String,
+                            val catalog: CatalogProperties.Catalog,
+                            redisOperations: ReactiveRedisOperations<String, ObjectNode>,
+                            trackedCache: TrackedHashCache) :
+    ReactiveCatalogRepository<ObjectNode>(redisOperations, KEY_PREFIX + name,
+                                          (listOf(catalog.key) + catalog.indexes).map { field ->
+                                              CatalogIndex(field) { it.path(field).takeIf { v -> v.isValueNode && !v.isNull }?.asText() }
+                                          },
+                                          trackedCache) {
+
+    override fun id(entity: ObjectNode): String? = entity.path(ID).textValue()
+    override fun assignId(entity: ObjectNode, id: String) { entity.put(ID, id) }
+    override fun version(entity: ObjectNode) = entity.path(VERSION).asInt()
+    override fun version(entity: ObjectNode, version: Int) { entity.put(VERSION, version) }
+    override fun copy(entity: ObjectNode): ObjectNode = entity.deepCopy()
+    override val versionField: String get() = VERSION
+
+    override fun validate(entity: ObjectNode) =
+        if (entity.path(catalog.key).let { !it.isValueNode || it.isNull }) "the key ${catalog.key} is required." else null
+
+    val redisKey get() = key
+
+    fun keyOf(entry: ObjectNode): String? = entry.path(catalog.key).asText(null)
+
+    fun findByKey(key: String) = findByIndex(catalog.key, key)
+
+    companion object {
+        const val KEY_PREFIX = "CATALOG:"
+        const val ID = "_id"
+        const val VERSION = "_version"
+    }
+}
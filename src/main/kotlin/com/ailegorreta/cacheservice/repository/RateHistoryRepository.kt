@@ -0,0 +1,95 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RateHistoryRepository.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.repository
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import org.springframework.data.domain.Range
+import org.springframework.data.redis.connection.Limit
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate
+import org.springframework.data.redis.core.script.RedisScript
+import org.springframework.stereotype.Repository
+import reactor.core.publisher.Mono
+import java.math.BigDecimal
+import java.time.LocalDate
+import java.time.LocalTime
+
+/**
+ * History of the values of each system rate, one Redis sorted set per rate name (SYSTEM_RATE:HISTORY:<name>).
+ *
+ * The score is the effective date as epoch day plus the fraction of the day when the change was received, so the
+ * changes of the same day keep their order. The member is "<score>|<rate>" (unique per change). The rate as of a
+ * date is the last member with a score before the next day: one ZREVRANGEBYSCORE with LIMIT 1, O(log n).
+ *
+ * Just the last 'rate-history.max' changes of each rate are kept.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Repository
+class RateHistoryRepository(private val redisTemplate: ReactiveStringRedisTemplate,
+                            private val serviceConfig: ServiceConfig) {
+
+    /**
+     * Records the new value of the rate, effective from the date.
+     */
+    fun record(name: String, rate: BigDecimal, effective: LocalDate, at: LocalTime = LocalTime.now()): Mono<Boolean> {
+        val score = score(effective, at)
+
+        return redisTemplate.execute(RECORD_SCRIPT, listOf(key(name)),
+                                     listOf(score.toString(), "$score|${rate.toPlainString()}",
+                                            serviceConfig.rateHistoryMax.toString()))
+                            .next()
+                            .map { it == 1L }
+    }
+
+    /**
+     * The value of the rate as of the date (the last change effective on or before it), empty if there is none.
+     */
+    fun asOf(name: String, date: LocalDate): Mono<BigDecimal> =
+        redisTemplate.opsForZSet()
+                     .reverseRangeByScore(key(name), Range.of(Range.Bound.unbounded(), Range.Bound.exclusive((date.toEpochDay() + 1).toDouble())),
+                                          Limit.limit().count(1))
+                     .next()
+                     .map(::rate)
+
+    companion object {
+        const val KEY_PREFIX = "SYSTEM_RATE:HISTORY:"
+
+        fun key(name: String) = KEY_PREFIX + name
+
+        internal fun score(effective: LocalDate, at: LocalTime) =
+            effective.toEpochDay() + at.toNanoOfDay() / NANOS_PER_DAY
+
+        internal fun rate(member: String) = BigDecimal(member.substringAfter('|'))
+
+        private const val NANOS_PER_DAY = 86_400_000_000_000.0
+
+        /* KEYS[1] = history, ARGV[1] = score, ARGV[2] = member, ARGV[3] = maximum changes kept */
+        private val RECORD_SCRIPT = RedisScript.of<Long>("""
+            local added = redis.call('ZADD', KEYS[1], ARGV[1], ARGV[2])
+            redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -tonumber(ARGV[3]) - 1)
+            return added
+            """.trimIndent(), Long::class.javaObjectType)
+    }
+}
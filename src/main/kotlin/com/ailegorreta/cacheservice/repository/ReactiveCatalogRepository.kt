@@ -0,0 +1,473 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ReactiveCatalogRepository.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.repository
+
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.reactive.asFlow
+import kotlinx.coroutines.reactive.awaitFirstOrNull
+import kotlinx.coroutines.reactive.awaitSingle
+import kotlinx.coroutines.reactor.awaitSingleOrNull
+import org.reactivestreams.Publisher
+import org.springframework.dao.ConcurrencyFailureException
+import org.springframework.dao.DuplicateKeyException
+import org.springframework.dao.OptimisticLockingFailureException
+import org.springframework.data.redis.core.ReactiveHashOperations
+import org.springframework.data.redis.core.ReactiveRedisOperations
+import org.springframework.data.redis.core.script.RedisScript
+import org.springframework.data.redis.serializer.RedisElementReader
+import org.springframework.data.redis.serializer.RedisElementWriter
+import org.springframework.data.redis.serializer.StringRedisSerializer
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.nio.ByteBuffer
+import java.util.*
+
+/**
+ * Reactive CRUD repository for a catalog stored in one Redis hash (id -> entity as JSON). The three catalogs
+ * (SystemRate, DocumentType and SystemDate) and any new one are implemented by extending this class with the
+ * entity accessors and, optionally, the validation of the entity.
+ *
+ * The unique indexes (e.g., the name) are kept in a second hash KEY:INDEX, so a lookup by name does not read the
+ * whole catalog:
+ *  - "index:value" -> id, for each indexed entity.
+ *  - "#id:index" -> value, the reverse entry to clean the old value when the entity is updated or deleted.
+ *  - "~" -> 1, a marker so an empty catalog has an index too.
+ * The index is built from the entities hash when it does not exist (e.g., the catalog was written by an older
+ * version of the service).
+ *
+ * All the operations that read or write the index are Lua scripts, so they are one round trip and atomic:
+ *  - the lookup by index reads the id and the entity.
+ *  - the save checks the optimistic lock (version) and the uniqueness, updates the index and writes the entity.
+ *    saveAll sends the entities in batches of BATCH_SIZE, one script each batch.
+ *
+ * The entities hash reads go through the TrackedHashCache (Redis client-side caching, if it is enabled).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+abstract class ReactiveCatalogRepository<T : Any>(protected val redisOperations: ReactiveRedisOperations<String, T>,
+                                                  protected val key: String,
+                                                  private val indexes: List<CatalogIndex<T>>,
+                                                  protected val trackedCache: TrackedHashCache) : CatalogRepository<T> {
+    protected val hashOperations: ReactiveHashOperations<String, String, T> = redisOperations.opsForHash()
+    private val indexKey = "$key:INDEX"
+    private val stagingPrefix = "$key:STAGING:"
+    private val valueWriter = redisOperations.serializationContext.getHashValueSerializationPair<T>().writer
+    private val valueReader = redisOperations.serializationContext.getHashValueSerializationPair<T>().reader
+    @Suppress("UNCHECKED_CAST")
+    private val findScript = FIND_SCRIPT as RedisScript<T>
+
+    /**
+     * Entity accessors.
+     */
+    protected abstract fun id(entity: T): String?
+    protected abstract fun assignId(entity: T, id: String)
+    protected abstract fun version(entity: T): Int
+    protected abstract fun version(entity: T, version: Int)
+    protected abstract fun copy(entity: T): T
+
+    /**
+     * The JSON field of the version, read by the save script to check the optimistic lock.
+     */
+    protected open val versionField: String get() = "version"
+
+    /**
+     * The reason why the entity cannot be saved, or null if it is valid.
+     */
+    protected open fun validate(entity: T): String? = null
+
+    /**
+     * Called after the entities are written or deleted (null means the whole catalog), e.g. to evict an
+     * in-memory copy.
+     */
+    protected open fun changed(entities: List<T>?) {}
+
+    /**
+     * Redis keys derived from the catalog (e.g., a bitmap). They are deleted by the same script that writes the
+     * catalog, so they are never older than it, and their reader builds them again when they do not exist.
+     */
+    protected open val derivedKeys: List<String> get() = emptyList()
+
+    override fun findById(id: String): Mono<T> =
+        trackedCache.get(key, id, ::copy) { hashOperations[key, id] }
+
+    override fun findById(publisher: Publisher<String>): Mono<T> = Mono.from(publisher).flatMap(::findById)
+
+    override fun findAll(): Flux<T> = trackedCache.values(key, ::copy) { hashOperations.values(key) }
+
+    override fun findAllById(iterable: Iterable<String>): Flux<T> {
+        val ids = iterable.toList()
+
+        if (ids.isEmpty()) return Flux.empty()
+        return hashOperations.multiGet(key, ids).flatMapIterable { it.filterNotNull() }
+    }
+
+    override fun findAllById(publisher: Publisher<String>): Flux<T> =
+        Flux.from(publisher).collectList().flatMapMany(::findAllById)
+
+    override fun findByIndex(index: String, value: String): Mono<T> {
+        val catalogIndex = catalogIndex(index)
+
+        if (trackedCache.isActive())        // the catalog is in memory, no round trip is needed
+            return findAll().filter { catalogIndex.valueOf(it) == value }.next()
+        return withIndex {
+            redisOperations.execute(findScript, listOf(indexKey, key), listOf("$index:$value"), ARGS_WRITER, valueReader)
+        }.next()
+    }
+
+    override fun existsById(id: String): Mono<Boolean> = hashOperations.hasKey(key, id)
+
+    override fun existsById(publisher: Publisher<String>): Mono<Boolean> = Mono.from(publisher).flatMap(::existsById)
+
+    override fun count(): Mono<Long> = hashOperations.size(key)
+
+    override fun <S : T> save(entity: S): Mono<S> = saveAll(listOf(entity)).next()
+
+    override fun <S : T> saveAll(iterable: Iterable<@JvmSuppressWildcards S>): Flux<S> {
+        val entities = iterable.toList()
+
+        entities.firstNotNullOfOrNull(::validate)?.let {
+            return Flux.error(IllegalArgumentException("Cannot be saved: $it"))
+        }
+        return Flux.fromIterable(entities)
+                   .buffer(BATCH_SIZE)
+                   .concatMap(::saveBatch)
+    }
+
+    override fun <S : T> saveAll(entityStream: Publisher<S>): Flux<S> =
+        Flux.from(entityStream).collectList().flatMapMany { saveAll(it) }
+
+    override fun deleteAll(): Mono<Void> =
+        redisOperations.delete(key, indexKey, *derivedKeys.toTypedArray())
+                       .doFinally { evict(null) }
+                       .then()
+
+    override fun delete(entity: T): Mono<Void> = deleteByIds(listOf(id(entity)!!), listOf(entity))
+
+    override fun deleteById(id: String): Mono<Void> = deleteByIds(listOf(id), null)
+
+    override fun deleteById(publisher: Publisher<String>): Mono<Void> = Mono.from(publisher).flatMap(::deleteById)
+
+    override fun deleteAllById(ids: Iterable<@JvmWildcard String>): Mono<Void> = deleteByIds(ids.toList(), null)
+
+    override fun deleteAll(entities: Iterable<T>): Mono<Void> {
+        val list = entities.toList()
+
+        return deleteByIds(list.mapNotNull(::id), list)
+    }
+
+    override fun deleteAll(entityStream: Publisher<out T>): Mono<Void> =
+        Flux.from(entityStream).collectList().flatMap { deleteAll(it) }
+
+    override fun replaceAll(iterable: Iterable<T>): Flux<T> =
+        replaceAll(iterable) { keys, derived ->
+            redisOperations.execute(RENAME_SCRIPT, keys.flatMap { listOf(it.key, it.value) } + derived,
+                                    listOf(keys.size.toString()), ARGS_WRITER, STRING_READER)
+                           .next()
+                           .map { it == "1" }
+        }
+
+    override fun replaceAll(iterable: Iterable<T>, swap: CatalogSwap): Flux<T> {
+        val entities = iterable.toList()
+
+        if (entities.isEmpty())
+            return deleteAll().thenMany(Flux.empty())
+        entities.firstNotNullOfOrNull(::validate)?.let {
+            return Flux.error(IllegalArgumentException("Cannot be replaced: $it"))
+        }
+        indexes.forEach { index ->
+            val duplicates = entities.mapNotNull(index::valueOf).groupingBy { it }.eachCount().filterValues { it > 1 }.keys
+
+            if (duplicates.isNotEmpty())
+                return Flux.error(DuplicateKeyException("Duplicate key, ${index.name}: $duplicates exist."))
+        }
+        entities.filter { id(it)?.startsWith(REDIS_PREFIX) != true }
+                .forEach {
+                    assignId(it, newId())
+                    version(it, 0)
+                }
+        val stagingKey = stagingPrefix + UUID.randomUUID().toString()
+        val stagingIndex = "$stagingKey:INDEX"
+
+        return hashOperations.putAll(stagingKey, entities.associateBy { id(it)!! })
+                             .then(reindex(stagingIndex, entities, true))
+                             .then(swap.swap(mapOf(stagingKey to key, stagingIndex to indexKey), derivedKeys))
+                             .doFinally { evict(null) }
+                             .flatMapMany { swapped ->
+                                 if (swapped)
+                                     Flux.fromIterable(entities)
+                                 else
+                                     Flux.error(ConcurrencyFailureException("The catalog $key was not swapped, the load lost its lease."))
+                             }
+                             .onErrorResume { e -> redisOperations.delete(stagingKey, stagingIndex).then(Mono.error(e)) }
+    }
+
+    /**
+     * Kotlin Coroutines facade.
+     */
+    override suspend fun kFindById(id: String): T? = findById(id).awaitSingleOrNull()
+
+    override suspend fun kFindAll(): Flow<T> = findAll().asFlow()
+
+    override suspend fun kFindByIndex(index: String, value: String): T? = findByIndex(index, value).awaitFirstOrNull()
+
+    override suspend fun <S : T> kSave(entity: S): S = save(entity).awaitSingle()
+
+    override suspend fun kExistsById(id: String): Boolean = existsById(id).awaitSingle()
+
+    override suspend fun kCount(): Long = count().awaitSingle()
+
+    override suspend fun kDeleteAll() { deleteAll().awaitSingleOrNull() }
+
+    override suspend fun kDelete(entity: T) { delete(entity).awaitSingleOrNull() }
+
+    override suspend fun kDeleteById(id: String) { deleteById(id).awaitSingleOrNull() }
+
+    override suspend fun kSaveAll(iterable: Iterable<T>): Flow<T> = saveAll(iterable).asFlow()
+
+    override suspend fun kDeleteAll(iterable: Iterable<T>) { deleteAll(iterable).awaitSingleOrNull() }
+
+    override suspend fun kReplaceAll(iterable: Iterable<T>): Flow<T> = replaceAll(iterable).asFlow()
+
+    override suspend fun kReplaceAll(iterable: Iterable<T>, swap: CatalogSwap): Flow<T> =
+        replaceAll(iterable, swap).asFlow()
+
+    /**
+     * Writes a batch with one script. The new entities (without a Redis id) get a new id and version 0, the
+     * others must have the version stored in Redis and are written with version + 1.
+     */
+    private fun <S : T> saveBatch(entities: List<S>): Flux<S> {
+        val expected = entities.map { entity ->
+            if (id(entity)?.startsWith(REDIS_PREFIX) != true) {
+                assignId(entity, newId())
+                version(entity, 0)
+                NEW
+            } else {
+                val current = version(entity)
+
+                version(entity, current + 1)
+                current
+            }
+        }
+
+        val args = saveArgs(entities, expected)
+        val keys = listOf(key, indexKey) + derivedKeys
+
+        return withIndex { redisOperations.execute(SAVE_SCRIPT, keys, args, ARGS_WRITER, STRING_READER) }
+                              .next()
+                              .doFinally { evict(entities) }
+                              .flatMapMany { codes ->
+                                  val results = codes.split(',').map { it.toInt() }
+                                  val failed = results.indexOfFirst { it != 1 }
+
+                                  results.forEachIndexed { i, code ->
+                                      if (code != 1 && expected[i] != NEW) version(entities[i], expected[i])
+                                  }
+                                  val saved = Flux.fromIterable(entities.filterIndexed { i, _ -> results[i] == 1 })
+
+                                  if (failed < 0) saved
+                                  else saved.concatWith(Mono.error(saveError(entities[failed], results[failed])))
+                              }
+    }
+
+    /**
+     * ARGV = number of indexes, the index names, the version field, and for each entity: id, expected version (NEW
+     * if it is new), the entity and its index values ("" if it is not indexed).
+     */
+    internal fun saveArgs(entities: List<T>, expected: List<Int>): List<Any> {
+        val args = mutableListOf<Any>(indexes.size.toString())
+
+        indexes.forEach { args.add(it.name) }
+        args.add(versionField)
+        entities.forEachIndexed { i, entity ->
+            args.add(id(entity)!!)
+            args.add(expected[i].toString())
+            args.add(valueWriter.write(entity))
+            indexes.forEach { args.add(it.valueOf(entity) ?: "") }
+        }
+        return args
+    }
+
+    private fun saveError(entity: T, code: Int): Exception =
+        if (code == 0)
+            OptimisticLockingFailureException("This record has already been updated earlier by another object.")
+        else {
+            val index = indexes[-code - 1]
+
+            DuplicateKeyException("Duplicate key, ${index.name}: ${index.valueOf(entity)} exists.")
+        }
+
+    private fun deleteByIds(ids: List<String>, entities: List<T>?): Mono<Void> {
+        if (ids.isEmpty()) return Mono.empty()
+
+        val args = listOf(indexes.size.toString()) + indexes.map { it.name } + ids
+        val keys = listOf(key, indexKey) + derivedKeys
+
+        return withIndex {
+            redisOperations.execute(DELETE_SCRIPT, keys, args, ARGS_WRITER, STRING_READER).next()
+        }.doFinally { evict(entities) }
+         .then()
+    }
+
+    /**
+     * Runs the script, but builds the index first if the script found that it does not exist.
+     */
+    private fun <R> withIndex(script: () -> Publisher<R>): Flux<R> =
+        Flux.defer(script)
+            .onErrorResume({ isNoIndex(it) }) {
+                findAll().collectList()
+                         .flatMap { reindex(indexKey, it, false) }
+                         .thenMany(Flux.defer(script))
+            }
+
+    private fun reindex(indexKey: String, entities: List<T>, force: Boolean): Mono<String> {
+        val args = mutableListOf<Any>(if (force) "1" else "0")
+
+        entities.forEach { entity ->
+            indexes.forEach { index ->
+                index.valueOf(entity)?.let {
+                    args.add("${index.name}:$it")
+                    args.add(id(entity)!!)
+                    args.add("#${id(entity)}:${index.name}")
+                    args.add(it)
+                }
+            }
+        }
+        return redisOperations.execute(REINDEX_SCRIPT, listOf(indexKey), args, ARGS_WRITER, STRING_READER).next()
+    }
+
+    private fun catalogIndex(name: String) =
+        indexes.firstOrNull { it.name == name } ?: throw IllegalArgumentException("The catalog $key has no index $name.")
+
+    private fun evict(entities: List<T>?) {
+        trackedCache.invalidate(key)
+        changed(entities)
+    }
+
+    private fun newId() = REDIS_PREFIX + UUID.randomUUID().toString().replace("-", "")
+                        /* ^ This is not the UUID came from the param-service, we add a prefix REDIS_PREFIX ("_R") */
+
+    companion object {
+        const val REDIS_PREFIX = "_R"
+        const val BATCH_SIZE = 500
+        private const val NEW = -1
+        private const val NO_INDEX = "NOINDEX"
+
+        internal val ARGS_WRITER = RedisElementWriter<Any> {
+            if (it is ByteBuffer) it else StringRedisSerializer.UTF_8.serialize(it.toString())!!.let(ByteBuffer::wrap)
+        }
+        internal val STRING_READER = RedisElementReader.from(StringRedisSerializer.UTF_8)
+
+        internal fun isNoIndex(e: Throwable): Boolean =
+            generateSequence(e) { it.cause }.any { it.message?.contains(NO_INDEX) == true }
+
+        /* KEYS[1] = index, KEYS[2] = entities, ARGV[1] = "index:value" */
+        private val FIND_SCRIPT = RedisScript.of<Any>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then return redis.error_reply('$NO_INDEX') end
+            local id = redis.call('HGET', KEYS[1], ARGV[1])
+            if not id then return false end
+            return redis.call('HGET', KEYS[2], id)
+            """.trimIndent(), Any::class.java)
+
+        /* KEYS[1] = entities, KEYS[2] = index, KEYS[3..] = derived keys, ARGV see saveArgs. Returns the result of
+           each entity: 1 saved, 0 version conflict, -k duplicated value of the k-th index */
+        private val SAVE_SCRIPT = RedisScript.of<String>("""
+            if redis.call('EXISTS', KEYS[2]) == 0 then return redis.error_reply('$NO_INDEX') end
+            local n = tonumber(ARGV[1])
+            local results = {}
+            local versionField = ARGV[n + 2]
+            local pos = n + 3
+            local saved = false
+            while pos <= #ARGV do
+                local id = ARGV[pos]
+                local expected = tonumber(ARGV[pos + 1])
+                local code = 1
+                local current = redis.call('HGET', KEYS[1], id)
+                if current and expected >= 0 and cjson.decode(current)[versionField] ~= expected then code = 0 end
+                if code == 1 then
+                    for k = 1, n do
+                        local value = ARGV[pos + 2 + k]
+                        if value ~= '' then
+                            local owner = redis.call('HGET', KEYS[2], ARGV[1 + k] .. ':' .. value)
+                            if owner and owner ~= id then code = -k break end
+                        end
+                    end
+                end
+                if code == 1 then
+                    for k = 1, n do
+                        local name = ARGV[1 + k]
+                        local value = ARGV[pos + 2 + k]
+                        local reverse = '#' .. id .. ':' .. name
+                        local old = redis.call('HGET', KEYS[2], reverse)
+                        if old then redis.call('HDEL', KEYS[2], name .. ':' .. old, reverse) end
+                        if value ~= '' then redis.call('HSET', KEYS[2], name .. ':' .. value, id, reverse, value) end
+                    end
+                    redis.call('HSET', KEYS[1], id, ARGV[pos + 2])
+                    saved = true
+                end
+                results[#results + 1] = code
+                pos = pos + 3 + n
+            end
+            if saved then for i = 3, #KEYS do redis.call('DEL', KEYS[i]) end end
+            return table.concat(results, ',')
+            """.trimIndent(), String::class.java)
+
+        /* KEYS[1] = entities, KEYS[2] = index, KEYS[3..] = derived keys, ARGV[1] = number of indexes, the index
+           names, the ids */
+        private val DELETE_SCRIPT = RedisScript.of<String>("""
+            if redis.call('EXISTS', KEYS[2]) == 0 then return redis.error_reply('$NO_INDEX') end
+            local n = tonumber(ARGV[1])
+            local deleted = 0
+            for i = n + 2, #ARGV do
+                local id = ARGV[i]
+                for k = 1, n do
+                    local reverse = '#' .. id .. ':' .. ARGV[1 + k]
+                    local old = redis.call('HGET', KEYS[2], reverse)
+                    if old then redis.call('HDEL', KEYS[2], ARGV[1 + k] .. ':' .. old, reverse) end
+                end
+                deleted = deleted + redis.call('HDEL', KEYS[1], id)
+            end
+            if deleted > 0 then for i = 3, #KEYS do redis.call('DEL', KEYS[i]) end end
+            return tostring(deleted)
+            """.trimIndent(), String::class.java)
+
+        /* KEYS = staging key, live key (pairs), then the derived keys, ARGV[1] = number of pairs. Renames all of them
+           and deletes the derived keys at once, see CatalogSwap */
+        private val RENAME_SCRIPT = RedisScript.of<String>("""
+            local n = tonumber(ARGV[1]) * 2
+            for i = 1, n, 2 do redis.call('RENAME', KEYS[i], KEYS[i + 1]) end
+            for i = n + 1, #KEYS do redis.call('DEL', KEYS[i]) end
+            return '1'
+            """.trimIndent(), String::class.java)
+
+        /* KEYS[1] = index, ARGV[1] = "1" to rebuild it, "0" just if it does not exist, then field, value pairs */
+        private val REINDEX_SCRIPT = RedisScript.of<String>("""
+            if ARGV[1] == '0' and redis.call('EXISTS', KEYS[1]) == 1 then return '0' end
+            redis.call('DEL', KEYS[1])
+            redis.call('HSET', KEYS[1], '~', '1')
+            for i = 2, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end
+            return '1'
+            """.trimIndent(), String::class.java)
+    }
+}
@@ -0,0 +1,120 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RedisClientTracking.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.repository
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.commons.utils.HasLogger
+import io.lettuce.core.RedisChannelHandler
+import io.lettuce.core.RedisClient
+import io.lettuce.core.RedisConnectionStateAdapter
+import io.lettuce.core.TrackingArgs
+import io.lettuce.core.api.StatefulRedisConnection
+import io.lettuce.core.api.push.PushListener
+import io.lettuce.core.codec.StringCodec
+import jakarta.annotation.PreDestroy
+import org.springframework.boot.context.event.ApplicationReadyEvent
+import org.springframework.context.event.EventListener
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory
+import org.springframework.stereotype.Component
+import java.net.SocketAddress
+
+/**
+ * Opt-in RESP3 client-side caching of the catalogs ('cache-service.client-tracking.enabled').
+ *
+ * It opens a dedicated Lettuce connection with CLIENT TRACKING in broadcast mode for the catalog key prefixes, so
+ * Redis pushes an 'invalidate' message each time any client modifies a catalog key, and it forwards them to the
+ * TrackedHashCache. The tracking is lost when the connection is lost, so the cache is deactivated on disconnect and
+ * activated again (empty) once the tracking is enabled in the new connection.
+ *
+ * note: it needs Redis 6 or newer (RESP3). With an older server the cache just stays inactive.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Component
+class RedisClientTracking(private val connectionFactory: LettuceConnectionFactory,
+                          private val cache: TrackedHashCache,
+                          private val serviceConfig: ServiceConfig): HasLogger {
+    @Volatile private var connection: StatefulRedisConnection<String, String>? = null
+
+    @EventListener(ApplicationReadyEvent::class)
+    fun start() {
+        if (!serviceConfig.clientTrackingEnabled) return
+
+        val client = connectionFactory.nativeClient as? RedisClient
+
+        if (client == null) {
+            logger.warn("Client-side caching needs a standalone Redis client, it is not enabled")
+            return
+        }
+        try {
+            val connection = client.connect(StringCodec.UTF8)
+
+            connection.addListener(PushListener { message ->
+                if (message.type == "invalidate") {
+                    val keys = message.getContent(StringCodec.UTF8::decodeKey)[1] as List<*>?
+
+                    if (keys == null) cache.invalidateAll()          // FLUSHALL, FLUSHDB
+                    else keys.forEach { cache.invalidate(it.toString()) }
+                }
+            })
+            client.addListener(object : RedisConnectionStateAdapter() {
+                override fun onRedisConnected(handler: RedisChannelHandler<*, *>?, address: SocketAddress?) {
+                    if (handler === connection) track(connection)
+                }
+
+                override fun onRedisDisconnected(handler: RedisChannelHandler<*, *>?) {
+                    if (handler === connection) {
+                        logger.warn("The client tracking connection was lost, read the catalogs from Redis")
+                        cache.deactivate()
+                    }
+                }
+            })
+            this.connection = connection
+            track(connection)
+        } catch (e: Exception) {
+            logger.error("Could not enable the Redis client-side caching: ${e.message}")
+        }
+    }
+
+    @PreDestroy
+    fun stop() {
+        cache.deactivate()
+        connection?.closeAsync()
+    }
+
+    private fun track(connection: StatefulRedisConnection<String, String>) {
+        connection.async()
+                  .clientTracking(TrackingArgs.Builder.enabled().bcast().prefixes(*serviceConfig.clientTrackingPrefixes))
+                  .whenComplete { _, e ->
+                      if (e == null) {
+                          logger.info("Redis client-side caching enabled for the prefixes {}", serviceConfig.clientTrackingPrefixes)
+                          cache.activate()
+                      } else {
+                          logger.error("Could not enable the Redis client tracking: ${e.message}")
+                          cache.deactivate()
+                      }
+                  }
+    }
+}
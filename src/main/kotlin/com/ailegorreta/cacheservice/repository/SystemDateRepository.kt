@@ -24,40 +24,36 @@ package com.ailegorreta.cacheservice.repository
 
 import com.ailegorreta.cacheservice.model.DayType
 import com.ailegorreta.cacheservice.model.SystemDate
-import kotlinx.coroutines.flow.Flow
-import org.springframework.data.repository.reactive.ReactiveCrudRepository
 import reactor.core.publisher.Mono
+import java.time.LocalDate
 
 /**
  * SystemDate redis repository. This repository is a CRUD reactive repository. Since Redis reactive does not
- * support reactive CRUD repositories we implemented one (i.e., DocumentTypeRepositoryImp
+ * support reactive CRUD repositories we implemented one (i.e., SystemDateRepositoryImp, see
+ * ReactiveCatalogRepository)
  *
  * note : redis does not support reactive repositories (and will not) because:
  * https://github.com/spring-projects/spring-data-redis/issues/1405
  *
  * Name is unique key with exception o DaysType.FESTIVO
  *
+ * The holidays are also kept in Redis as a per-day bitmap (see SystemDateRepositoryImpl), shared by all the
+ * replicas and by any other service: isHoliday and workingDaysBetween read it. They are empty if the system dates
+ * are not in Redis (e.g., not loaded yet).
+ *
  * @project cache-service
  * @author rlh
  * @date September 2023
  */
-interface SystemDateRepository : ReactiveCrudRepository<SystemDate, String> {
+interface SystemDateRepository : CatalogRepository<SystemDate> {
     fun findByName(name: DayType): Mono<SystemDate>
     fun existsByName(name: DayType): Mono<Boolean>
 
-    /**
-     * Kotlin Coroutines to handle reactive Redis Crud Repository
-     */
-    suspend fun kFindById(id: String): SystemDate?
-    suspend fun kFindAll(): Flow<SystemDate>
-    suspend fun <S : SystemDate> kSave(systemDate: S): S
+    fun isHoliday(day: LocalDate): Mono<Boolean>
+    fun workingDaysBetween(from: LocalDate, to: LocalDate): Mono<Long>
+
     suspend fun kFindByName(name: DayType): SystemDate?
-    suspend fun kExistsById(id: String): Boolean
     suspend fun kExistsByName(name: DayType): Boolean
-    suspend fun kCount(): Long
-    suspend fun kDeleteAll(): Void
-    suspend fun kDelete(systemDate: SystemDate): Void
-    suspend fun kDeleteById(id: String): Void
-    suspend fun kSaveAll(iterable: Iterable<SystemDate>): Flow<SystemDate>
-    suspend fun kDeleteAll(iterable: Iterable<SystemDate>): Void
-}
\ No newline at end of file
+    suspend fun kIsHoliday(day: LocalDate): Boolean?
+    suspend fun kWorkingDaysBetween(from: LocalDate, to: LocalDate): Long?
+}
@@ -0,0 +1,146 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  TrackedHashCache.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.repository
+
+import io.micrometer.core.instrument.Counter
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.MeterRegistry
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Local copy of the catalog hash reads (HVALS and HGET), valid while Redis tracks the catalog keys for this replica
+ * (RESP3 client-side caching, see RedisClientTracking). Redis pushes an invalidation each time any client (other
+ * replica or an external writer) modifies a catalog key, so a repeated read does not need a round trip.
+ *
+ * While the tracking is not active (disabled, not connected yet or reconnecting) all the reads go to Redis.
+ *
+ * The values are copied when stored and when read because the callers modify them (e.g., to update a rate).
+ *
+ * Metrics: redis.tracking.requests (tag result: hit, miss, bypass), redis.tracking.invalidations and
+ * redis.tracking.keys.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+class TrackedHashCache(meterRegistry: MeterRegistry) {
+    @Volatile private var active = false
+    private val epoch = AtomicLong()
+    private val entries = ConcurrentHashMap<String, ConcurrentHashMap<String, List<Any>>>()
+    // ^ Redis key -> field (or ALL_VALUES) -> values
+
+    private val hits = counter(meterRegistry, "hit")
+    private val misses = counter(meterRegistry, "miss")
+    private val bypasses = counter(meterRegistry, "bypass")
+    private val invalidations = Counter.builder("redis.tracking.invalidations")
+                                       .description("Invalidations of the tracked catalog keys")
+                                       .register(meterRegistry)
+
+    init {
+        Gauge.builder("redis.tracking.keys", entries) { it.size.toDouble() }
+             .description("Catalog keys with a local copy")
+             .register(meterRegistry)
+    }
+
+    fun isActive() = active
+
+    /**
+     * Redis tracks the keys from now on. What was read before is not trusted.
+     */
+    fun activate() {
+        invalidateAll()
+        active = true
+    }
+
+    /**
+     * The invalidations can be lost (e.g., the tracking connection was closed).
+     */
+    fun deactivate() {
+        active = false
+        invalidateAll()
+    }
+
+    /**
+     * HVALS of the hash 'key'.
+     */
+    fun <V : Any> values(key: String, copy: (V) -> V, load: () -> Flux<V>): Flux<V> =
+        cached(key, ALL_VALUES, copy, load)
+
+    /**
+     * HGET of the 'field' of the hash 'key'.
+     */
+    fun <V : Any> get(key: String, field: String, copy: (V) -> V, load: () -> Mono<V>): Mono<V> =
+        cached(key, field, copy) { load().flux() }.next()
+
+    /**
+     * The key was modified. Called by Redis (push message) and by the repositories after they write, so this
+     * replica reads its own writes before the push arrives.
+     */
+    fun invalidate(key: String) {
+        epoch.incrementAndGet()
+        if (entries.remove(key) != null) invalidations.increment()
+    }
+
+    fun invalidateAll() {
+        epoch.incrementAndGet()
+        entries.clear()
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun <V : Any> cached(key: String, field: String, copy: (V) -> V, load: () -> Flux<V>): Flux<V> {
+        if (!active) {
+            bypasses.increment()
+            return load()
+        }
+        entries[key]?.get(field)?.let { values ->
+            hits.increment()
+            return Flux.fromIterable(values).map { copy(it as V) }
+        }
+        misses.increment()
+
+        val readAt = epoch.get()
+
+        return load().collectList()
+                     .doOnNext { values ->
+                         if (active && epoch.get() == readAt) {
+                             entries.computeIfAbsent(key) { ConcurrentHashMap() }[field] = values.map(copy)
+                             if (epoch.get() != readAt) entries.remove(key)
+                             // ^ an invalidation arrived while storing it
+                         }
+                     }
+                     .flatMapIterable { it }
+    }
+
+    private fun counter(meterRegistry: MeterRegistry, result: String) =
+        Counter.builder("redis.tracking.requests")
+               .description("Catalog hash reads with RESP3 client-side caching")
+               .tag("result", result)
+               .register(meterRegistry)
+
+    companion object {
+        private const val ALL_VALUES = "\u0000values"
+    }
+}
@@ -22,226 +22,158 @@
  */
 package com.ailegorreta.cacheservice.repository.impl
 
+import com.ailegorreta.cacheservice.model.CalendarSnapshot
 import com.ailegorreta.cacheservice.model.DayType
 import com.ailegorreta.cacheservice.model.SystemDate
+import com.ailegorreta.cacheservice.repository.CatalogIndex
+import com.ailegorreta.cacheservice.repository.ReactiveCatalogRepository
 import com.ailegorreta.cacheservice.repository.SystemDateRepository
-import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.reactive.asFlow
+import com.ailegorreta.cacheservice.repository.TrackedHashCache
 import kotlinx.coroutines.reactive.awaitFirstOrNull
 import kotlinx.coroutines.reactive.awaitSingle
 import kotlinx.coroutines.reactor.awaitSingleOrNull
-import org.reactivestreams.Publisher
 import org.springframework.beans.factory.annotation.Autowired
-import org.springframework.dao.DuplicateKeyException
-import org.springframework.dao.OptimisticLockingFailureException
-import org.springframework.data.redis.core.ReactiveHashOperations
 import org.springframework.data.redis.core.ReactiveRedisOperations
+import org.springframework.data.redis.core.script.RedisScript
 import org.springframework.stereotype.Repository
-import reactor.core.publisher.Flux
 import reactor.core.publisher.Mono
-import java.util.*
+import java.time.LocalDate
 
 /**
- * Implementation for the CRUD reactive repository for SystemDate
+ * Implementation for the CRUD reactive repository for SystemDate. The name is a unique index, except
+ * DayType.FESTIVO that is not indexed, see ReactiveCatalogRepository.
+ *
+ * The holidays (DayType.FESTIVO) that fall on week days are also kept in the Redis bitmap SYSTEM_DATE:HOLIDAYS, one
+ * bit per day with the epoch day as offset (1970-01-01 is bit 0). Every write of the system dates deletes it in the
+ * same script (see derivedKeys), and the next read builds it again from the SYSTEM_DATE hash in the script that
+ * answers it, so a read never finds a bitmap older than the hash. It is shared by all the replicas and any other
+ * service: a day is a holiday if it is Saturday or Sunday or its bit is set (one GETBIT), and the working days of a
+ * range are its week days minus the BITCOUNT of the range.
  *
  * @project: cache-service
  * @author rlh
  * @date: September 2023
  */
 @Repository("systemDateRepositoryImpl")
-class SystemDateRepositoryImpl @Autowired constructor(redisOperations: ReactiveRedisOperations<String, SystemDate>) :
+class SystemDateRepositoryImpl @Autowired constructor(redisOperations: ReactiveRedisOperations<String, SystemDate>,
+                                                      trackedCache: TrackedHashCache) :
+    ReactiveCatalogRepository<SystemDate>(redisOperations, KEY,
+                                          listOf(CatalogIndex(NAME) { if (it.name == DayType.FESTIVO) null else it.name.name }),
+                                          trackedCache),
     SystemDateRepository {
 
-    private val hashOperations: ReactiveHashOperations<String, String, SystemDate>
-
-    init {
-        hashOperations = redisOperations.opsForHash()
-    }
-    override fun findById(id: String): Mono<SystemDate> {
-        return hashOperations[KEY, id]
-    }
-
-    override suspend fun kFindById(id: String): SystemDate? {
-        return findById(id).awaitSingleOrNull()
-    }
-
-    override fun findAll(): Flux<SystemDate> {
-        return hashOperations.values(KEY)
-    }
-
-    override suspend fun kFindAll(): Flow<SystemDate> {
-        return findAll().asFlow()
-    }
-    override fun <S: SystemDate> save(systemDate: S): Mono<S> {
-        if (systemDate.name == null || systemDate.day == null)
-            return Mono.error<Any>(IllegalArgumentException("Cannot be saved: date type and date are required, but one or both is empty."))
-                        .thenReturn(systemDate)
-        return if (systemDate.id == null || systemDate.id.toString().isEmpty() ||
-                    !systemDate.id.toString().startsWith(REDIS_PREFIX)) {
-            val systemDateId = REDIS_PREFIX + UUID.randomUUID().toString().replace("-".toRegex(), "")
-            /* ^ This is not the UUID came from the param-service, we add a prefix REDIS_PREFIX ("_R") */
-            systemDate.id = systemDateId
-            systemDate.version = 0
-            Mono.defer {
-                addOrUpdateSystemDate(systemDate,existsByName(systemDate.name))
-            }
-        } else {
-            findById(systemDate.id!!)
-                .flatMap { (_, name, _, version): SystemDate ->
-                    if (version != systemDate.version) {
-                        return@flatMap Mono.error(OptimisticLockingFailureException(
-                                "This record has already been updated earlier by another object."))
-                    } else {
-                        systemDate.version = systemDate.version + 1
-                        return@flatMap Mono.defer {
-                            var exists = Mono.just(false)
-                            if (name != systemDate.name) {
-                                exists = existsByName(systemDate.name)
-                            }
-                            addOrUpdateSystemDate(systemDate, exists)
-                        }
-                    }
-                }
-                .switchIfEmpty(Mono.defer {
-                    addOrUpdateSystemDate(systemDate,existsByName(systemDate.name))
-                })
-        }
-    }
-
-    override suspend fun <S: SystemDate> kSave(systemDate: S): S {
-        return save(systemDate).awaitSingle()
-    }
-
-    override fun findByName(name: DayType): Mono<SystemDate> {
-        return hashOperations.values(KEY)
-                            .filter { (_, name1): SystemDate -> name1 == name }
-                            .singleOrEmpty()
-    }
-
-    override suspend fun kFindByName(name: DayType): SystemDate? {
-        return findByName(name).awaitFirstOrNull()
-    }
+    override fun id(entity: SystemDate) = entity.id
+    override fun assignId(entity: SystemDate, id: String) { entity.id = id }
+    override fun version(entity: SystemDate) = entity.version
+    override fun version(entity: SystemDate, version: Int) { entity.version = version }
+    override fun copy(entity: SystemDate) = entity.copy()
 
-    override fun existsById(id: String): Mono<Boolean> {
-        return hashOperations.hasKey(KEY, id)
-    }
-
-    override suspend fun kExistsById(id: String): Boolean {
-        return existsById(id).awaitSingle()
-    }
-
-    override fun existsByName(name: DayType): Mono<Boolean> {
-        return if (name == DayType.FESTIVO) Mono.just(false) else findByName(name).hasElement() // DayType.FESTIVO can be repeated
-    }
-
-    override suspend fun kExistsByName(name: DayType): Boolean {
-        return existsByName(name).awaitSingle()
-    }
-
-    override fun count(): Mono<Long> {
-        return hashOperations.values(KEY).count()
-    }
+    override fun findByName(name: DayType): Mono<SystemDate> =
+        if (name == DayType.FESTIVO)            // DayType.FESTIVO can be repeated
+            findAll().filter { it.name == name }.singleOrEmpty()
+        else
+            findByIndex(NAME, name.name)
 
-    override suspend fun kCount(): Long {
-        return count().awaitSingle()
-    }
+    override suspend fun kFindByName(name: DayType): SystemDate? = findByName(name).awaitFirstOrNull()
 
-    override fun deleteAll(): Mono<Void> {
-        return hashOperations.delete(KEY).then()
-    }
+    override fun existsByName(name: DayType): Mono<Boolean> =
+        if (name == DayType.FESTIVO) Mono.just(false) else findByName(name).hasElement() // DayType.FESTIVO can be repeated
 
-    override suspend fun kDeleteAll(): Void {
-        return deleteAll().awaitSingle()
-    }
+    override suspend fun kExistsByName(name: DayType): Boolean = existsByName(name).awaitSingle()
 
-    override fun delete(systemDate: SystemDate): Mono<Void> {
-        return hashOperations.remove(KEY, systemDate.id).then()
-    }
+    override fun isHoliday(day: LocalDate): Mono<Boolean> {
+        val epochDay = day.toEpochDay()
 
-    override suspend fun kDelete(systemDate: SystemDate): Void {
-        return delete(systemDate).awaitSingle()
+        if (epochDay < 0) return Mono.error(IllegalArgumentException("The holidays start in 1970: $day"))
+        if (!CalendarSnapshot.isWeekday(epochDay)) return Mono.just(true)
+        return holidays("get", epochDay).map { it == 1L }
     }
 
-    override fun deleteById(id: String): Mono<Void> {
-        return hashOperations.remove(KEY, id).then()
-    }
+    override fun workingDaysBetween(from: LocalDate, to: LocalDate): Mono<Long> {
+        val a = from.toEpochDay()
+        val b = to.toEpochDay()
+        val (first, last) = if (b >= a) a + 1 to b else b to a - 1     // 'to' is counted, 'from' is not
 
-    override suspend fun kDeleteById(id: String): Void {
-        return deleteById(id).awaitSingle()
-    }
+        if (first < 0) return Mono.error(IllegalArgumentException("The holidays start in 1970: ${minOf(from, to)}"))
+        if (first > last) return Mono.just(0L)
 
-    override fun <S : SystemDate> saveAll(iterable: Iterable<S>): Flux<S> {
-        return Flux.fromIterable(iterable).flatMap { d: S ->
-            save(d)
-        }
-    }
+        val weekdays = CalendarSnapshot.weekdaysBefore(last + 1) - CalendarSnapshot.weekdaysBefore(first)
 
-    override suspend fun kSaveAll(iterable: Iterable<SystemDate>): Flow<SystemDate> {
-        return saveAll(iterable).asFlow()
+        return holidays("count", first, last).map { (weekdays - it) * if (b >= a) 1 else -1 }
     }
 
-    override fun deleteAll(iterable: Iterable<SystemDate>): Mono<Void> {
-        Flux.fromIterable(iterable).flatMap { d: SystemDate -> delete(d) }
-        return Mono.empty()
-    }
+    override suspend fun kIsHoliday(day: LocalDate): Boolean? = isHoliday(day).awaitSingleOrNull()
 
-    override suspend fun kDeleteAll(iterable: Iterable<SystemDate>): Void {
-        return deleteAll(iterable).awaitSingle()
-    }
+    override suspend fun kWorkingDaysBetween(from: LocalDate, to: LocalDate): Long? =
+        workingDaysBetween(from, to).awaitSingleOrNull()
 
     /**
-     * These methods are not implemented because teh service does not need them. But can be extended if in the
-     * future the service need them.
+     * The holiday bitmap. It is a catalog of a few hundred dates, so after a write the bitmap is rebuilt whole.
      */
-    override fun deleteAllById(strings: Iterable<String>): Mono<Void> {
-        return Mono.empty()
-    }
-
-    override fun <S : SystemDate?> saveAll(publisher: Publisher<S>): Flux<S> {
-        return Flux.empty()
-    }
-
-    override fun findById(publisher: Publisher<String>): Mono<SystemDate> {
-        return Mono.empty()
-    }
-
-    override fun existsById(publisher: Publisher<String>): Mono<Boolean> {
-        return  Mono.empty()
-    }
-
-    override fun findAllById(iterable: Iterable<String>): Flux<SystemDate> {
-        return Flux.empty()
-    }
-
-    override fun findAllById(publisher: Publisher<String>): Flux<SystemDate> {
-        return Flux.empty()
-    }
-
-    override fun deleteById(publisher: Publisher<String>): Mono<Void> {
-        return Mono.empty()
-    }
-
-    override fun deleteAll(publisher: Publisher<out SystemDate>): Mono<Void> {
-        return Mono.empty()
-    }
+    override val derivedKeys = listOf(HOLIDAYS)
 
     /**
-     * Private utility method to add new DocumentType if not exist with name
+     * The answer of the bitmap script, empty if there are no system dates in Redis (an empty bitmap would answer
+     * that there are no holidays).
      */
-    private fun <S: SystemDate>addOrUpdateSystemDate(systemDate: S, exists: Mono<Boolean>): Mono<S> {
-        return exists.flatMap { exist: Boolean ->
-                if (exist)
-                    return@flatMap Mono.error<SystemDate>(
-                        DuplicateKeyException("Duplicate key, Name: " + systemDate.name + " exists." + systemDate.id))
-                else
-                    return@flatMap hashOperations.put(KEY, systemDate.id!!, systemDate)
-                .map<SystemDate> { isSaved: Boolean? -> systemDate }
-            }
-            .thenReturn(systemDate)
-    }
+    private fun holidays(vararg args: Any): Mono<Long> =
+        redisOperations.execute(HOLIDAYS_SCRIPT, listOf(KEY, HOLIDAYS), args.toList(), ARGS_WRITER, STRING_READER)
+                       .next()
+                       .map { it.toLong() }
+                       .filter { it != NO_SYSTEM_DATES }
 
     companion object {
         private const val KEY = "SYSTEM_DATE"
-        private const val REDIS_PREFIX = "_R"
-    }
-}
\ No newline at end of file
+        private const val NAME = "name"
+        const val HOLIDAYS = "$KEY:HOLIDAYS"
+        private const val NO_SYSTEM_DATES = -1L
+
+        /* KEYS[1] = system dates, KEYS[2] = holiday bitmap. ARGV[1] = 'get' (ARGV[2] = epoch day) or 'count'
+           (ARGV[2], ARGV[3] = first and last epoch days). The bitmap is built if it does not exist, -1 if there are
+           no system dates. The days are [y, m, d] (or "y-m-d"), the epoch day is the days_from_civil
+           algorithm of H. Hinnant */
+        private val HOLIDAYS_SCRIPT = RedisScript.of<String>("""
+            local function epochDay(y, m, d)
+                if m <= 2 then y = y - 1 end
+                local era = math.floor(y / 400)
+                local yoe = y - era * 400
+                local doy = math.floor((153 * ((m + 9) % 12) + 2) / 5) + d - 1
+                local doe = yoe * 365 + math.floor(yoe / 4) - math.floor(yoe / 100) + doy
+                return era * 146097 + doe - 719468
+            end
+            local function rebuild()
+                redis.call('DEL', KEYS[2])
+                redis.call('SETBIT', KEYS[2], 0, 0)
+                for _, json in ipairs(redis.call('HVALS', KEYS[1])) do
+                    local date = cjson.decode(json)
+                    if date.name == 'FESTIVO' then
+                        local y, m, d
+                        if type(date.day) == 'table' then y, m, d = date.day[1], date.day[2], date.day[3]
+                        else y, m, d = string.match(tostring(date.day), '^(%d+)-(%d+)-(%d+)$') end
+                        if y then
+                            local day = epochDay(tonumber(y), tonumber(m), tonumber(d))
+                            if day >= 0 and (day + 3) % 7 < 5 then redis.call('SETBIT', KEYS[2], day, 1) end
+                        end
+                    end
+                end
+            end
+            if redis.call('EXISTS', KEYS[1]) == 0 then return '-1' end
+            if redis.call('EXISTS', KEYS[2]) == 0 then rebuild() end
+            if ARGV[1] == 'get' then return tostring(redis.call('GETBIT', KEYS[2], ARGV[2])) end
+            local first, last = tonumber(ARGV[2]), tonumber(ARGV[3])
+            local count = 0
+            while first <= last and first % 8 ~= 0 do
+                count = count + redis.call('GETBIT', KEYS[2], first)
+                first = first + 1
+            end
+            while last >= first and last % 8 ~= 7 do
+                count = count + redis.call('GETBIT', KEYS[2], last)
+                last = last - 1
+            end
+            if first <= last then
+                count = count + redis.call('BITCOUNT', KEYS[2], math.floor(first / 8), math.floor(last / 8))
+            end
+            return tostring(count)
+            """.trimIndent(), String::class.java)
+    }
+}
@@ -0,0 +1,125 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CachingReactiveJwtDecoder.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.security
+
+import com.ailegorreta.commons.utils.HasLogger
+import io.micrometer.core.instrument.Counter
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.MeterRegistry
+import org.springframework.security.oauth2.jwt.Jwt
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder
+import reactor.core.publisher.Mono
+import java.security.MessageDigest
+import java.time.Clock
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * ReactiveJwtDecoder that keeps the tokens already verified by the delegate decoder (signature and claims), so a
+ * client that sends the same token in many requests pays the validation just once.
+ *
+ * - The key is the SHA-256 of the token, the token itself is not used as the key.
+ * - An entry is valid until the token expiration ('exp'), a token without expiration is not cached.
+ * - The cache is bounded: when it is full the expired entries are purged and, if it is still full, the token is not
+ *   cached.
+ * - The kill switch 'enabled' bypasses and clears the cache.
+ *
+ * Metrics: jwt.cache.requests (tag result: hit, miss or bypass) and jwt.cache.size.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+class CachingReactiveJwtDecoder(private val delegate: ReactiveJwtDecoder,
+                                private val maxSize: Int,
+                                enabled: Boolean,
+                                meterRegistry: MeterRegistry,
+                                private val clock: Clock = Clock.systemUTC()): ReactiveJwtDecoder, HasLogger {
+    private val tokens = ConcurrentHashMap<String, VerifiedToken>()
+    private val hits = requests(meterRegistry, "hit")
+    private val misses = requests(meterRegistry, "miss")
+    private val bypasses = requests(meterRegistry, "bypass")
+
+    @Volatile
+    var enabled = enabled
+        set(value) {
+            field = value
+            if (!value) tokens.clear()
+            logger.info("The verified JWT cache is {}", if (value) "enabled" else "disabled")
+        }
+
+    init {
+        Gauge.builder("jwt.cache.size", tokens) { it.size.toDouble() }
+             .description("Verified JWTs in the cache")
+             .register(meterRegistry)
+    }
+
+    override fun decode(token: String): Mono<Jwt> {
+        if (!enabled) {
+            bypasses.increment()
+            return delegate.decode(token)
+        }
+
+        val key = hash(token)
+        val now = clock.millis()
+
+        tokens[key]?.let { verified ->
+            if (verified.expiresAt > now) {
+                hits.increment()
+                return Mono.just(verified.jwt)
+            }
+            tokens.remove(key, verified)
+        }
+        misses.increment()
+
+        return delegate.decode(token).doOnNext { jwt -> store(key, jwt) }
+    }
+
+    private fun store(key: String, jwt: Jwt) {
+        val expiresAt = jwt.expiresAt?.toEpochMilli() ?: return
+
+        if (!enabled || expiresAt <= clock.millis()) return
+        if (tokens.size >= maxSize) {
+            val now = clock.millis()
+
+            tokens.entries.removeIf { it.value.expiresAt <= now }
+            if (tokens.size >= maxSize) return
+        }
+        tokens[key] = VerifiedToken(jwt, expiresAt)
+    }
+
+    fun size() = tokens.size
+
+    private class VerifiedToken(val jwt: Jwt, val expiresAt: Long)
+
+    companion object {
+        private fun requests(meterRegistry: MeterRegistry, result: String) =
+            Counter.builder("jwt.cache.requests")
+                   .description("JWT decodes served by the verified JWT cache")
+                   .tag("result", result)
+                   .register(meterRegistry)
+
+        fun hash(token: String): String = Base64.getEncoder().encodeToString(
+                                                MessageDigest.getInstance("SHA-256").digest(token.toByteArray()))
+    }
+}
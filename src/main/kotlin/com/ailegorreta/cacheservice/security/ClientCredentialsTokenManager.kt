@@ -0,0 +1,173 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ClientCredentialsTokenManager.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.security
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.commons.utils.HasLogger
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.Timer
+import jakarta.annotation.PreDestroy
+import org.springframework.boot.context.event.ApplicationReadyEvent
+import org.springframework.context.event.EventListener
+import org.springframework.http.HttpStatus
+import org.springframework.security.oauth2.client.endpoint.OAuth2ClientCredentialsGrantRequest
+import org.springframework.security.oauth2.client.endpoint.WebClientReactiveClientCredentialsTokenResponseClient
+import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository
+import org.springframework.security.oauth2.core.OAuth2AccessToken
+import org.springframework.stereotype.Component
+import org.springframework.web.reactive.function.client.ClientRequest
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction
+import reactor.core.Disposable
+import reactor.core.publisher.Mono
+import reactor.util.retry.Retry
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Keeps the client-credentials access token of the calls to param-service always valid, refreshing it in background
+ * ahead of its expiration (at 'refresh-at' of its lifetime, plus or minus a random jitter so the replicas do not
+ * call auth-service at the same time). A failed refresh is retried with backoff while the current token is valid.
+ *
+ * The filter() adds the token to the requests, so a request does not wait for auth-service. Just if there is no
+ * valid token (e.g., auth-service was down longer than the token lifetime) a request waits for one fetch, shared by
+ * all the requests. A 401 from the called service discards the token.
+ *
+ * Metrics: oauth2.token.fetch (tag result) and oauth2.token.expires.in (seconds).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Component
+class ClientCredentialsTokenManager(private val registrations: ReactiveClientRegistrationRepository,
+                                    private val serviceConfig: ServiceConfig,
+                                    private val meterRegistry: MeterRegistry): HasLogger {
+    val enabled = serviceConfig.tokenRefreshEnabled
+
+    private val tokenClient = WebClientReactiveClientCredentialsTokenResponseClient()
+    private val token = AtomicReference<OAuth2AccessToken?>()
+    private val fetching = AtomicReference<Mono<OAuth2AccessToken>?>()
+    @Volatile private var refresh: Disposable? = null
+
+    init {
+        Gauge.builder("oauth2.token.expires.in", token) { ref ->
+                 ref.get()?.expiresAt?.let { Duration.between(Instant.now(), it).seconds.toDouble() } ?: 0.0
+             }
+             .description("Seconds to the expiration of the client-credentials access token")
+             .register(meterRegistry)
+    }
+
+    @EventListener(ApplicationReadyEvent::class)
+    fun start() {
+        if (enabled) scheduleRefresh(Duration.ZERO)
+    }
+
+    @PreDestroy
+    fun stop() {
+        refresh?.dispose()
+    }
+
+    /**
+     * Adds the access token (bearer) to the request.
+     */
+    fun filter() = ExchangeFilterFunction { request, next ->
+        currentToken().flatMap { accessToken ->
+                          next.exchange(ClientRequest.from(request)
+                                                     .headers { it.setBearerAuth(accessToken.tokenValue) }
+                                                     .build())
+                      }
+                      .doOnNext { response ->
+                          if (response.statusCode() == HttpStatus.UNAUTHORIZED) {
+                              logger.warn("The access token was rejected, discard it")
+                              token.set(null)
+                          }
+                      }
+    }
+
+    fun currentToken(): Mono<OAuth2AccessToken> {
+        val accessToken = token.get()
+
+        return if (accessToken != null && isValid(accessToken)) Mono.just(accessToken)
+               else fetch()
+    }
+
+    private fun isValid(accessToken: OAuth2AccessToken) =
+        accessToken.expiresAt?.isAfter(Instant.now().plusSeconds(EXPIRATION_MARGIN)) ?: true
+
+    /**
+     * Fetches a new token. Just one fetch at a time, the concurrent callers share it.
+     */
+    private fun fetch(): Mono<OAuth2AccessToken> {
+        fetching.get()?.let { return it }
+
+        val sample = Timer.start(meterRegistry)
+        val fetch = registrations.findByRegistrationId(serviceConfig.clientId + "-client-credentials")
+                                 .switchIfEmpty(Mono.error { IllegalStateException("No client registration ${serviceConfig.clientId}-client-credentials") })
+                                 .flatMap { tokenClient.getTokenResponse(OAuth2ClientCredentialsGrantRequest(it)) }
+                                 .map { it.accessToken }
+                                 .doOnNext { accessToken ->
+                                     sample.stop(fetchTimer("success"))
+                                     token.set(accessToken)
+                                     logger.debug("Got a new access token that expires at {}", accessToken.expiresAt)
+                                 }
+                                 .doOnError { sample.stop(fetchTimer("failure")) }
+                                 .doFinally { fetching.set(null) }
+                                 .cache()
+
+        return if (fetching.compareAndSet(null, fetch)) fetch else fetching.get() ?: fetch
+    }
+
+    private fun scheduleRefresh(delay: Duration) {
+        refresh = Mono.delay(delay)
+                      .flatMap {
+                          fetch().retryWhen(Retry.backoff(Long.MAX_VALUE, serviceConfig.tokenRefreshRetry)
+                                                 .maxBackoff(MAX_BACKOFF)
+                                                 .doBeforeRetry { logger.warn("Could not refresh the access token: ${it.failure().message}") })
+                      }
+                      .subscribe { accessToken -> scheduleRefresh(nextRefresh(accessToken)) }
+    }
+
+    private fun nextRefresh(accessToken: OAuth2AccessToken): Duration {
+        val issuedAt = accessToken.issuedAt ?: Instant.now()
+        val expiresAt = accessToken.expiresAt ?: return DEFAULT_REFRESH
+        val lifetime = Duration.between(issuedAt, expiresAt).toMillis()
+        val jitter = (lifetime * serviceConfig.tokenRefreshJitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1)).toLong()
+        val refreshAt = issuedAt.plusMillis((lifetime * serviceConfig.tokenRefreshAt).toLong() + jitter)
+
+        return Duration.between(Instant.now(), refreshAt).coerceAtLeast(Duration.ZERO)
+    }
+
+    private fun fetchTimer(result: String) = Timer.builder("oauth2.token.fetch")
+                                                  .description("Latency of the client-credentials token requests to auth-service")
+                                                  .tag("result", result)
+                                                  .register(meterRegistry)
+
+    companion object {
+        const val EXPIRATION_MARGIN = 5L                    // seconds
+        private val MAX_BACKOFF = Duration.ofSeconds(30)
+        private val DEFAULT_REFRESH = Duration.ofMinutes(5)
+    }
+}
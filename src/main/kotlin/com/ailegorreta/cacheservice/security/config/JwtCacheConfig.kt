@@ -0,0 +1,78 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  JwtCacheConfig.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.security.config
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.cacheservice.security.CachingReactiveJwtDecoder
+import io.micrometer.core.instrument.MeterRegistry
+import org.springframework.beans.factory.ObjectProvider
+import org.springframework.beans.factory.config.BeanPostProcessor
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Configuration
+import org.springframework.context.event.EventListener
+import org.springframework.core.env.Environment
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder
+
+/**
+ * Plugs the verified JWT cache (see CachingReactiveJwtDecoder) into the ReactiveJwtDecoder that Spring Boot creates
+ * for the resource server (spring.security.oauth2.resourceserver.jwt), so the decoder configuration is not repeated.
+ *
+ * The kill switch is the cache-service.jwt-cache.enabled property. It can be changed at runtime with the config
+ * server and a refresh (EnvironmentChangeEvent).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Configuration(proxyBeanMethods = false)
+class JwtCacheConfig(private val decoders: ObjectProvider<ReactiveJwtDecoder>,
+                     private val environment: Environment) {
+
+    @EventListener(EnvironmentChangeEvent::class)
+    fun refresh(event: EnvironmentChangeEvent) {
+        if (!event.keys.contains(ENABLED)) return
+
+        val decoder = decoders.ifAvailable as? CachingReactiveJwtDecoder ?: return
+
+        decoder.enabled = environment.getProperty(ENABLED, Boolean::class.java, true)
+    }
+
+    companion object {
+        const val ENABLED = "cache-service.jwt-cache.enabled"
+
+        @Bean
+        @JvmStatic
+        fun cachingJwtDecoderPostProcessor(serviceConfig: ObjectProvider<ServiceConfig>,
+                                           meterRegistry: ObjectProvider<MeterRegistry>) = object : BeanPostProcessor {
+            override fun postProcessAfterInitialization(bean: Any, beanName: String): Any =
+                if (bean is ReactiveJwtDecoder && bean !is CachingReactiveJwtDecoder)
+                    CachingReactiveJwtDecoder(delegate = bean,
+                                              maxSize = serviceConfig.getObject().jwtCacheMaxSize,
+                                              enabled = serviceConfig.getObject().jwtCacheEnabled,
+                                              meterRegistry = meterRegistry.getObject())
+                else
+                    bean
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CacheInvalidationBroadcaster.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.model.CacheInvalidation
+import com.ailegorreta.commons.utils.HasLogger
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.Timer
+import jakarta.annotation.PreDestroy
+import org.springframework.boot.context.event.ApplicationReadyEvent
+import org.springframework.context.event.EventListener
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate
+import org.springframework.stereotype.Service
+import reactor.core.Disposable
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import reactor.core.publisher.Sinks
+import reactor.util.retry.Retry
+import java.time.Duration
+import java.util.*
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+
+/**
+ * Broadcast of the cache invalidations to all the cache-service replicas.
+ *
+ * The Kafka events are consumed by a consumer group (group-cache-service), so just one replica receives each event.
+ * That replica updates Redis and publishes a CacheInvalidation message in a Redis pub/sub channel. Every replica is
+ * subscribed to the channel and calls its listeners (e.g., CacheService clears its in-memory calendar), so all the
+ * replicas drop their stale in-memory state within milliseconds.
+ *
+ * Each message carries a cluster-wide sequence (Redis INCR), so all the replicas see the same ids for the same
+ * changes (see ChangeFeed, the /cache/changes events).
+ *
+ * The metric cache.invalidation.propagation reports the lag between the publish and the receive of a message.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Service
+class CacheInvalidationBroadcaster(private val redisTemplate: ReactiveStringRedisTemplate,
+                                   private val mapper: ObjectMapper,
+                                   private val meterRegistry: MeterRegistry): HasLogger {
+
+    val instanceId = UUID.randomUUID().toString()
+
+    private val listeners = CopyOnWriteArrayList<(CacheInvalidation) -> Unit>()
+    private val changes = Sinks.many().multicast().directBestEffort<CacheInvalidation>()
+    private var subscription: Disposable? = null
+
+    fun addListener(listener: (CacheInvalidation) -> Unit) {
+        listeners.add(listener)
+    }
+
+    /**
+     * All the changes received by this replica, including the ones it published.
+     */
+    fun changes(): Flux<CacheInvalidation> = changes.asFlux()
+
+    /**
+     * The last sequence assigned to a change in the cluster (empty if none).
+     */
+    fun currentSequence(): Mono<Long> = redisTemplate.opsForValue().get(SEQUENCE_KEY).map { it.toLong() }
+
+    /**
+     * Publishes that the catalog (or just the entry 'key' of the catalog, with its new 'value') changed. It does not
+     * wait for Redis.
+     */
+    fun publish(catalog: String, key: String? = null, value: String? = null) {
+        redisTemplate.opsForValue().increment(SEQUENCE_KEY)
+                     .map { sequence ->
+                         CacheInvalidation(catalog = catalog, key = key, value = value, sequence = sequence,
+                                           origin = instanceId, sentAt = System.currentTimeMillis())
+                     }
+                     .flatMap { invalidation ->
+                         redisTemplate.convertAndSend(CHANNEL, mapper.writeValueAsString(invalidation))
+                                      .doOnNext { receivers -> logger.debug("Broadcast {} to {} replicas", invalidation, receivers) }
+                     }
+                     .subscribe({}, { e -> logger.error("Could not broadcast the invalidation of $catalog: ${e.message}") })
+    }
+
+    @EventListener(ApplicationReadyEvent::class)
+    fun subscribe() {
+        subscription = redisTemplate.listenToChannel(CHANNEL)
+                                    .handle<CacheInvalidation> { message, sink ->
+                                        try {
+                                            sink.next(mapper.readValue(message.message, CacheInvalidation::class.java))
+                                        } catch (e: Exception) {
+                                            logger.warn("Ignore the invalid message ${message.message}: ${e.message}")
+                                        }
+                                    }
+                                    .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                                                    .maxBackoff(Duration.ofSeconds(30))
+                                                    .doBeforeRetry { logger.warn("Resubscribe to the invalidation channel: ${it.failure().message}") })
+                                    .subscribe(::received)
+        logger.info("Replica {} listening to the cache invalidations", instanceId)
+    }
+
+    @PreDestroy
+    fun unsubscribe() {
+        subscription?.dispose()
+    }
+
+    private fun received(invalidation: CacheInvalidation) {
+        Timer.builder("cache.invalidation.propagation")
+             .description("Lag between the publish of a cache invalidation and its reception in a replica")
+             .tag("catalog", invalidation.catalog)
+             .register(meterRegistry)
+             .record(System.currentTimeMillis() - invalidation.sentAt, TimeUnit.MILLISECONDS)
+        changes.tryEmitNext(invalidation)
+        if (invalidation.origin == instanceId) return       // this replica already applied it
+
+        logger.debug("Received the invalidation {}", invalidation)
+        listeners.forEach { listener ->
+            try {
+                listener(invalidation)
+            } catch (e: Exception) {
+                logger.error("Could not apply the invalidation $invalidation: ${e.message}")
+            }
+        }
+    }
+
+    companion object {
+        const val CHANNEL = "cache-service:invalidation"
+        const val SEQUENCE_KEY = "cache-service:invalidation:sequence"
+    }
+}
@@ -24,18 +24,32 @@ package com.ailegorreta.cacheservice.service
 
 import com.ailegorreta.cacheservice.model.*
 import com.ailegorreta.cacheservice.repository.DocumentTypeRepository
+import com.ailegorreta.cacheservice.repository.HotKeys
 import com.ailegorreta.cacheservice.repository.SystemDateRepository
 import com.ailegorreta.cacheservice.repository.SystemRateRepository
 import com.ailegorreta.commons.utils.HasLogger
+import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.reactor.awaitSingle
+import kotlinx.coroutines.reactor.awaitSingleOrNull
+import kotlinx.coroutines.reactor.mono
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import com.ailegorreta.cacheservice.service.CatalogLoaderLock.CatalogLease
 import org.springframework.beans.factory.annotation.Qualifier
+import org.springframework.dao.ConcurrencyFailureException
 import org.springframework.dao.DataRetrievalFailureException
+import org.springframework.dao.TransientDataAccessException
 import org.springframework.stereotype.Service
+import reactor.core.publisher.Flux
 import reactor.core.publisher.Mono
-import java.time.DayOfWeek
+import java.math.BigDecimal
 import java.time.LocalDate
-import kotlin.math.abs
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
 
 /**
  * CacheService retrieves all system parameters:
@@ -45,115 +59,423 @@ import kotlin.math.abs
  *
  * note: before call param microservice, it checks existence in Redis memory database
  *
+ * note: catalogs (system dates and document types) are never deleted when invalidated. They are reloaded in
+ *       background and swapped atomically in Redis (see replaceAll), so readers keep the old catalog until the new
+ *       one is complete.
+ *
+ * note: with more than one replica the catalog loads are done by just one of them (see CatalogLoaderLock). The
+ *       replica that processed a change broadcasts it (see CacheInvalidationBroadcaster) so the other replicas
+ *       clear their in-memory state.
+ *
+ * note: while Redis is not reachable (see RedisAvailability) the catalogs are served from memory and refreshed from
+ *       the param microservice. The changes received meanwhile are queued and reconciled when Redis is back.
+ *
  *  @author rlh
  *  @project : cache-service
  *  @date September 2023
  */
 @Service
 class CacheService(val paramService: ParamService,
+                   val loaderLock: CatalogLoaderLock,
+                   val broadcaster: CacheInvalidationBroadcaster,
+                   val redis: RedisAvailability,
+                   val hotKeys: HotKeys,
+                   val rateNames: RateNameFilter,
                    @Qualifier("systemRateRepositoryImpl") val systemRateRepository: SystemRateRepository,
                    @Qualifier("systemDateRepositoryImpl") val systemDateRepository: SystemDateRepository,
-                   @Qualifier("documentTypeRepositoryImpl") val documentTypeRepository: DocumentTypeRepository) : HasLogger {
-    private var today: LocalDate? = null
-    private var systemDates: List<SystemDate> = emptyList()
+                   @Qualifier("documentTypeRepositoryImpl") val documentTypeRepository: DocumentTypeRepository,
+                   val calendars: CalendarService) : HasLogger {
+    private val calendarGeneration = AtomicLong(1L)
+    private val documentTypesGeneration = AtomicLong(1L)
+    private val calendar = AtomicReference(CalendarSnapshot.EMPTY)
+    private val calendarLoad = AtomicReference<CalendarLoad?>()
+
+    private val refreshScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private val systemDatesLoad = Mutex()
+    private val documentTypesLoad = Mutex()
+
+    private val staleSystemRates = ConcurrentHashMap<String, SystemRate>()
+    private val staleDocumentTypes = AtomicReference<List<DocumentType>>(emptyList())
+    // ^ also the in-memory catalogs of the degraded mode
+
+    private val pendingSystemRates = ConcurrentHashMap<String, BigDecimal>()
+    private val pendingCatalogs = ConcurrentHashMap.newKeySet<String>()
+    private var localRefresh: Job? = null
+
+    init {
+        broadcaster.addListener(::onInvalidation)
+        redis.addListener(::onRedisMode)
+    }
 
     /**
-     * Method that gets a systemRate from redis (if exists) or from param service
+     * Method that gets a systemRate from redis (if exists) or from param service. If param service can not be called
+     * (i.e., circuit breaker open, concurrency limit or deadline) the last value read is returned (stale value).
+     * A name that does not exist for sure (see RateNameFilter) is rejected at once.
      */
     fun getSystemRate(name: String): Mono<SystemRate> {
         logger.debug("Try to get the variable $name")
 
+        if (!rateNames.mightContain(name))
+            return Mono.error(DataRetrievalFailureException("No variable $name found in SystemRate"))
+        if (!redis.available()) return localSystemRate(name)
+
         return systemRateRepository.findByName(name)
                                    .flatMap { systemRate: SystemRate ->
                                         logger.debug("Got the variable from cache")
                                         Mono.just(systemRate)
                                     }
+                                    .onErrorResume(RedisAvailability::isConnectionFailure) { e ->
+                                        redis.failed(e)
+                                        localSystemRate(name)
+                                    }
                                     .switchIfEmpty(Mono.defer {
-                                        val res = paramService.getFromParamsSystemRate(name)
-
-                                        if (res != null) {
-                                            logger.debug("Got variable {} with value {} from microservice. Store it in cache", name, res.rate)
-                                            systemRateRepository.save(res)
-                                        } else
-                                            Mono.error(DataRetrievalFailureException("No variable $name found in SystemRate"))
+                                        paramService.getFromParamsSystemRate(name)
+                                                    .flatMap { res ->
+                                                        logger.debug("Got variable {} with value {} from microservice. Store it in cache", name, res.rate)
+                                                        systemRateRepository.save(res)
+                                                                            .onErrorResume(RedisAvailability::isConnectionFailure) { e ->
+                                                                                redis.failed(e)
+                                                                                Mono.just(res)
+                                                                            }
+                                                    }
+                                                    .switchIfEmpty(Mono.defer {
+                                                        rateNames.falsePositive()
+                                                        Mono.error(DataRetrievalFailureException("No variable $name found in SystemRate"))
+                                                    })
+                                                    .onErrorResume(TransientDataAccessException::class.java) { e ->
+                                                        staleSystemRates[name]?.let {
+                                                            logger.warn("Param service not available (${e.message}), use the last value of $name")
+                                                            Mono.just(it)
+                                                        } ?: Mono.error(e)
+                                                    }
                                     })
+                                    .doOnNext { staleSystemRates[name] = it }
     }
 
     /**
-     * Methods for system dates. In this case since we have few Holidays and SystemDates we almost don´t use
-     * Redis database but use a list of SystemDate
+     * Degraded mode: the system rate from memory or, the first time, from the param microservice.
+     */
+    private fun localSystemRate(name: String): Mono<SystemRate> =
+        staleSystemRates[name]?.let { Mono.just(it) }
+            ?: paramService.getFromParamsSystemRate(name)
+                           .switchIfEmpty(Mono.error(DataRetrievalFailureException("No variable $name found in SystemRate")))
+                           .doOnNext { staleSystemRates[name] = it }
+
+    /**
+     * Updates the value of a system rate (i.e., received an event) keeping its id and version for the optimistic
+     * lock. The change is broadcast to all the replicas.
+     *
+     * In degraded mode the new value is kept in memory and written to Redis when it is back.
+     */
+    fun updateSystemRate(name: String, rate: BigDecimal): Mono<SystemRate> {
+        rateNames.add(name)
+        if (!redis.available()) return Mono.fromSupplier { updateLocalSystemRate(name, rate) }
+
+        return saveSystemRate(name, rate).onErrorResume(RedisAvailability::isConnectionFailure) { e ->
+                                             redis.failed(e)
+                                             Mono.fromSupplier { updateLocalSystemRate(name, rate) }
+                                         }
+    }
+
+    /**
+     * Writes the system rate to Redis, without the degraded mode fallback.
+     */
+    private fun saveSystemRate(name: String, rate: BigDecimal): Mono<SystemRate> =
+        systemRateRepository.findByName(name)
+                            .map { systemRate -> systemRate.rate = rate; systemRate }
+                            .defaultIfEmpty(SystemRate(name = name, rate = rate))
+                            .flatMap(systemRateRepository::save)
+                            .doOnNext { staleSystemRates[name] = it }
+                            .doOnSuccess { broadcaster.publish(SYSTEM_RATE_CATALOG, name, rate.toPlainString()) }
+
+    private fun updateLocalSystemRate(name: String, rate: BigDecimal): SystemRate {
+        logger.warn("Redis is not reachable, keep the new value of $name in memory until it is back")
+        pendingSystemRates[name] = rate
+
+        return staleSystemRates.compute(name) { _, current ->
+            current?.copy(rate = rate) ?: SystemRate(name = name, rate = rate)
+        }!!
+    }
+
+    /**
+     * Redis is not reachable (LOCAL_ONLY): refresh the in-memory catalogs from the param microservice each
+     * 'local-refresh'. Redis is back (REDIS): write the changes received meanwhile, and since the invalidations of the
+     * other replicas were lost, the in-memory catalogs are read again from Redis.
      */
+    private fun onRedisMode(mode: RedisAvailability.Mode) {
+        localRefresh?.cancel()
+        if (mode == RedisAvailability.Mode.LOCAL_ONLY)
+            localRefresh = refreshScope.launch {
+                while (isActive) {
+                    delay(redis.localRefresh.toMillis())
+                    refreshLocalCatalogs()
+                }
+            }
+        else
+            refreshScope.launch { reconcile() }
+    }
+
+    private suspend fun refreshLocalCatalogs() {
+        logger.info("Refresh the in-memory catalogs from the param microservice (degraded mode)")
+        try {
+            staleDocumentTypes.set(paramService.allDocumentTypes().ifEmpty { staleDocumentTypes.get() })
+            documentTypesGeneration.incrementAndGet()
+            calendarGeneration.incrementAndGet()        // the next calendar is read from param
+            staleSystemRates.keys
+                            .filterNot { pendingSystemRates.containsKey(it) }
+                            .forEach { name ->
+                                paramService.getFromParamsSystemRate(name).awaitSingleOrNull()
+                                            ?.let { staleSystemRates[name] = it }
+                            }
+        } catch (e: Exception) {
+            logger.error("Could not refresh the in-memory catalogs: ${e.message}")
+        }
+    }
 
     /**
-     * Reads all system dates from Redis  (if exists) otherwise it returns an empty list
+     * A pending rate is removed only when it was written to Redis. If Redis fails again the rest is kept for the next
+     * reconcile.
      */
-    private suspend fun systemDatesCache(): List<SystemDate> {
-        if (systemDates.isEmpty())
+    private suspend fun reconcile() {
+        for ((name, rate) in pendingSystemRates) {
             try {
-                val res = mutableListOf<SystemDate>()
-
-                systemDateRepository.kFindAll().collect{ res.add(it) }
-                // ^ We use Kotlin coroutines to block this
-                if (res.isEmpty()) {
-                    systemDates = paramService.allSystemDates()
-                    logger.info("Read from  param microservice ${systemDates.size} and save them Redis cache")
-                    systemDateRepository.kSaveAll(systemDates)
-                } else
-                    systemDates = res
+                saveSystemRate(name, rate).awaitSingle()
+                pendingSystemRates.remove(name, rate)
             } catch (e: Exception) {
-                logger.error("No se pudo leer correctamente las fechas del sistema en el cache: ${e.message}")
-                systemDates = emptyList()
+                logger.error("Could not write the system rate $name to Redis: ${e.message}")
+                if (RedisAvailability.isConnectionFailure(e)) {
+                    redis.failed(e)
+                    return
+                }
             }
+        }
+        hotKeys.invalidate(SYSTEM_RATE_CATALOG, null)
+        if (pendingCatalogs.remove(SYSTEM_DATE_CATALOG)) invalidateSystemDates()
+        if (pendingCatalogs.remove(DOCUMENT_TYPE_CATALOG)) invalidateDocumentTypes()
+        calendarGeneration.incrementAndGet()
+        documentTypesGeneration.incrementAndGet()
+    }
 
-        return systemDates
+    /**
+     * Other replica processed a change: clear the in-memory state of the catalog. The next reader gets it from Redis
+     * where the other replica already swapped the new catalog.
+     */
+    private fun onInvalidation(invalidation: CacheInvalidation) {
+        hotKeys.invalidate(invalidation.catalog, invalidation.key)
+        if (invalidation.catalog == SYSTEM_DATE_CATALOG) {
+            logger.debug("Other replica changed the system dates, clear the in-memory calendar")
+            calendarGeneration.incrementAndGet()
+        }
+        if (invalidation.catalog == DOCUMENT_TYPE_CATALOG) {
+            logger.debug("Other replica changed the document types")
+            documentTypesGeneration.incrementAndGet()
+        }
     }
 
     /**
-     * Some system date has been modified (i.e., received an event), therefore invalidate all systemDates from Redis
+     * Methods for system dates. In this case since we have few Holidays and SystemDates we almost don´t use
+     * Redis database but use an immutable CalendarSnapshot published in an atomic reference
+     */
+
+    /**
+     * Gets the calendar snapshot of the current generation. If it is not loaded yet, just one load per generation
+     * runs (single-flight) and all the callers wait for it. If the load fails the previous snapshot is used.
      */
-    fun invalidateSystemDates() {
+    private suspend fun calendar(): CalendarSnapshot {
+        while (true) {
+            val generation = calendarGeneration.get()
+            val snapshot = calendar.get()
+
+            if (snapshot.generation == generation) return snapshot
+
+            val running = calendarLoad.get()
+
+            if (running != null && running.generation == generation && !running.failed)
+                return awaitCalendar(running, snapshot)
+
+            val load = CalendarLoad(generation)
+
+            if (calendarLoad.compareAndSet(running, load)) {
+                refreshScope.launch { loadCalendar(load) }
+                // ^ the load does not belong to this request, a cancelled request does not cancel it
+
+                return awaitCalendar(load, snapshot)
+            }
+        }
+    }
+
+    /**
+     * The whole calendar (all system dates) of the current generation.
+     */
+    suspend fun getCalendar(): CalendarSnapshot = calendar()
+
+    private suspend fun awaitCalendar(load: CalendarLoad, previous: CalendarSnapshot) =
         try {
-            logger.info("Invalidate all system dates from cached. Some date was changed.")
-            systemDateRepository.deleteAll()
-            systemDates = emptyList()
-            today = null
+            load.result.await()
         } catch (e: Exception) {
-            logger.error("Could not delete all system dates from cache")
+            logger.error("No se pudo leer correctamente las fechas del sistema en el cache: ${e.message}")
+            previous
+        }
+
+    /**
+     * Reads all system dates from Redis (if exists) otherwise from the param microservice. The snapshot is
+     * published only if no invalidation arrived during the load, i.e., its generation is still the current one.
+     */
+    private suspend fun loadCalendar(load: CalendarLoad) {
+        try {
+            val snapshot = CalendarSnapshot(load.generation,
+                                            fromRedis(local = { paramService.allSystemDates() }) {
+                                                systemDateRepository.kFindAll().toList()
+                                                                    .ifEmpty { loadSystemDates(refresh = false) }
+                                            })
+
+            if (snapshot.isEmpty())
+                load.failed = true          // the next request tries again
+            else
+                calendar.updateAndGet { current ->
+                    if (load.generation == calendarGeneration.get() && load.generation > current.generation) snapshot
+                    else current
+                }
+            load.result.complete(snapshot)
+        } catch (e: Exception) {
+            load.failed = true
+            load.result.completeExceptionally(e)
         }
     }
 
     /**
-     * Gets today from the systemDates (if exists) otherwise return the machine date
+     * Runs 'block' if Redis is reachable, otherwise (or if it is not reachable anymore) runs 'local'.
      */
-    private suspend fun getToday(): LocalDate {
-        if (today != null) return today!!
+    private suspend fun <T> fromRedis(local: suspend () -> T, block: suspend () -> T): T {
+        if (redis.available()) {
+            try {
+                return block()
+            } catch (e: Exception) {
+                if (!RedisAvailability.isConnectionFailure(e)) throw e
+                redis.failed(e)
+            }
+        }
+        return local()
+    }
 
-        val systemDate = systemDatesCache().find { systemDate -> systemDate.name == DayType.HOY }
+    /**
+     * Reads the system dates from the param microservice and swaps them into Redis. Just one load runs at a time in
+     * the cluster, the readers that were waiting for it find the calendar already in Redis.
+     */
+    private suspend fun loadSystemDates(refresh: Boolean): List<SystemDate> = systemDatesLoad.withLock {
+        val cached = if (refresh) emptyList() else systemDateRepository.kFindAll().toList()
+
+        cached.ifEmpty {
+            loaderLock.load(SYSTEM_DATE_CATALOG, leader = { swapSystemDates(it) }) {
+                // ^ other replica was the loader. If it failed, or it started before the change we must refresh,
+                // try once to be the loader
+                val loaded = if (refresh) emptyList() else systemDateRepository.kFindAll().toList()
+
+                loaded.ifEmpty {
+                    loaderLock.load(SYSTEM_DATE_CATALOG, leader = { swapSystemDates(it) }) {
+                        systemDateRepository.kFindAll().toList()
+                    }
+                }
+            }
+        }
+    }
+
+    private suspend fun swapSystemDates(lease: CatalogLease): List<SystemDate> {
+        val dates = paramService.allSystemDates()
+
+        if (dates.isEmpty()) {
+            logger.warn("The param microservice returned no system dates, keep the current calendar in cache")
+            return systemDateRepository.kFindAll().toList()
+        }
+        logger.info("Read from  param microservice ${dates.size} and swap them into Redis cache")
+
+        return try {
+            systemDateRepository.kReplaceAll(dates, loaderLock.fencedSwap(lease)).toList()
+        } catch (e: ConcurrencyFailureException) {
+            logger.warn("The system dates load lost its lease, use the calendar swapped by the new loader")
+            systemDateRepository.kFindAll().toList()
+        }
+    }
+
+    /**
+     * Some system date has been modified (i.e., received an event), therefore reload all systemDates in background.
+     * The old calendar is kept until the new one has been swapped into Redis, then the calendar generation changes.
+     */
+    fun invalidateSystemDates(): Job {
+        logger.info("Refresh all system dates in cache. Some date was changed.")
 
-        return if (systemDate != null)
-            systemDate.day
-        else {
+        if (!redis.available()) {
+            pendingCatalogs.add(SYSTEM_DATE_CATALOG)
+            return refreshScope.launch { calendarGeneration.incrementAndGet() }
+            // ^ the next calendar is read from the param microservice
+        }
+        return refreshScope.launch {
+            try {
+                loadSystemDates(refresh = true)
+                calendarGeneration.incrementAndGet()
+                // ^ after the swap, so the next calendar load reads the new system dates from Redis
+                broadcaster.publish(SYSTEM_DATE_CATALOG)
+            } catch (e: Exception) {
+                logger.error("Could not refresh the system dates in cache: ${e.message}")
+            }
+        }
+    }
+
+    /**
+     * Gets today from the calendar (if exists) otherwise return the machine date
+     */
+    private fun getToday(calendar: CalendarSnapshot): LocalDate {
+        return calendar.today ?: run {
             logger.error("Not found system date as HOY, use the computer date")
             LocalDate.now()
         }
     }
 
     /**
-     * Validate if the date is holiday: is weekend or a holiday is declared in systemDates list.
+     * The calendar to compute with: the system calendar if no calendar is given, otherwise the named calendar (or
+     * the combination of several ones separated by commas), see CalendarService.
+     */
+    private suspend fun calendarOf(system: CalendarSnapshot, calendar: String?): BusinessCalendar =
+        if (calendar.isNullOrBlank()) system else calendars.get(calendar, system)
+
+    private suspend fun businessCalendar(calendar: String?): BusinessCalendar = calendarOf(calendar(), calendar)
+
+    /**
+     * Validate if the date is holiday: is weekend or a holiday is declared in systemDates list. The system calendar
+     * is read from the holiday bitmap shared in Redis (see fromHolidayBitmap).
      */
-    suspend fun isHoliday(day: LocalDate) =
-                day.dayOfWeek.equals(DayOfWeek.SATURDAY) ||
-                day.dayOfWeek.equals(DayOfWeek.SUNDAY) ||
-                (systemDatesCache().find{ systemDate -> systemDate.name == DayType.FESTIVO &&
-                                                        systemDate.day == day } != null)
+    suspend fun isHoliday(day: LocalDate, calendar: String? = null): Boolean =
+        fromHolidayBitmap(calendar) { systemDateRepository.kIsHoliday(day) }
+            ?: businessCalendar(calendar).isHoliday(day)
+
+    /**
+     * The system calendar answers from the Redis holiday bitmap (see SystemDateRepositoryImpl), so all the replicas
+     * and the other services that read the bitmap give the same answer. Null (i.e., use the calendar snapshot) for
+     * other calendars, if Redis is not reachable, the system dates are not in Redis or the day is before 1970.
+     */
+    private suspend fun <T> fromHolidayBitmap(calendar: String?, read: suspend () -> T?): T? {
+        if (!(calendar.isNullOrBlank() || calendar.trim() == CalendarService.SYSTEM) || !redis.available()) return null
+
+        return try {
+            read()
+        } catch (e: IllegalArgumentException) {
+            null                                // before 1970, not in the bitmap
+        } catch (e: Exception) {
+            if (!RedisAvailability.isConnectionFailure(e)) throw e
+            redis.failed(e)
+            null
+        }
+    }
 
     /**
      * This method gets today or a work day plus or minus 'days'. It validates that the day is not a holiday
      */
-    suspend fun getDay(days: Int): LocalDate {
+    suspend fun getDay(days: Int, calendar: String? = null): LocalDate {
         logger.info("Try to calculate the day after $days passed")
 
-        var result = getToday()
+        val system = calendar()
+        val businessCalendar = calendarOf(system, calendar)
+        var result = getToday(system)
         logger.info("The day is: $result")
 
         result = if (days > 0)
@@ -161,7 +483,7 @@ class CacheService(val paramService: ParamService,
         else
             result.minusDays(days.toLong())
 
-        while (isHoliday(result)) {
+        while (businessCalendar.isHoliday(result)) {
             result = if (days > 0)
                 result.plusDays(1)
             else
@@ -174,25 +496,73 @@ class CacheService(val paramService: ParamService,
     /**
      * This method adds from today a number of working days
      */
-    suspend fun addDay(days: Int): LocalDate {
+    suspend fun addDay(days: Int, calendar: String? = null): LocalDate {
         logger.debug("Try to calculate the day after $days working days")
 
-        var result = getToday()
-        logger.debug("Today is: {}", result)
-        var numDays = abs(days)
+        val system = calendar()
+        val today = getToday(system)
+        logger.debug("Today is: {}", today)
 
-        while (numDays > 0) {
-            result = if (days > 0)
-                result.plusDays(1)
-            else
-                result.minusDays(1)
-            if (!isHoliday(result))
-                numDays--
-        }
+        return calendarOf(system, calendar).addWorkingDays(today, days)
+    }
 
-        return result
+    /**
+     * Number of working days from 'from' (excluded) to 'to' (included), negative if 'to' is before 'from'.
+     */
+    suspend fun workingDaysBetween(from: LocalDate, to: LocalDate, calendar: String? = null): Long =
+        fromHolidayBitmap(calendar) { systemDateRepository.kWorkingDaysBetween(from, to) }
+            ?: businessCalendar(calendar).workingDaysBetween(from, to)
+
+    /**
+     * The declared holidays in the range (both dates inclusive).
+     */
+    suspend fun holidaysBetween(from: LocalDate, to: LocalDate, calendar: String? = null) =
+        businessCalendar(calendar).holidaysBetween(from, to)
+
+    /**
+     * The next working day after the date (today if no date is given).
+     */
+    suspend fun nextWorkingDay(day: LocalDate?, calendar: String? = null): LocalDate {
+        val system = calendar()
+
+        return calendarOf(system, calendar).nextWorkingDay(day ?: getToday(system))
+    }
+
+    /**
+     * The previous working day before the date (today if no date is given).
+     */
+    suspend fun previousWorkingDay(day: LocalDate?, calendar: String? = null): LocalDate {
+        val system = calendar()
+
+        return calendarOf(system, calendar).previousWorkingDay(day ?: getToday(system))
     }
 
+    /**
+     * The calendar (see calendarOf), e.g. to export it.
+     */
+    suspend fun getBusinessCalendar(calendar: String?): BusinessCalendar = businessCalendar(calendar)
+
+    /**
+     * Batch calendar queries (holiday flags, working-day offsets and counts), all of them computed with the same
+     * calendar snapshot, in the order received. The queries are streamed, so a very large batch is never held in
+     * memory.
+     */
+    fun calendarBatch(queries: Flux<CalendarQuery>, calendar: String? = null): Flux<CalendarAnswer> =
+        mono { calendar().let { it to calendarOf(it, calendar) } }.flatMapMany { (system, businessCalendar) ->
+            val today = getToday(system)
+
+            queries.map { query ->
+                val date = query.date ?: today
+
+                CalendarAnswer(date = date,
+                               holiday = businessCalendar.isHoliday(date),
+                               days = query.days,
+                               workingDay = query.days?.let { businessCalendar.addWorkingDays(date, it) },
+                               to = query.to,
+                               workingDays = query.to?.let { businessCalendar.workingDaysBetween(date, it) })
+            }
+        }
+
     /**
      * Methods for document types. In this type we suppose to have many DocumentTypes so we use a lot
      * the Redis memory database in each call
@@ -211,33 +581,119 @@ class CacheService(val paramService: ParamService,
     }
 
     /**
-     * Some document type has been modified (i.e., received an event), therefore invalidate all documentTypes from Redis
+     * Some document type has been modified (i.e., received an event), therefore reload all documentTypes in
+     * background. The old catalog is kept until the new one has been swapped into Redis.
      */
-    fun invalidateDocumentTypes() {
-        try {
-            logger.debug("Invalidate all document types from cached. Some data was changed.")
-            documentTypeRepository.deleteAll()
-        } catch (e: Exception) {
-            logger.error("Could not delete all document types from cache")
+    fun invalidateDocumentTypes(): Job {
+        logger.debug("Refresh all document types in cache. Some data was changed.")
+
+        if (!redis.available()) {
+            pendingCatalogs.add(DOCUMENT_TYPE_CATALOG)
+            return refreshScope.launch {
+                try {
+                    staleDocumentTypes.set(paramService.allDocumentTypes().ifEmpty { staleDocumentTypes.get() })
+                    documentTypesGeneration.incrementAndGet()
+                } catch (e: Exception) {
+                    logger.error("Could not refresh the document types in memory: ${e.message}")
+                }
+            }
+        }
+        return refreshScope.launch {
+            try {
+                loadDocumentTypes(refresh = true)
+                documentTypesGeneration.incrementAndGet()
+                broadcaster.publish(DOCUMENT_TYPE_CATALOG)
+            } catch (e: Exception) {
+                logger.error("Could not refresh the document types in cache: ${e.message}")
+            }
         }
     }
 
+    /**
+     * The generation of the document types catalog. It changes each time the catalog is invalidated.
+     */
+    fun documentTypesGeneration() = documentTypesGeneration.get()
+
     /**
      * This method gets all de documentType from cache, if not it read from the microservice
      */
-    suspend fun getDocumentTypes(): List<DocumentType> {
+    suspend fun getDocumentTypes(): List<DocumentType> = readDocumentTypes().first
+
+    /**
+     * The document types and false if they are a fallback (the last ones read, or read from param in degraded mode)
+     * instead of the catalog of the current generation (see EncodedCatalogCache).
+     */
+    suspend fun readDocumentTypes(): Pair<List<DocumentType>, Boolean> {
         logger.debug("Read the document types")
-        val documentTypes = mutableListOf<DocumentType>()
 
-        documentTypesCache().collect(documentTypes::add)
+        var current = true
+        val documentTypes = try {
+            fromRedis(local = {
+                current = false
+                staleDocumentTypes.get().ifEmpty { paramService.allDocumentTypes() }
+            }) {
+                documentTypesCache().toList().ifEmpty { loadDocumentTypes(refresh = false) }
+            }
+        } catch (e: TransientDataAccessException) {
+            logger.warn("Param service not available (${e.message}), use the last document types read")
+            current = false
+            staleDocumentTypes.get().ifEmpty { throw e }
+        }
+        if (documentTypes.isNotEmpty()) staleDocumentTypes.set(documentTypes)
+
+        return documentTypes to current
+    }
 
-        if  (documentTypes.isEmpty()) {
-            val docs = paramService.allDocumentTypes()
-            logger.info("Read from  param microservice ${docs.size} and save them Redis cache")
-            documentTypeRepository.kSaveAll(docs).collect(documentTypes::add)
+    /**
+     * Reads the document types from the param microservice and swaps them into Redis. Just one load runs at a time
+     * in the cluster, the readers that were waiting for it find the catalog already in Redis.
+     */
+    private suspend fun loadDocumentTypes(refresh: Boolean): List<DocumentType> = documentTypesLoad.withLock {
+        val cached = if (refresh) emptyList() else documentTypesCache().toList()
+
+        cached.ifEmpty {
+            loaderLock.load(DOCUMENT_TYPE_CATALOG, leader = { swapDocumentTypes(it) }) {
+                // ^ other replica was the loader. If it failed, or it started before the change we must refresh,
+                // try once to be the loader
+                val loaded = if (refresh) emptyList() else documentTypesCache().toList()
+
+                loaded.ifEmpty {
+                    loaderLock.load(DOCUMENT_TYPE_CATALOG, leader = { swapDocumentTypes(it) }) {
+                        documentTypesCache().toList()
+                    }
+                }
+            }
         }
+    }
 
-        return documentTypes
+    private suspend fun swapDocumentTypes(lease: CatalogLease): List<DocumentType> {
+        val docs = paramService.allDocumentTypes()
+
+        if (docs.isEmpty()) {
+            logger.warn("The param microservice returned no document types, keep the current catalog in cache")
+            return documentTypesCache().toList()
+        }
+        logger.info("Read from  param microservice ${docs.size} and swap them into Redis cache")
+
+        return try {
+            documentTypeRepository.kReplaceAll(docs, loaderLock.fencedSwap(lease)).toList()
+        } catch (e: ConcurrencyFailureException) {
+            logger.warn("The document types load lost its lease, use the catalog swapped by the new loader")
+            documentTypesCache().toList()
+        }
     }
 
+    /**
+     * A calendar load of one generation. All the callers of the same generation wait for its result.
+     */
+    private class CalendarLoad(val generation: Long) {
+        val result = CompletableDeferred<CalendarSnapshot>()
+        @Volatile var failed = false
+    }
+
+    companion object {
+        const val SYSTEM_RATE_CATALOG = "SYSTEM_RATE"
+        const val SYSTEM_DATE_CATALOG = "SYSTEM_DATE"
+        const val DOCUMENT_TYPE_CATALOG = "DOCUMENT_TYPE"
+    }
 }
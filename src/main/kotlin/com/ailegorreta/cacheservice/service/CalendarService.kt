@@ -0,0 +1,142 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CalendarService.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.CatalogProperties
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.cacheservice.model.BitmapCalendar
+import com.ailegorreta.cacheservice.model.BusinessCalendar
+import com.ailegorreta.cacheservice.model.CalendarSnapshot
+import com.ailegorreta.commons.utils.HasLogger
+import org.springframework.stereotype.Service
+import java.time.LocalDate
+import java.time.format.DateTimeParseException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * The named holiday calendars declared in the configuration (see CatalogProperties), e.g., the calendars of other
+ * markets. Each one is read from a configured catalog (see CatalogCacheService), one entry per holiday, with its own
+ * weekend days, and kept as a per-day bitmap (see BitmapCalendar) over the configured window of years.
+ *
+ * The day math endpoints receive a calendar: a name, or several ones separated by commas for a combined calendar
+ * (the bitwise OR of their bitmaps, a day is a working day if it is in all of them). The system calendar (FESTIVO
+ * system dates) is named 'system'. Each calendar and combination is built once and cached until the catalog of any of
+ * its calendars (or the system calendar) changes.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Service
+class CalendarService(catalogProperties: CatalogProperties,
+                      private val catalogs: CatalogCacheService,
+                      serviceConfig: ServiceConfig) : HasLogger {
+    private val calendars = catalogProperties.calendars
+    private val from = LocalDate.of(serviceConfig.calendarFromYear, 1, 1)
+    private val days = (LocalDate.of(serviceConfig.calendarToYear, 12, 31).toEpochDay() - from.toEpochDay() + 1).toInt()
+    private val generations = calendars.mapValues { AtomicLong(1L) }
+    private val bitmaps = ConcurrentHashMap<String, Stamped>()
+
+    init {
+        calendars.forEach { (name, calendar) ->
+            if (name == SYSTEM || name.contains(','))
+                throw IllegalArgumentException("The calendar name $name is not valid")
+            if (!catalogs.isCatalog(calendar.catalog))
+                throw IllegalArgumentException("The calendar $name reads the catalog ${calendar.catalog} that is not configured")
+        }
+        if (calendars.isNotEmpty()) logger.info("Configured calendars: ${calendars.keys}, from $from, $days days")
+        catalogs.addListener { catalog ->
+            calendars.filterValues { it.catalog == catalog }
+                     .keys
+                     .forEach { name ->
+                         logger.debug("The holidays of the calendar {} changed", name)
+                         generations[name]!!.incrementAndGet()
+                     }
+        }
+    }
+
+    fun names(): Set<String> = calendars.keys + SYSTEM
+
+    /**
+     * The calendar (one name or several ones separated by commas) computed with the system calendar snapshot. The
+     * system calendar alone is the snapshot itself, not limited to the window.
+     */
+    suspend fun get(calendar: String, system: CalendarSnapshot): BusinessCalendar {
+        val names = calendar.split(',').map { it.trim() }.filter { it.isNotEmpty() }.distinct().sorted()
+
+        if (names.isEmpty() || names == listOf(SYSTEM)) return system
+        names.forEach {
+            if (it != SYSTEM && !calendars.containsKey(it))
+                throw IllegalArgumentException("The calendar $it is not configured in cache")
+        }
+        if (names.size == 1) return named(names[0], system)
+
+        val stamp = names.map { stamp(it, system) }
+
+        return cached(names.joinToString(","), stamp) {
+            logger.debug("Combine the calendars {}", names)
+            names.map { named(it, system) }.reduce(BitmapCalendar::or)
+        }
+    }
+
+    private suspend fun named(name: String, system: CalendarSnapshot): BitmapCalendar {
+        val generation = stamp(name, system)
+        // ^ read before the holidays, so a build that races a change is not valid for the new generation
+
+        return cached(name, listOf(generation)) {
+            if (name == SYSTEM)
+                BitmapCalendar.of(SYSTEM, generation, from, days, BitmapCalendar.WEEKEND, system.holidays)
+            else {
+                val calendar = calendars[name]!!
+
+                BitmapCalendar.of(name, generation, from, days, calendar.weekend.toSet(), holidays(name, calendar))
+            }
+        }
+    }
+
+    private fun stamp(name: String, system: CalendarSnapshot) =
+        if (name == SYSTEM) system.generation else generations[name]!!.get()
+
+    private suspend fun cached(key: String, stamp: List<Long>, build: suspend () -> BitmapCalendar): BitmapCalendar {
+        bitmaps[key]?.let { if (it.stamp == stamp) return it.calendar }
+
+        return build().also { bitmaps[key] = Stamped(stamp, it) }
+    }
+
+    private suspend fun holidays(name: String, calendar: CatalogProperties.Calendar): List<LocalDate> =
+        catalogs.getAll(calendar.catalog).mapNotNull { entry ->
+            try {
+                LocalDate.parse(entry.path(calendar.field).asText())
+            } catch (e: DateTimeParseException) {
+                logger.warn("Ignore the entry $entry of the calendar $name, its ${calendar.field} is not a date")
+                null
+            }
+        }
+
+    private class Stamped(val stamp: List<Long>, val calendar: BitmapCalendar)
+
+    companion object {
+        const val SYSTEM = "system"
+    }
+}
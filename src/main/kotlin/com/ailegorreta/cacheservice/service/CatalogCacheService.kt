@@ -0,0 +1,245 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogCacheService.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.CatalogProperties
+import com.ailegorreta.cacheservice.repository.JsonCatalogRepository
+import com.ailegorreta.cacheservice.repository.TrackedHashCache
+import com.ailegorreta.cacheservice.service.CatalogLoaderLock.CatalogLease
+import com.ailegorreta.commons.utils.HasLogger
+import com.fasterxml.jackson.databind.node.ObjectNode
+import kotlinx.coroutines.*
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.reactor.awaitSingle
+import kotlinx.coroutines.reactor.awaitSingleOrNull
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import org.springframework.dao.ConcurrencyFailureException
+import org.springframework.dao.TransientDataAccessException
+import org.springframework.data.redis.core.ReactiveRedisOperations
+import org.springframework.stereotype.Service
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * Cache of the additional param-service catalogs declared in the configuration (see CatalogProperties), so a new
+ * catalog needs no new code: each one is loaded whole from the param microservice with its GraphQL query, stored
+ * in Redis (see JsonCatalogRepository) and read by its key.
+ *
+ * The loads, invalidations and degraded mode work as for the document types (see CacheService): just one replica
+ * loads a catalog (CatalogLoaderLock) and swaps it atomically, an event whose name contains the catalog event
+ * reloads it in background, and while Redis is not reachable the catalog is served from memory.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Service
+class CatalogCacheService(catalogProperties: CatalogProperties,
+                          redisOperations: ReactiveRedisOperations<String, ObjectNode>,
+                          trackedCache: TrackedHashCache,
+                          private val paramService: ParamService,
+                          private val loaderLock: CatalogLoaderLock,
+                          private val broadcaster: CacheInvalidationBroadcaster,
+                          private val redis: RedisAvailability) : HasLogger {
+    private val repositories = catalogProperties.catalogs.mapValues { (name, catalog) ->
+        JsonCatalogRepository(name, catalog, redisOperations, trackedCache)
+    }
+    private val loads = repositories.mapValues { Mutex() }
+    private val staleCatalogs = ConcurrentHashMap<String, List<ObjectNode>>()
+    // ^ also the in-memory catalogs of the degraded mode
+    private val pendingCatalogs = ConcurrentHashMap.newKeySet<String>()
+    private val listeners = CopyOnWriteArrayList<(String) -> Unit>()
+    private val refreshScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    init {
+        if (repositories.isNotEmpty()) logger.info("Configured catalogs in cache: ${repositories.keys}")
+        redis.addListener { mode ->
+            if (mode == RedisAvailability.Mode.REDIS)
+                pendingCatalogs.toList().forEach { if (pendingCatalogs.remove(it)) invalidate(it) }
+        }
+        broadcaster.addListener { invalidation ->
+            repositories.values.find { it.redisKey == invalidation.catalog }?.let { changed(it.name) }
+            // ^ other replica reloaded the catalog
+        }
+    }
+
+    /**
+     * Adds a listener of the catalogs changed (in this replica or in other one), with the catalog name.
+     */
+    fun addListener(listener: (String) -> Unit) {
+        listeners.add(listener)
+    }
+
+    fun names(): Set<String> = repositories.keys
+
+    fun isCatalog(name: String) = repositories.containsKey(name)
+
+    /**
+     * All the entries of the catalog, from Redis or (the first time) from the param microservice.
+     */
+    suspend fun getAll(name: String): List<ObjectNode> {
+        val repository = repository(name)
+        val entries = try {
+            fromRedis(local = { local(name) }) {
+                repository.kFindAll().toList().ifEmpty { load(repository, refresh = false) }
+            }
+        } catch (e: TransientDataAccessException) {
+            logger.warn("Param service not available (${e.message}), use the last catalog $name read")
+            staleCatalogs[name] ?: throw e
+        }
+        if (entries.isNotEmpty()) staleCatalogs[name] = entries
+
+        return entries.map(::entry)
+    }
+
+    /**
+     * The entry of the catalog with the 'key', by its index. If the catalog is not in Redis yet it is loaded.
+     */
+    suspend fun get(name: String, key: String): ObjectNode? {
+        val repository = repository(name)
+        val found = fromRedis(local = { local(name).firstOrNull { repository.keyOf(it) == key } }) {
+            repository.findByKey(key).awaitSingleOrNull()
+                ?: if (repository.kCount() == 0L) {
+                       load(repository, refresh = false)
+                       repository.findByKey(key).awaitSingleOrNull()
+                   } else null
+        }
+
+        return found?.let(::entry)
+    }
+
+    /**
+     * Some entry of the catalog has been modified, reload it in background. The old catalog is kept until the new
+     * one has been swapped into Redis.
+     */
+    fun invalidate(name: String): Job {
+        val repository = repository(name)
+
+        logger.debug("Refresh the catalog $name in cache. Some data was changed.")
+        if (!redis.available()) {
+            pendingCatalogs.add(name)
+            return refreshScope.launch {
+                try {
+                    staleCatalogs[name] = paramService.allCatalog(repository.catalog.queryName(name)).awaitSingle()
+                    changed(name)
+                } catch (e: Exception) {
+                    logger.error("Could not refresh the catalog $name in memory: ${e.message}")
+                }
+            }
+        }
+        return refreshScope.launch {
+            try {
+                load(repository, refresh = true)
+                broadcaster.publish(repository.redisKey)
+                changed(name)
+            } catch (e: Exception) {
+                logger.error("Could not refresh the catalog $name in cache: ${e.message}")
+            }
+        }
+    }
+
+    /**
+     * Invalidates the catalogs whose event is contained in the event name. Answers their names.
+     */
+    fun invalidateByEvent(eventName: String): List<String> =
+        repositories.filterValues { eventName.contains(it.catalog.event) }
+                    .keys
+                    .onEach(::invalidate)
+                    .toList()
+
+    private fun changed(name: String) =
+        listeners.forEach { listener ->
+            try {
+                listener(name)
+            } catch (e: Exception) {
+                logger.error("Could not notify the change of the catalog $name: ${e.message}")
+            }
+        }
+
+    private fun repository(name: String) =
+        repositories[name] ?: throw IllegalArgumentException("The catalog $name is not configured in cache")
+
+    /**
+     * The entry without the Redis id and version.
+     */
+    private fun entry(node: ObjectNode): ObjectNode =
+        node.deepCopy().apply { remove(listOf(JsonCatalogRepository.ID, JsonCatalogRepository.VERSION)) }
+
+    /**
+     * Runs 'block' if Redis is reachable, otherwise (or if it is not reachable anymore) runs 'local'.
+     */
+    private suspend fun <T> fromRedis(local: suspend () -> T, block: suspend () -> T): T {
+        if (redis.available()) {
+            try {
+                return block()
+            } catch (e: Exception) {
+                if (!RedisAvailability.isConnectionFailure(e)) throw e
+                redis.failed(e)
+            }
+        }
+        return local()
+    }
+
+    private suspend fun local(name: String): List<ObjectNode> =
+        staleCatalogs[name] ?: paramService.allCatalog(repository(name).catalog.queryName(name)).awaitSingle()
+                                           .also { staleCatalogs[name] = it }
+
+    /**
+     * Reads the catalog from the param microservice and swaps it into Redis. Just one load runs at a time in the
+     * cluster, the readers that were waiting for it find the catalog already in Redis.
+     */
+    private suspend fun load(repository: JsonCatalogRepository, refresh: Boolean): List<ObjectNode> =
+        loads[repository.name]!!.withLock {
+            val cached = if (refresh) emptyList() else repository.kFindAll().toList()
+
+            cached.ifEmpty {
+                loaderLock.load(repository.redisKey, leader = { swap(repository, it) }) {
+                    val loaded = if (refresh) emptyList() else repository.kFindAll().toList()
+
+                    loaded.ifEmpty {
+                        loaderLock.load(repository.redisKey, leader = { swap(repository, it) }) {
+                            repository.kFindAll().toList()
+                        }
+                    }
+                }
+            }
+        }
+
+    private suspend fun swap(repository: JsonCatalogRepository, lease: CatalogLease): List<ObjectNode> {
+        val entries = paramService.allCatalog(repository.catalog.queryName(repository.name)).awaitSingle()
+
+        if (entries.isEmpty()) {
+            logger.warn("The param microservice returned no entries of ${repository.name}, keep the current catalog in cache")
+            return repository.kFindAll().toList()
+        }
+        logger.info("Read from  param microservice ${entries.size} entries of ${repository.name} and swap them into Redis cache")
+
+        return try {
+            repository.kReplaceAll(entries, loaderLock.fencedSwap(lease)).toList()
+        } catch (e: ConcurrencyFailureException) {
+            logger.warn("The catalog ${repository.name} load lost its lease, use the catalog swapped by the new loader")
+            repository.kFindAll().toList()
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogLoaderLock.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.cacheservice.repository.CatalogSwap
+import com.ailegorreta.commons.utils.HasLogger
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.reactive.awaitFirstOrNull
+import kotlinx.coroutines.reactor.awaitSingle
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate
+import org.springframework.data.redis.core.script.RedisScript
+import org.springframework.stereotype.Component
+
+/**
+ * Cluster wide lease for the catalog loads (system dates, document types).
+ *
+ * When a catalog is missing or invalidated just one replica (the lease owner) reads it from the param microservice
+ * and swaps it into Redis. The other replicas wait (polling the lease) and then read the catalog from Redis, so N
+ * replicas cost the param microservice one load instead of N.
+ *
+ * Every lease has a fencing token (a Redis counter per catalog). The swap of the staging hash is done only if the
+ * lease still has the same token, so a loader whose lease expired (e.g., a long GC pause) can never overwrite the
+ * catalog that a newer loader already swapped.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Component
+class CatalogLoaderLock(private val redisTemplate: ReactiveStringRedisTemplate,
+                        private val serviceConfig: ServiceConfig): HasLogger {
+
+    data class CatalogLease(val catalog: String, val fencingToken: Long)
+
+    /**
+     * Runs the leader function if this replica gets the lease of the catalog, otherwise it waits until the lease
+     * owner finishes (or the wait time expires) and runs the follower function.
+     */
+    suspend fun <T> load(catalog: String,
+                         leader: suspend (CatalogLease) -> T,
+                         follower: suspend () -> T): T {
+        val lease = tryAcquire(catalog)
+
+        if (lease != null)
+            try {
+                logger.debug("Got the lease {} for the catalog {}", lease.fencingToken, catalog)
+                return leader(lease)
+            } finally {
+                release(lease)
+            }
+        logger.debug("Other replica is loading the catalog {}, wait for it", catalog)
+        awaitRelease(catalog)
+
+        return follower()
+    }
+
+    /**
+     * The swap used by the repositories' replaceAll: renames the staging hash just if the lease is still valid
+     */
+    fun fencedSwap(lease: CatalogLease) = CatalogSwap { keys, derived ->
+        redisTemplate.execute(SWAP_SCRIPT,
+                              listOf(lockKey(lease.catalog)) + keys.flatMap { listOf(it.key, it.value) } + derived,
+                              listOf(lease.fencingToken.toString(), keys.size.toString()))
+                     .next()
+                     .map { it == 1L }
+    }
+
+    private suspend fun tryAcquire(catalog: String): CatalogLease? {
+        val token = redisTemplate.execute(ACQUIRE_SCRIPT, listOf(lockKey(catalog), fenceKey(catalog)),
+                                          listOf(serviceConfig.loaderLockLease.toMillis().toString()))
+                                 .next()
+                                 .awaitSingle()
+
+        return if (token > 0) CatalogLease(catalog, token) else null
+    }
+
+    private suspend fun release(lease: CatalogLease) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, listOf(lockKey(lease.catalog)), listOf(lease.fencingToken.toString()))
+                         .next()
+                         .awaitFirstOrNull()
+        } catch (e: Exception) {
+            logger.warn("Could not release the lease of the catalog ${lease.catalog}, it expires by itself: ${e.message}")
+        }
+    }
+
+    private suspend fun awaitRelease(catalog: String) {
+        val deadline = System.nanoTime() + serviceConfig.loaderLockWait.toNanos()
+
+        while (redisTemplate.hasKey(lockKey(catalog)).awaitSingle() && System.nanoTime() < deadline)
+            delay(serviceConfig.loaderLockPoll.toMillis())
+    }
+
+    companion object {
+        private const val LOCK_PREFIX = "CATALOG_LOCK:"
+
+        private fun lockKey(catalog: String) = LOCK_PREFIX + catalog
+        private fun fenceKey(catalog: String) = "$LOCK_PREFIX$catalog:FENCE"
+
+        /* KEYS[1] = lock, KEYS[2] = fence counter, ARGV[1] = lease in ms. Answers the fencing token or 0 */
+        private val ACQUIRE_SCRIPT = RedisScript.of<Long>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end
+            local token = redis.call('INCR', KEYS[2])
+            redis.call('SET', KEYS[1], token, 'PX', ARGV[1])
+            return token
+            """.trimIndent(), Long::class.javaObjectType)
+
+        /* KEYS[1] = lock, ARGV[1] = fencing token */
+        private val RELEASE_SCRIPT = RedisScript.of<Long>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end
+            return 0
+            """.trimIndent(), Long::class.javaObjectType)
+
+        /* KEYS[1] = lock, KEYS[2..] = staging key, live key (pairs), then the derived keys, ARGV[1] = fencing token,
+           ARGV[2] = number of pairs */
+        private val SWAP_SCRIPT = RedisScript.of<Long>("""
+            local n = tonumber(ARGV[2]) * 2 + 1
+            if redis.call('GET', KEYS[1]) ~= ARGV[1] then
+                for i = 2, n, 2 do redis.call('DEL', KEYS[i]) end
+                return 0
+            end
+            for i = 2, n, 2 do redis.call('RENAME', KEYS[i], KEYS[i + 1]) end
+            for i = n + 1, #KEYS do redis.call('DEL', KEYS[i]) end
+            return 1
+            """.trimIndent(), Long::class.javaObjectType)
+    }
+}
@@ -0,0 +1,107 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ChangeFeed.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.cacheservice.model.CacheChange
+import com.ailegorreta.commons.utils.HasLogger
+import jakarta.annotation.PreDestroy
+import org.springframework.http.codec.ServerSentEvent
+import org.springframework.stereotype.Service
+import reactor.core.Disposable
+import reactor.core.publisher.BufferOverflowStrategy
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import reactor.core.publisher.Sinks
+
+/**
+ * Feed of the cache changes for the /cache/changes Server-Sent Events, so the downstream services can keep their own
+ * local copies instead of polling.
+ *
+ * The feed receives all the changes broadcast to this replica (see CacheInvalidationBroadcaster), i.e., the same
+ * events that EventService processes, in any replica. The last changes are kept in a bounded replay buffer: a client
+ * that reconnects with the Last-Event-ID header receives the changes it missed. If the changes it missed are not in
+ * the buffer anymore it receives a RESET change and must read again all its data.
+ *
+ * The event ids are the cluster-wide sequence of the changes, so a client can reconnect to any replica.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Service
+class ChangeFeed(private val broadcaster: CacheInvalidationBroadcaster,
+                 private val serviceConfig: ServiceConfig): HasLogger {
+    private val replaySize = serviceConfig.changesReplaySize
+    private val sink = Sinks.many().replay().limit<CacheChange>(replaySize)
+    private val sequences = ArrayDeque<Long>(replaySize)
+    private val subscription: Disposable = broadcaster.changes().subscribe { emit(CacheChange.of(it)) }
+
+    @Synchronized
+    fun emit(change: CacheChange) {
+        if (sequences.size == replaySize) sequences.removeFirst()
+        sequences.addLast(change.sequence)
+        sink.tryEmitNext(change)
+    }
+
+    /**
+     * The changes after 'lastEventId' (just the new ones if it is null), plus a comment every heartbeat so the proxies
+     * and the server idle timeout do not close the connection.
+     */
+    fun changes(lastEventId: Long?): Flux<ServerSentEvent<CacheChange>> = Flux.defer {
+        val (after, oldest) = synchronized(this) {
+            (lastEventId ?: sequences.lastOrNull() ?: 0L) to sequences.firstOrNull()
+        }
+        val missed = when {
+            lastEventId == null -> Mono.just(false)
+            oldest != null -> Mono.just(lastEventId < oldest - 1)
+            // ^ the changes between the last event and the buffer were lost
+            else -> broadcaster.currentSequence()
+                               .map { it > lastEventId }
+                               .onErrorReturn(false)
+                               .defaultIfEmpty(false)
+            // ^ empty buffer (e.g., a new replica): the changes after the last event happened before it started
+        }
+        val resets = missed.filter { it }
+                           .doOnNext { logger.debug("The client missed changes after {}, send a reset", lastEventId) }
+                           .map { CacheChange(sequence = after, catalog = CacheChange.RESET,
+                                              changedAt = System.currentTimeMillis()) }
+        val changes = sink.asFlux()
+                          .filter { it.sequence > after }
+                          .onBackpressureBuffer(replaySize, BufferOverflowStrategy.DROP_OLDEST)
+        val heartbeats = Flux.interval(serviceConfig.changesHeartbeat)
+                             .map { ServerSentEvent.builder<CacheChange>().comment("heartbeat").build() }
+
+        Flux.merge(Flux.concat(resets, changes).map(::event), heartbeats)
+    }
+
+    private fun event(change: CacheChange) = ServerSentEvent.builder(change)
+                                                            .id(change.sequence.toString())
+                                                            .event(change.catalog)
+                                                            .build()
+
+    @PreDestroy
+    fun stop() {
+        subscription.dispose()
+    }
+}
@@ -23,19 +23,15 @@
 package com.ailegorreta.cacheservice.service
 
 import com.ailegorreta.cacheservice.config.ServiceConfig
-import com.ailegorreta.cacheservice.model.SystemRate
-import com.ailegorreta.cacheservice.repository.SystemRateRepository
 import com.ailegorreta.commons.event.EventDTO
 import com.ailegorreta.commons.event.EventType
 import com.ailegorreta.commons.utils.HasLogger
 import com.fasterxml.jackson.databind.JsonNode
 import com.fasterxml.jackson.databind.ObjectMapper
-import com.fasterxml.jackson.databind.node.DoubleNode
-import com.fasterxml.jackson.databind.node.TextNode
 import org.springframework.cloud.stream.function.StreamBridge
 import org.springframework.kafka.annotation.KafkaListener
 import org.springframework.stereotype.Service
-import java.math.BigDecimal
+import java.time.LocalDate
 import java.util.concurrent.CountDownLatch
 
 
@@ -50,8 +46,9 @@ import java.util.concurrent.CountDownLatch
 class EventService(private val streamBridge: StreamBridge,
                    private val serviceConfig: ServiceConfig,
                    private val mapper: ObjectMapper,
-                   private val systemRateRepository: SystemRateRepository,
-                   private val cacheService: CacheService): HasLogger {
+                   private val cacheService: CacheService,
+                   private val catalogCacheService: CatalogCacheService,
+                   private val rateHistory: RateHistoryService): HasLogger {
 
     private val coreName = "cache"
 
@@ -71,11 +68,18 @@ class EventService(private val streamBridge: StreamBridge,
             // we need to update the cache system variable
             val eventBody = eventDTO.eventBody as JsonNode      // as HashMap<*,*>
             val datos = eventBody["datos"] as JsonNode          // as HashMap<*,*>
-            val name = datos["name"] as TextNode
-            val rate = datos["rate"] as DoubleNode
+            val name = datos["name"].asText()
+            val rate = datos["rate"].decimalValue()
+            val effective = datos["effectiveDate"]?.takeIf { it.isTextual }?.let { LocalDate.parse(it.asText()) }
+                                ?: LocalDate.now()
 
             logger.debug("Modify a system variable $name with value:$rate")
-            systemRateRepository.save(SystemRate (name.asText(), rate =  BigDecimal.valueOf(rate.asDouble())))
+            try {
+                cacheService.updateSystemRate(name, rate).block()
+            } catch (e: Exception) {
+                logger.error("Could not update the system variable $name in cache: ${e.message}")
+            }
+            rateHistory.record(name, rate, effective).block()
             sendEvent(eventDTO.correlationId ?: "NA", "core-service",
                       "INVALIDA_CACHE_VARIABLE", datos)
             latch.countDown()       // just for testing purpose
@@ -91,6 +95,14 @@ class EventService(private val streamBridge: StreamBridge,
             sendEvent(eventDTO.correlationId ?: "NA", "core-service",
                     "INVALIDA_CACHE_TIPO_DOCUMENTOS", "sin datos")
             latch.countDown()       // just for testing purpose
+        } else {
+            // the configured catalogs (see CatalogProperties)
+            catalogCacheService.invalidateByEvent(eventDTO.eventName).forEach { name ->
+                logger.debug("Modify the catalog $name invalidate it in redis")
+                sendEvent(eventDTO.correlationId ?: "NA", "core-service",
+                          "INVALIDA_CACHE_CATALOGO", name)
+                latch.countDown()   // just for testing purpose
+            }
         }
         return eventDTO
 
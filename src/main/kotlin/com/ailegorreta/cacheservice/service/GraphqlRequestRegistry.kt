@@ -0,0 +1,141 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  GraphqlRequestRegistry.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.CatalogProperties
+import com.ailegorreta.commons.utils.HasLogger
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver
+import org.springframework.stereotype.Component
+import java.io.ByteArrayOutputStream
+
+/**
+ * Registry of the GraphQL requests that the cache-service sends to the param microservice.
+ *
+ * All the queries in the `graphql` resources folder are read and validated once at startup (a bad query stops the service
+ * instead of failing the first call). For each query the JSON request body is pre-encoded as a template:
+ * `{"query":"...","variables":` and the closing `}`. So a call just writes its variables between them and no
+ * classpath I/O or reserialization of the query is done per call.
+ *
+ * The queries of the configured catalogs (see CatalogProperties) are validated too: the inline ones are registered
+ * with the catalog name, the others must exist in the folder.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Component
+class GraphqlRequestRegistry(private val mapper: ObjectMapper,
+                             private val catalogs: CatalogProperties = CatalogProperties()): HasLogger {
+    private val requests: Map<String, GraphqlRequest> = load()
+
+    /**
+     * Returns the JSON request body of the query `name` with its variables, ready to be sent as the body.
+     */
+    fun body(name: String, variables: Map<String, Any?>? = null): ByteArray {
+        val request = requests[name] ?: throw IllegalArgumentException("No GraphQL query $name was found in graphql/")
+
+        if (variables.isNullOrEmpty())
+            return request.bodyWithoutVariables
+
+        variables.keys.find { !request.variables.contains(it) }?.let {
+            throw IllegalArgumentException("The variable $it is not declared in the GraphQL query $name")
+        }
+
+        val out = ByteArrayOutputStream(request.prefix.size + 64)
+
+        out.write(request.prefix)
+        mapper.writeValue(out, variables)   // close the stream is a no-op for ByteArrayOutputStream
+        out.write(SUFFIX)
+
+        return out.toByteArray()
+    }
+
+    fun names(): Set<String> = requests.keys
+
+    private fun load(): Map<String, GraphqlRequest> {
+        val resources = PathMatchingResourcePatternResolver(javaClass.classLoader)
+                                    .getResources("classpath*:$LOCATION*.graphql")
+        val result = HashMap<String, GraphqlRequest>()
+
+        resources.forEach { resource ->
+            val name = resource.filename!!.removeSuffix(".graphql")
+            val query = resource.inputStream.use { String(it.readAllBytes()) }
+
+            result[name] = validate(name, query)
+        }
+        if (result.isEmpty())
+            throw IllegalStateException("No GraphQL queries were found in $LOCATION")
+        catalogs.catalogs.forEach { (name, catalog) ->
+            val queryName = catalog.queryName(name)
+
+            if (catalog.isInline())
+                result[queryName] = validate(queryName, catalog.query)
+            else if (!result.containsKey(queryName))
+                throw IllegalStateException("The GraphQL query $queryName of the catalog $name was not found in $LOCATION")
+        }
+        logger.info("Loaded the GraphQL queries ${result.keys}")
+
+        return result
+    }
+
+    /**
+     * A light validation of the query: it must be one named operation with balanced braces. The declared variables
+     * are kept to validate the calls.
+     */
+    private fun validate(name: String, query: String): GraphqlRequest {
+        if (!OPERATION.containsMatchIn(query))
+            throw IllegalStateException("The GraphQL query $name must be a named query or mutation")
+
+        var depth = 0
+
+        query.forEach { c ->
+            if (c == '{') depth++
+            if (c == '}' && --depth < 0)
+                throw IllegalStateException("The GraphQL query $name has unbalanced braces")
+        }
+        if (depth != 0)
+            throw IllegalStateException("The GraphQL query $name has unbalanced braces")
+
+        val prefix = PREFIX + mapper.writeValueAsBytes(query) + VARIABLES
+
+        return GraphqlRequest(prefix = prefix,
+                              bodyWithoutVariables = prefix + NULL + SUFFIX,
+                              variables = VARIABLE.findAll(query).map { it.groupValues[1] }.toSet())
+    }
+
+    private class GraphqlRequest(val prefix: ByteArray,
+                                 val bodyWithoutVariables: ByteArray,
+                                 val variables: Set<String>)
+
+    companion object {
+        const val LOCATION = "graphql/"
+
+        private val OPERATION = Regex("^\\s*(query|mutation)\\s+\\w+", RegexOption.MULTILINE)
+        private val VARIABLE = Regex("\\$(\\w+)\\s*:")
+        private val PREFIX = "{\"query\":".toByteArray()
+        private val VARIABLES = ",\"variables\":".toByteArray()
+        private val NULL = "null".toByteArray()
+        private val SUFFIX = "}".toByteArray()
+    }
+}
@@ -0,0 +1,272 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamCallGuard.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.commons.utils.HasLogger
+import io.micrometer.core.instrument.Counter
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.Timer
+import org.springframework.dao.QueryTimeoutException
+import org.springframework.dao.TransientDataAccessResourceException
+import org.springframework.stereotype.Component
+import org.springframework.web.reactive.function.client.WebClientResponseException
+import reactor.core.publisher.Mono
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Guard for the calls to the param microservice: an adaptive concurrency limit, a circuit breaker and a deadline
+ * per call.
+ *
+ * - The concurrency limit is AIMD: it grows by one every 'limit' calls answered below the latency target and it is
+ *   multiplied by the backoff when a call is slower than the target, times out or fails. So when param-service slows
+ *   down the cache-service sends fewer calls instead of piling up thousands of pending requests.
+ * - The circuit breaker opens after consecutive failures. While open the calls are rejected at once; after the open
+ *   time some probes are let through (half-open) and the first answer decides if it closes or opens again.
+ *
+ * A rejected call fails with TransientDataAccessResourceException and a call that exceeds its deadline fails with
+ * QueryTimeoutException, so the callers (see CacheService) serve the cached or stale value.
+ *
+ * Metrics: param.client.limit, param.client.inflight, param.client.breaker.state (0 closed, 1 half-open, 2 open),
+ * param.client.rejected (tags call and reason), param.client.limit.changes (tag direction) and param.client.calls
+ * (tags call and outcome).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Component
+class ParamCallGuard(private val serviceConfig: ServiceConfig,
+                     private val meterRegistry: MeterRegistry): HasLogger {
+
+    val limit = AimdLimit(initial = serviceConfig.paramClientLimitInitial,
+                          min = serviceConfig.paramClientLimitMin,
+                          max = serviceConfig.paramClientLimitMax,
+                          latencyTarget = serviceConfig.paramClientLatencyTarget,
+                          backoff = serviceConfig.paramClientLimitBackoff) { old, new ->
+        logger.debug("The param-service concurrency limit changed from {} to {}", old, new)
+        Counter.builder("param.client.limit.changes")
+               .description("Changes of the adaptive concurrency limit of the param-service calls")
+               .tag("direction", if (new > old) "increase" else "decrease")
+               .register(meterRegistry)
+               .increment()
+    }
+
+    val breaker = CircuitBreaker(failureThreshold = serviceConfig.paramClientBreakerFailures,
+                                 openDuration = serviceConfig.paramClientBreakerOpen,
+                                 halfOpenProbes = serviceConfig.paramClientBreakerProbes) { state ->
+        logger.warn("The param-service circuit breaker is now {}", state)
+    }
+
+    init {
+        Gauge.builder("param.client.limit", limit) { it.current().toDouble() }
+             .description("Adaptive concurrency limit of the param-service calls")
+             .register(meterRegistry)
+        Gauge.builder("param.client.inflight", limit) { it.inFlight().toDouble() }
+             .description("Param-service calls in flight")
+             .register(meterRegistry)
+        Gauge.builder("param.client.breaker.state", breaker) { it.state.ordinal.toDouble() }
+             .description("Param-service circuit breaker: 0 closed, 1 half-open, 2 open")
+             .register(meterRegistry)
+    }
+
+    /**
+     * Runs the call if the breaker and the concurrency limit let it, with the deadline 'timeout'.
+     */
+    fun <T : Any> call(name: String, timeout: Duration, call: Mono<T>): Mono<T> = Mono.defer {
+        if (!limit.tryAcquire())
+            return@defer rejected(name, "limit")
+        if (!breaker.tryAcquire()) {
+            limit.release(latency = null, dropped = false)
+            return@defer rejected(name, "breaker")
+        }
+
+        val start = System.nanoTime()
+        val finished = AtomicBoolean()
+
+        fun finish(outcome: Outcome) {
+            if (!finished.compareAndSet(false, true)) return
+
+            val latency = System.nanoTime() - start
+
+            when (outcome) {
+                Outcome.SUCCESS -> breaker.onSuccess()
+                Outcome.FAILURE, Outcome.TIMEOUT -> breaker.onFailure()
+                Outcome.CANCELLED -> breaker.onCancel()
+            }
+            limit.release(latency = if (outcome == Outcome.CANCELLED) null else latency,
+                          dropped = outcome == Outcome.FAILURE || outcome == Outcome.TIMEOUT)
+            Timer.builder("param.client.calls")
+                 .description("Calls to the param-service")
+                 .tags("call", name, "outcome", outcome.name.lowercase())
+                 .register(meterRegistry)
+                 .record(latency, TimeUnit.NANOSECONDS)
+        }
+
+        call.timeout(timeout, Mono.defer {
+                Mono.error(QueryTimeoutException("The param-service call $name exceeded its deadline of $timeout"))
+            })
+            .doOnSuccess { finish(Outcome.SUCCESS) }
+            .doOnError { e ->
+                finish(when {
+                    e is QueryTimeoutException -> Outcome.TIMEOUT
+                    e is WebClientResponseException && e.statusCode.is4xxClientError -> Outcome.SUCCESS
+                    // ^ param-service answered, the request was wrong
+                    else -> Outcome.FAILURE
+                })
+            }
+            .doOnCancel { finish(Outcome.CANCELLED) }
+    }
+
+    private fun <T : Any> rejected(name: String, reason: String): Mono<T> {
+        Counter.builder("param.client.rejected")
+               .description("Param-service calls rejected by the concurrency limit or the circuit breaker")
+               .tags("call", name, "reason", reason)
+               .register(meterRegistry)
+               .increment()
+
+        return Mono.error(TransientDataAccessResourceException("The param-service call $name was rejected by the $reason"))
+    }
+
+    private enum class Outcome { SUCCESS, FAILURE, TIMEOUT, CANCELLED }
+
+    /**
+     * Additive increase, multiplicative decrease concurrency limit.
+     */
+    class AimdLimit(initial: Int,
+                    private val min: Int,
+                    private val max: Int,
+                    latencyTarget: Duration,
+                    private val backoff: Double,
+                    private val onChange: (Int, Int) -> Unit = { _, _ -> }) {
+        private val latencyTarget = latencyTarget.toNanos()
+        private val inFlight = AtomicInteger()
+        @Volatile private var limit = initial.coerceIn(min, max).toDouble()
+
+        fun current() = limit.toInt()
+
+        fun inFlight() = inFlight.get()
+
+        fun tryAcquire(): Boolean {
+            while (true) {
+                val n = inFlight.get()
+
+                if (n >= current()) return false
+                if (inFlight.compareAndSet(n, n + 1)) return true
+            }
+        }
+
+        /**
+         * Releases a call. A null latency (i.e., cancelled or not sent) does not change the limit.
+         */
+        fun release(latency: Long?, dropped: Boolean) {
+            val used = inFlight.getAndDecrement()
+
+            if (latency == null && !dropped) return
+
+            val (old, new) = synchronized(this) {
+                val old = current()
+
+                limit = if (dropped || latency!! > latencyTarget)
+                            max(min.toDouble(), limit * backoff)
+                        else if (used * 2 >= limit)        // grow just if the limit is being used
+                            min(max.toDouble(), limit + 1.0 / limit)
+                        else
+                            limit
+                old to current()
+            }
+            if (old != new) onChange(old, new)
+        }
+    }
+
+    /**
+     * Circuit breaker with consecutive failures, open time and half-open probes.
+     */
+    class CircuitBreaker(private val failureThreshold: Int,
+                         openDuration: Duration,
+                         private val halfOpenProbes: Int,
+                         private val clock: () -> Long = System::nanoTime,
+                         private val onStateChange: (State) -> Unit = {}) {
+        enum class State { CLOSED, HALF_OPEN, OPEN }
+
+        private val openDuration = openDuration.toNanos()
+        private var failures = 0
+        private var openedAt = 0L
+        private var probes = 0
+
+        @Volatile var state = State.CLOSED
+            private set
+
+        @Synchronized
+        fun tryAcquire(): Boolean = when (state) {
+            State.CLOSED -> true
+            State.OPEN -> if (clock() - openedAt >= openDuration) {
+                              transition(State.HALF_OPEN)
+                              probes = 1
+                              true
+                          } else false
+            State.HALF_OPEN -> if (probes < halfOpenProbes) { probes++; true } else false
+        }
+
+        @Synchronized
+        fun onSuccess() {
+            when (state) {
+                State.HALF_OPEN -> { probes--; failures = 0; transition(State.CLOSED) }
+                State.CLOSED -> failures = 0
+                State.OPEN -> {}            // a call sent before the breaker opened
+            }
+        }
+
+        @Synchronized
+        fun onFailure() {
+            when (state) {
+                State.HALF_OPEN -> { probes--; open() }
+                State.CLOSED -> if (++failures >= failureThreshold) open()
+                State.OPEN -> {}
+            }
+        }
+
+        @Synchronized
+        fun onCancel() {
+            if (state == State.HALF_OPEN) probes--
+        }
+
+        private fun open() {
+            openedAt = clock()
+            failures = 0
+            transition(State.OPEN)
+        }
+
+        private fun transition(newState: State) {
+            if (state == newState) return
+            state = newState
+            onStateChange(newState)
+        }
+    }
+}
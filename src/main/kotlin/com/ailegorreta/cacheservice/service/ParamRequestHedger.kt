@@ -0,0 +1,152 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamRequestHedger.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.commons.utils.HasLogger
+import io.micrometer.core.instrument.Counter
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.MeterRegistry
+import org.springframework.stereotype.Component
+import reactor.core.publisher.Mono
+import reactor.core.publisher.Sinks
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicReference
+import kotlin.math.ceil
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Hedging of the idempotent reads to the param microservice (optional, see cache-service.param-client.hedge).
+ *
+ * If the first request has not answered after the hedge delay, a second request is sent through the load balanced
+ * client (round-robin, so it goes to other param-service instance). The first response wins and the other request
+ * is cancelled. So one slow param-service instance does not set the miss-path tail latency.
+ *
+ * The hedge delay is the configured percentile of the latencies of the last requests (never below the minimum
+ * delay). The hedges are limited by a budget: every request earns 'budget' tokens and every hedge spends one token,
+ * so at most that ratio of the requests are hedged and a slow param-service does not receive twice the load.
+ *
+ * Metrics: param.client.hedge.delay and param.client.hedges (tags call and outcome: sent, won or denied).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Component
+class ParamRequestHedger(private val serviceConfig: ServiceConfig,
+                         private val meterRegistry: MeterRegistry): HasLogger {
+
+    val enabled = serviceConfig.paramClientHedgeEnabled
+
+    val latencies = LatencyPercentile(serviceConfig.paramClientHedgePercentile)
+    val budget = HedgeBudget(ratio = serviceConfig.paramClientHedgeBudget)
+
+    init {
+        Gauge.builder("param.client.hedge.delay", this) { it.delay().toMillis().toDouble() }
+             .description("Delay (ms) before a param-service request is hedged")
+             .register(meterRegistry)
+    }
+
+    fun delay(): Duration = maxOf(serviceConfig.paramClientHedgeMinDelay, Duration.ofNanos(latencies.percentile()))
+
+    /**
+     * Sends 'request' and, if it does not answer within the hedge delay and the budget allows it, a second request.
+     * The hedge is not sent if the first request failed; its error is returned if no request gets a value.
+     */
+    fun <T : Any> hedge(name: String, request: () -> Mono<T>): Mono<T> {
+        if (!enabled) return request()
+
+        return Mono.defer {
+            budget.earn()
+
+            val firstError = AtomicReference<Throwable>()
+            val firstFailed = Sinks.one<Boolean>()
+            val first = request().elapsed()
+                                 .doOnNext { latencies.record(it.t1 * 1_000_000) }
+                                 .map { it.t2 }
+                                 .doOnError { e -> firstError.set(e); firstFailed.tryEmitValue(true) }
+            val second = Mono.delay(delay())
+                             .takeUntilOther(firstFailed.asMono())
+                             .filter {
+                                 budget.trySpend().also { sent -> count(name, if (sent) "sent" else "denied") }
+                             }
+                             .flatMap { request() }
+                             .doOnNext { count(name, "won") }
+
+            Mono.firstWithValue(first, second)
+                .onErrorMap(NoSuchElementException::class.java) { e -> firstError.get() ?: e }
+        }
+    }
+
+    private fun count(name: String, outcome: String) {
+        Counter.builder("param.client.hedges")
+               .description("Hedged param-service requests")
+               .tags("call", name, "outcome", outcome)
+               .register(meterRegistry)
+               .increment()
+    }
+
+    /**
+     * Percentile of the last latencies (nanoseconds) in a ring buffer. It is recalculated every 'every' records.
+     */
+    class LatencyPercentile(private val percentile: Double,
+                            size: Int = 1024,
+                            private val every: Int = 64) {
+        private val samples = LongArray(size)
+        private var count = 0L
+        @Volatile private var value = 0L
+
+        fun percentile() = value
+
+        @Synchronized
+        fun record(latency: Long) {
+            samples[(count % samples.size).toInt()] = latency
+            count++
+            if (count % every == 0L || count < every) {
+                val sorted = samples.copyOf(min(count, samples.size.toLong()).toInt()).apply { sort() }
+
+                value = sorted[max(0, ceil(percentile * sorted.size).toInt() - 1)]
+            }
+        }
+    }
+
+    /**
+     * Token bucket of the hedges: each request earns 'ratio' tokens, each hedge spends one.
+     */
+    class HedgeBudget(private val ratio: Double, private val maxTokens: Double = 10.0) {
+        private var tokens = 0.0
+
+        @Synchronized
+        fun earn() {
+            tokens = min(maxTokens, tokens + ratio)
+        }
+
+        @Synchronized
+        fun trySpend(): Boolean {
+            if (tokens < 1.0) return false
+            tokens -= 1.0
+            return true
+        }
+    }
+}
@@ -24,17 +24,20 @@ package com.ailegorreta.cacheservice.service
 
 import com.ailegorreta.cacheservice.config.ServiceConfig
 import com.ailegorreta.cacheservice.model.*
-import com.ailegorreta.cacheservice.util.GraphqlSchemaReaderUtil
+import com.ailegorreta.cacheservice.security.ClientCredentialsTokenManager
 import com.ailegorreta.commons.utils.HasLogger
 import com.ailegorreta.resourceserver.utils.UserContext
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.node.ObjectNode
+import kotlinx.coroutines.reactor.awaitSingle
 import org.springframework.beans.factory.annotation.Qualifier
 import org.springframework.http.MediaType
 import org.springframework.security.oauth2.client.web.reactive.function.client.ServerOAuth2AuthorizedClientExchangeFilterFunction
 import org.springframework.stereotype.Service
 import org.springframework.web.reactive.function.client.WebClient
-import org.springframework.web.reactive.function.client.awaitBody
 import org.springframework.web.util.UriComponentsBuilder
 import reactor.core.publisher.Mono
+import java.time.Duration
 
 /**
  * Param service.
@@ -42,50 +45,55 @@ import reactor.core.publisher.Mono
  * REST calls to the param-service, i.e., when we need fresh data not stored in Redis o because it has been
  * invalidated.
  *
+ * The GraphQL request bodies are pre-encoded by the GraphqlRequestRegistry, each call just adds its variables.
+ * All the calls go through the ParamCallGuard: adaptive concurrency limit, circuit breaker and deadline. Optionally
+ * they are hedged to other param-service instance (see ParamRequestHedger).
+ *
+ * The access token is added by the ClientCredentialsTokenManager filter, which refreshes it in background, so a
+ * call does not wait for auth-service. If it is disabled the OAuth2 filter of the WebClient gets it on demand.
+ *
  * @author rlh
  * @project : cache-service
  * @date September 2023
  *
  */
 @Service
-open class ParamService(@Qualifier("client_credentials")  val webClient: WebClient,
-                   // ^ could use @Qualifier("client_credentials_load_balanced) for load balanced calls
-                   val serviceConfig: ServiceConfig): HasLogger {
+open class ParamService(@Qualifier("client_credentials")  webClient: WebClient,
+                   @Qualifier("client_credentials_load_balanced") loadBalancedWebClient: WebClient,
+                   // ^ used just when the requests are hedged, see ParamRequestHedger
+                   val serviceConfig: ServiceConfig,
+                   val graphqlRequests: GraphqlRequestRegistry,
+                   val guard: ParamCallGuard,
+                   val hedger: ParamRequestHedger,
+                   val tokenManager: ClientCredentialsTokenManager): HasLogger {
+    val webClient = withToken(webClient)
+    val loadBalancedWebClient = withToken(loadBalancedWebClient)
+
     fun uri() = UriComponentsBuilder.fromUriString(serviceConfig.getParamProvider())
 
     /**
      * Method that read a systemRate from param microservice. It is called if the systemRate does NOT
      * exist in redis database (i.e., first time or if the systemRate changes and get an event).
+     * It is empty if param does not have the systemRate.
      */
-    fun getFromParamsSystemRate(name: String): SystemRate? {
-        val graphQLRequestBody = GraphqlRequestBody(GraphqlSchemaReaderUtil.getSchemaFromFileName("getSystemRate"),
-                                                    mutableMapOf("input" to name))
-        val res = webClient.post()
-                            .uri(uri().path("/param/graphql").build().toUri())
-                            .accept(MediaType.APPLICATION_JSON)
-                            .body(Mono.just(graphQLRequestBody), GraphqlRequestBody::class.java)
-                            .attributes(ServerOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(serviceConfig.clientId + "-client-credentials"))
-                            .retrieve()
-                            .bodyToMono(GraphqlResponseGetSystemRate::class.java)
-                            .block()
-
-        return res!!.data.systemRate
-    }
+    fun getFromParamsSystemRate(name: String): Mono<SystemRate> =
+        query("getSystemRate", serviceConfig.paramClientTimeout, GraphqlResponseGetSystemRate::class.java,
+              mapOf("input" to name))
+            .mapNotNull { it.data.systemRate }
+
+    /**
+     * Reads the names of all the systemRates from param microservice (see RateNameFilter)
+     */
+    fun allSystemRateNames(): Mono<List<String>> =
+        query("allSystemRates", serviceConfig.paramClientCatalogTimeout, GraphqlResponseSystemRates::class.java)
+            .map { res -> res.data.systemRates.map { it.name } }
 
     /**
      * Reads all systemDates from param microservice. Just the first time or when a systemDate is modified
      */
     suspend fun allSystemDates(): List<SystemDate> {
-        val graphQLRequestBody = GraphqlRequestBody(GraphqlSchemaReaderUtil.getSchemaFromFileName("allSystemDates"))
-
-        val res = webClient.post()
-                            .uri(uri().path("/param/graphql").build().toUri())
-                            .accept(MediaType.APPLICATION_JSON)
-                            .header(UserContext.CORRELATION_ID, UserContext.getCorrelationId())
-                            .body(Mono.just(graphQLRequestBody), GraphqlRequestBody::class.java)
-                            .attributes(ServerOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(serviceConfig.clientId + "-client-credentials"))
-                            .retrieve()
-                            .awaitBody<GraphqlResponseSystemDates>()
+        val res = query("allSystemDates", serviceConfig.paramClientCatalogTimeout, GraphqlResponseSystemDates::class.java)
+                        .awaitSingle()
 
         if (res.data.systemDates.isEmpty() ) {
             logger.error("No se pudo leer las fechas del día de hoy el micro servicio param")
@@ -99,15 +107,58 @@ open class ParamService(@Qualifier("client_credentials")  val webClient: WebClie
      * Reads all document types from param microservice. Just the first time or when a documentType is modified
      */
     suspend fun allDocumentTypes(): List<DocumentType> {
-        val graphQLRequestBody = GraphqlRequestBody(GraphqlSchemaReaderUtil.getSchemaFromFileName("allDocumentTypes"))
-        val res = webClient.post()
-                            .uri(uri().path("/param/graphql").build().toUri())
-                            .accept(MediaType.APPLICATION_JSON)
-                            .body(Mono.just(graphQLRequestBody), GraphqlRequestBody::class.java)
-                            .attributes(ServerOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(serviceConfig.clientId + "-client-credentials"))
-                            .retrieve()
-                            .awaitBody<GraphqlResponseDocumentTypes>()
-
-        return res!!.data.documentTypes
+        val res = query("allDocumentTypes", serviceConfig.paramClientCatalogTimeout, GraphqlResponseDocumentTypes::class.java)
+                        .awaitSingle()
+
+        return res.data.documentTypes
+    }
+
+    /**
+     * Reads a whole configured catalog (see CatalogCacheService) from param microservice: the list of the query
+     * answer (e.g., `data.currencies`).
+     */
+    fun allCatalog(queryName: String): Mono<List<ObjectNode>> =
+        query(queryName, serviceConfig.paramClientCatalogTimeout, JsonNode::class.java)
+            .map { res ->
+                val list = res.path("data").elements().asSequence().firstOrNull { it.isArray }
+                                ?: throw IllegalStateException("The GraphQL query $queryName did not answer a list")
+
+                list.filterIsInstance<ObjectNode>()
+            }
+
+    /**
+     * Sends the GraphQL query 'name' (all of them are idempotent reads, so they can be hedged) through the guard.
+     */
+    private fun <T : Any> query(name: String, timeout: Duration, type: Class<T>,
+                                variables: Map<String, Any?>? = null): Mono<T> {
+        val graphQLRequestBody = graphqlRequests.body(name, variables)
+        val correlationId = UserContext.getCorrelationId()
+        val request = if (hedger.enabled)
+                          { -> post(loadBalancedWebClient, UriComponentsBuilder.fromUriString(serviceConfig.paramClientHedgeUri),
+                                    graphQLRequestBody, correlationId, type) }
+                      else
+                          { -> post(webClient, uri(), graphQLRequestBody, correlationId, type) }
+
+        return guard.call(name, timeout, hedger.hedge(name, request))
     }
-}
\ No newline at end of file
+
+    private fun <T : Any> post(client: WebClient, uri: UriComponentsBuilder, graphQLRequestBody: ByteArray,
+                               correlationId: String?, type: Class<T>): Mono<T> =
+        client.post()
+              .uri(uri.path("/param/graphql").build().toUri())
+              .accept(MediaType.APPLICATION_JSON)
+              .headers { headers -> correlationId?.let { headers.set(UserContext.CORRELATION_ID, it) } }
+              .contentType(MediaType.APPLICATION_JSON)
+              .bodyValue(graphQLRequestBody)
+              .attributes { attributes ->
+                  if (!tokenManager.enabled)
+                      ServerOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(serviceConfig.clientId + "-client-credentials")
+                                                                          .accept(attributes)
+              }
+              .retrieve()
+              .bodyToMono(type)
+
+    private fun withToken(client: WebClient) =
+        if (tokenManager.enabled) client.mutate().filter(tokenManager.filter()).build()
+        else client
+}
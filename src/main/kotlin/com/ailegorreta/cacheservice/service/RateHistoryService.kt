@@ -0,0 +1,100 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RateHistoryService.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.cacheservice.model.RateAsOf
+import com.ailegorreta.cacheservice.model.RateAsOfQuery
+import com.ailegorreta.cacheservice.repository.RateHistoryRepository
+import com.ailegorreta.commons.utils.HasLogger
+import org.springframework.stereotype.Service
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.math.BigDecimal
+import java.time.LocalDate
+
+/**
+ * Rate values as of a date (reprocessing days, reconciliations), so the historical queries do not go to the
+ * param microservice database.
+ *
+ * Every rate change received by the EventService is recorded in the rate history (see RateHistoryRepository). A
+ * rate without changes recorded on or before the date is answered with its current value if the date is not in
+ * the past (e.g., a rate that did not change since the history was enabled).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Service
+class RateHistoryService(private val repository: RateHistoryRepository,
+                         private val cacheService: CacheService,
+                         private val serviceConfig: ServiceConfig): HasLogger {
+
+    /**
+     * Records a rate change. A failure is logged, the change is not lost for the current value.
+     */
+    fun record(name: String, rate: BigDecimal, effective: LocalDate = LocalDate.now()): Mono<Boolean> {
+        if (!serviceConfig.rateHistoryEnabled) return Mono.just(false)
+
+        return repository.record(name, rate, effective)
+                         .onErrorResume { e ->
+                             logger.error("Could not record the change of $name in the rate history: ${e.message}")
+                             Mono.just(false)
+                         }
+    }
+
+    /**
+     * The rate as of the date. Empty if the date is in the past and the rate has no history on or before it.
+     */
+    fun asOf(name: String, date: LocalDate): Mono<BigDecimal> {
+        val current = Mono.defer {
+            if (date.isBefore(LocalDate.now())) Mono.empty()
+            else cacheService.getSystemRate(name).map { it.rate }
+        }
+
+        if (!serviceConfig.rateHistoryEnabled) return current
+
+        return repository.asOf(name, date)
+                         .switchIfEmpty(current)
+    }
+
+    /**
+     * Batch lookup, the answers are in the same order as the queries. The Redis calls are pipelined (at most
+     * BATCH_CONCURRENCY in flight). A query without value or that fails is answered with its status (see RateAsOf),
+     * so it does not end the batch.
+     */
+    fun asOf(queries: List<RateAsOfQuery>): Flux<RateAsOf> =
+        Flux.fromIterable(queries)
+            .flatMapSequential({ query ->
+                asOf(query.nombre, query.asOf).map { RateAsOf(query.nombre, query.asOf, it) }
+                                             .defaultIfEmpty(RateAsOf(query.nombre, query.asOf, null, RateAsOf.Status.NO_HISTORY))
+                                             .onErrorResume { e ->
+                                                 logger.error("Could not read ${query.nombre} as of ${query.asOf}: ${e.message}")
+                                                 Mono.just(RateAsOf(query.nombre, query.asOf, null, RateAsOf.Status.ERROR))
+                                             }
+            }, BATCH_CONCURRENCY)
+
+    companion object {
+        const val BATCH_CONCURRENCY = 64
+    }
+}
@@ -0,0 +1,231 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RateNameFilter.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.commons.utils.HasLogger
+import io.micrometer.core.instrument.Counter
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.MeterRegistry
+import jakarta.annotation.PreDestroy
+import org.springframework.boot.context.event.ApplicationReadyEvent
+import org.springframework.context.event.EventListener
+import org.springframework.stereotype.Component
+import reactor.core.Disposable
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.AtomicReference
+import kotlin.math.ceil
+import kotlin.math.ln
+import kotlin.math.max
+import kotlin.math.pow
+import kotlin.math.roundToInt
+
+/**
+ * Bloom filter of the system rate names, so a lookup of a name that does not exist is answered without reading
+ * Redis nor calling the param microservice.
+ *
+ * It is built from all the rate names read from the param microservice at start up and rebuilt each 'rebuild' (the
+ * rebuild also drops the deleted names). The names of the VARIABLE_SISTEMA events are added. Until the first build
+ * succeeds every name might exist, i.e., nothing is rejected.
+ *
+ * Metrics: rate.filter.names, rate.filter.bytes, rate.filter.fpp (expected false positive rate), rate.filter.rejected
+ * and rate.filter.false.positives (names accepted by the filter that the param microservice does not have).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Component
+class RateNameFilter(private val paramService: ParamService,
+                     private val serviceConfig: ServiceConfig,
+                     meterRegistry: MeterRegistry): HasLogger {
+    private val filter = AtomicReference<BloomFilter?>()
+    private val names = AtomicInteger()
+    private val addedSinceBuild = ConcurrentHashMap.newKeySet<String>()
+    private var rebuilds: Disposable? = null
+
+    private val rejected = Counter.builder("rate.filter.rejected")
+                                  .description("Lookups of rate names that do not exist answered by the filter")
+                                  .register(meterRegistry)
+    private val falsePositives = Counter.builder("rate.filter.false.positives")
+                                        .description("Rate names accepted by the filter that do not exist")
+                                        .register(meterRegistry)
+
+    init {
+        Gauge.builder("rate.filter.names", names) { it.get().toDouble() }.register(meterRegistry)
+        Gauge.builder("rate.filter.bytes", filter) { it.get()?.bytes()?.toDouble() ?: 0.0 }
+             .description("Memory of the rate names filter")
+             .register(meterRegistry)
+        Gauge.builder("rate.filter.fpp", filter) { it.get()?.expectedFpp() ?: 0.0 }
+             .description("Expected false positive rate of the rate names filter")
+             .register(meterRegistry)
+    }
+
+    @EventListener(ApplicationReadyEvent::class)
+    fun start() {
+        if (!serviceConfig.rateFilterEnabled) return
+
+        rebuilds = Flux.interval(Duration.ZERO, serviceConfig.rateFilterRebuild)
+                       .onBackpressureDrop()
+                       .concatMap {
+                           rebuild().onErrorResume { e ->
+                               logger.error("Could not build the rate names filter: ${e.message}")
+                               Mono.empty()
+                           }
+                       }
+                       .subscribe()
+    }
+
+    @PreDestroy
+    fun stop() {
+        rebuilds?.dispose()
+    }
+
+    /**
+     * False if the rate 'name' does not exist for sure.
+     */
+    fun mightContain(name: String): Boolean {
+        val mightContain = filter.get()?.mightContain(name) ?: true
+
+        if (!mightContain) rejected.increment()
+
+        return mightContain
+    }
+
+    /**
+     * A new rate (e.g., received an event). It is serialized with build, otherwise a name added to the old filter
+     * while the new one is built would be lost until the next build.
+     */
+    @Synchronized
+    fun add(name: String) {
+        addedSinceBuild.add(name)
+        filter.get()?.let { if (it.add(name)) names.incrementAndGet() }
+    }
+
+    /**
+     * The filter accepted 'name' but the param microservice does not have it.
+     */
+    fun falsePositive() {
+        if (filter.get() != null) falsePositives.increment()
+    }
+
+    fun rebuild(): Mono<Int> = paramService.allSystemRateNames().map(::build)
+
+    /**
+     * Builds a new filter for 'allNames' (with room to grow) and swaps it.
+     */
+    @Synchronized
+    fun build(allNames: Collection<String>): Int {
+        val added = addedSinceBuild.toList()        // add is serialized, no name is added meanwhile
+        val newFilter = BloomFilter(max(MIN_CAPACITY, (allNames.size + added.size) * 2), serviceConfig.rateFilterFpp)
+        val count = (allNames + added).count { newFilter.add(it) }
+
+        filter.set(newFilter)
+        names.set(count)
+        addedSinceBuild.clear()
+        logger.info("Rate names filter built with {} names, {} bytes", count, newFilter.bytes())
+
+        return count
+    }
+
+    /**
+     * Bloom filter sized for 'capacity' keys with a false positive rate 'fpp'. The k indexes are generated by double
+     * hashing of a 64 bit hash.
+     */
+    class BloomFilter(capacity: Int, fpp: Double) {
+        val bits = max(64, ceil(-capacity * ln(fpp) / (LN2 * LN2)).toInt())
+        val hashes = max(1, (bits.toDouble() / capacity * LN2).roundToInt())
+        private val words = AtomicLongArray((bits + 63) / 64)
+
+        /**
+         * Returns true if the key was not in the filter (some bit changed).
+         */
+        fun add(key: String): Boolean {
+            var changed = false
+
+            forEachIndex(key) { index ->
+                val mask = 1L shl (index and 63)
+                val previous = words.getAndUpdate(index ushr 6) { it or mask }
+
+                if ((previous and mask) == 0L) changed = true
+                true
+            }
+            return changed
+        }
+
+        fun mightContain(key: String): Boolean = forEachIndex(key) { index ->
+            (words.get(index ushr 6) and (1L shl (index and 63))) != 0L
+        }
+
+        fun bytes() = words.length() * 8L
+
+        fun expectedFpp(): Double {
+            var set = 0L
+
+            for (i in 0 until words.length()) set += java.lang.Long.bitCount(words.get(i))
+
+            return (set.toDouble() / bits).pow(hashes)
+        }
+
+        private inline fun forEachIndex(key: String, action: (Int) -> Boolean): Boolean {
+            val hash = hash64(key)
+            val h1 = hash.toInt()
+            val h2 = (hash ushr 32).toInt()
+
+            for (i in 0 until hashes) {
+                val combined = h1 + i * h2
+
+                if (!action((combined and Int.MAX_VALUE) % bits)) return false
+            }
+            return true
+        }
+
+        private fun hash64(key: String): Long {
+            var h = -0x340d631b7bdddcdbL                    // FNV-1a offset basis
+
+            for (c in key) {
+                h = h xor c.code.toLong()
+                h *= 0x100000001b3L                         // FNV prime
+            }
+            h = h xor (h ushr 33)                           // finalizer (murmur3 fmix64)
+            h *= -0xae502812aa7333L
+            h = h xor (h ushr 33)
+            h *= -0x3b314601e57a13adL
+
+            return h xor (h ushr 33)
+        }
+
+        companion object {
+            private val LN2 = ln(2.0)
+        }
+    }
+
+    companion object {
+        const val MIN_CAPACITY = 1_000
+    }
+}
@@ -0,0 +1,170 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RedisAvailability.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.commons.utils.HasLogger
+import io.lettuce.core.RedisCommandTimeoutException
+import io.lettuce.core.RedisConnectionException
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.MeterRegistry
+import jakarta.annotation.PreDestroy
+import org.springframework.boot.actuate.health.Health
+import org.springframework.boot.actuate.health.ReactiveHealthIndicator
+import org.springframework.boot.context.event.ApplicationReadyEvent
+import org.springframework.context.event.EventListener
+import org.springframework.data.redis.RedisConnectionFailureException
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate
+import org.springframework.stereotype.Component
+import reactor.core.Disposable
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.time.Instant
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Tracks if Redis is reachable, so the cache does not pay the Redis timeout in each request while it is down.
+ *
+ * A background probe pings Redis every 'probe-interval' (with a 'probe-timeout' much shorter than the Redis command
+ * timeout). After 'failures' failed probes, or as soon as a request gets a connection failure, the mode changes to
+ * LOCAL_ONLY and the CacheService serves from its in-memory catalogs. The first successful probe changes it back to
+ * REDIS and the listeners reconcile the changes received meanwhile.
+ *
+ * It is also the 'cacheMode' health indicator (always UP, the mode is a detail) and the gauge redis.available.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@Component("cacheModeHealthIndicator")
+class RedisAvailability(private val redisTemplate: ReactiveStringRedisTemplate,
+                        private val serviceConfig: ServiceConfig,
+                        meterRegistry: MeterRegistry): ReactiveHealthIndicator, HasLogger {
+
+    enum class Mode { REDIS, LOCAL_ONLY }
+
+    @Volatile private var current = Mode.REDIS
+    @Volatile private var since = Instant.now()
+
+    private val failures = AtomicInteger()
+    private val listeners = CopyOnWriteArrayList<(Mode) -> Unit>()
+    private var probe: Disposable? = null
+
+    init {
+        Gauge.builder("redis.available", this) { if (it.available()) 1.0 else 0.0 }
+             .description("1 if the cache uses Redis, 0 if it serves from memory (degraded mode)")
+             .register(meterRegistry)
+    }
+
+    val mode get() = current
+
+    fun available() = current == Mode.REDIS
+
+    /**
+     * Refresh interval of the in-memory catalogs while Redis is not reachable.
+     */
+    val localRefresh get() = serviceConfig.redisLocalRefresh
+
+    /**
+     * The listener is called (in the probe thread) each time the mode changes.
+     */
+    fun addListener(listener: (Mode) -> Unit) {
+        listeners.add(listener)
+    }
+
+    @EventListener(ApplicationReadyEvent::class)
+    fun start() {
+        probe = Flux.interval(serviceConfig.redisProbeInterval)
+                    .onBackpressureDrop()
+                    .concatMap { ping() }
+                    .subscribe(::probed)
+    }
+
+    @PreDestroy
+    fun stop() {
+        probe?.dispose()
+    }
+
+    /**
+     * A request got an error from Redis. If Redis is not reachable, change to LOCAL_ONLY without waiting for the probe.
+     */
+    fun failed(e: Throwable) {
+        if (isConnectionFailure(e)) {
+            failures.set(serviceConfig.redisProbeFailures)
+            changeTo(Mode.LOCAL_ONLY)
+        }
+    }
+
+    private fun ping(): Mono<Boolean> = redisTemplate.execute { it.ping() }
+                                                     .next()
+                                                     .timeout(serviceConfig.redisProbeTimeout)
+                                                     .map { true }
+                                                     .onErrorReturn(false)
+                                                     .defaultIfEmpty(false)
+
+    private fun probed(reachable: Boolean) {
+        if (reachable) {
+            failures.set(0)
+            changeTo(Mode.REDIS)
+        } else if (failures.incrementAndGet() >= serviceConfig.redisProbeFailures)
+            changeTo(Mode.LOCAL_ONLY)
+    }
+
+    private fun changeTo(newMode: Mode) {
+        synchronized(this) {
+            if (current == newMode) return
+            current = newMode
+            since = Instant.now()
+        }
+        if (newMode == Mode.LOCAL_ONLY)
+            logger.error("Redis is not reachable, serve the catalogs from memory")
+        else
+            logger.info("Redis is reachable again, reconcile the changes received in degraded mode")
+        listeners.forEach { listener ->
+            try {
+                listener(newMode)
+            } catch (e: Exception) {
+                logger.error("Could not change to $newMode mode: ${e.message}")
+            }
+        }
+    }
+
+    override fun health(): Mono<Health> = Mono.fromSupplier {
+        Health.up()
+              .withDetail("mode", mode)
+              .withDetail("since", since)
+              .build()
+    }
+
+    companion object {
+        /**
+         * Just the Redis (Lettuce) connection failures and command timeouts. A QueryTimeoutException is not enough:
+         * the param-service calls that exceed their deadline throw it too (see ParamCallGuard), and a slow
+         * param-service must not change the mode of a replica whose Redis is healthy.
+         */
+        fun isConnectionFailure(e: Throwable): Boolean =
+            e is RedisConnectionFailureException || e is RedisCommandTimeoutException || e is RedisConnectionException ||
+            (e.cause?.let { it !== e && isConnectionFailure(it) } ?: false)
+    }
+}
@@ -149,6 +149,34 @@ public class DocumentTypeRepositoryTests {
                     .verifyComplete();
     }
 
+    @Test
+    void replaceAllTest() {
+        var documents =  List.of(new DocumentType("2", "Pasaporte", "12m", 0),
+                                 new DocumentType("3", "Comprobante domicilio", "3m", 0),
+                                 new DocumentType("4", "IFE", "24m", 0));
+
+        // Verify that the catalog is swapped: the saved "test" document type is replaced by the three new ones
+        StepVerifier.create(repository.replaceAll(documents))
+                    .expectNextCount(3L)
+                    .verifyComplete();
+        StepVerifier.create(repository.count())
+                    .expectNext(3L)
+                    .verifyComplete();
+        StepVerifier.create(repository.existsByName(savedDocumentType.getName()))
+                    .expectNext(false)
+                    .verifyComplete();
+
+        // A catalog with duplicate names is rejected and the current catalog is kept
+        var duplicates = List.of(new DocumentType(null, "Visa", "12m", 0),
+                                 new DocumentType(null, "Visa", "6m", 0));
+        StepVerifier.create(repository.replaceAll(duplicates))
+                    .expectError(DuplicateKeyException.class)
+                    .verify();
+        StepVerifier.create(repository.count())
+                    .expectNext(3L)
+                    .verifyComplete();
+    }
+
     @Test
     void updateTest() {
         String newName = "name-update";
@@ -0,0 +1,185 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  HolidayBitmapTests.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.domain;
+
+import com.ailegorreta.cacheservice.EnableTestContainers;
+import com.ailegorreta.cacheservice.config.ServiceConfig;
+import com.ailegorreta.cacheservice.model.CalendarSnapshot;
+import com.ailegorreta.cacheservice.model.DayType;
+import com.ailegorreta.cacheservice.model.SystemDate;
+import com.ailegorreta.cacheservice.repository.SystemDateRepository;
+import com.ailegorreta.cacheservice.repository.impl.SystemDateRepositoryImpl;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class to check the holiday bitmap SYSTEM_DATE:HOLIDAYS with a real Redis, i.e., that the script rebuilds it from
+ * the HVALS of the system dates and counts the ranges with the GETBITs of the edges and the BITCOUNT of the whole
+ * bytes. The answers are compared with the in-memory calendar (CalendarSnapshot).
+ *
+ * Repository: SystemDate
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@EnableTestContainers
+/* ^ This is a custom annotation to load the containers */
+@Import(ServiceConfig.class)
+@ActiveProfiles("integration-tests")
+@DirtiesContext
+public class HolidayBitmapTests {
+
+    @MockBean
+    private StreamBridge streamBridge;
+    @MockBean
+    private ReactiveJwtDecoder reactiveJwtDecoder;
+
+    @Qualifier("systemDateRepositoryImpl")
+    @Autowired
+    SystemDateRepository repository;
+
+    @Autowired
+    ReactiveStringRedisTemplate redisTemplate;
+
+    private final LocalDate monday = LocalDate.of(2026, 11, 2);         // a holiday on a week day
+    private final LocalDate saturday = LocalDate.of(2026, 11, 21);      // a holiday on a weekend day
+    private final List<SystemDate> systemDates = new ArrayList<>();
+
+    /**
+     * Before each test we save today and 200 random holidays of 2026 and 2027, then we delete the bitmap so the
+     * script rebuilds it from the system dates.
+     */
+    @BeforeEach
+    void setUpDB() {
+        var random = new Random(50);
+
+        systemDates.clear();
+        systemDates.add(new SystemDate(null, DayType.HOY, LocalDate.now(), 0));
+        systemDates.add(new SystemDate(null, DayType.FESTIVO, monday, 0));
+        systemDates.add(new SystemDate(null, DayType.FESTIVO, saturday, 0));
+        for (int i = 0; i < 200; i++)
+            systemDates.add(new SystemDate(null, DayType.FESTIVO, LocalDate.of(2026, 1, 1).plusDays(random.nextInt(730)), 0));
+
+        StepVerifier.create(repository.deleteAll()).verifyComplete();
+        StepVerifier.create(repository.saveAll(systemDates).then()).verifyComplete();
+        StepVerifier.create(redisTemplate.delete(SystemDateRepositoryImpl.HOLIDAYS)).expectNextCount(1).verifyComplete();
+    }
+
+    @Test
+    void rebuildFromSystemDatesTest() {
+        // Verify that the first read rebuilds the bitmap
+        StepVerifier.create(repository.isHoliday(monday))
+                    .expectNext(true)
+                    .verifyComplete();
+        StepVerifier.create(redisTemplate.hasKey(SystemDateRepositoryImpl.HOLIDAYS))
+                    .expectNext(true)
+                    .verifyComplete();
+
+        // Verify that just the holidays on week days have their bit set (the weekend is not in the bitmap)
+        StepVerifier.create(redisTemplate.opsForValue().getBit(SystemDateRepositoryImpl.HOLIDAYS, monday.toEpochDay()))
+                    .expectNext(true)
+                    .verifyComplete();
+        StepVerifier.create(redisTemplate.opsForValue().getBit(SystemDateRepositoryImpl.HOLIDAYS, saturday.toEpochDay()))
+                    .expectNext(false)
+                    .verifyComplete();
+        StepVerifier.create(repository.isHoliday(saturday))
+                    .expectNext(true)
+                    .verifyComplete();
+
+        // Verify that each day of the two years answers as the calendar
+        var calendar = new CalendarSnapshot(1L, systemDates);
+
+        for (var day = LocalDate.of(2025, 12, 1); day.isBefore(LocalDate.of(2028, 1, 31)); day = day.plusDays(1))
+            StepVerifier.create(repository.isHoliday(day))
+                        .expectNext(calendar.isHoliday(day))
+                        .verifyComplete();
+    }
+
+    @Test
+    void rangeCountTest() {
+        var calendar = new CalendarSnapshot(1L, systemDates);
+        var start = LocalDate.of(2026, 1, 1);
+        var random = new Random(50);
+
+        // Verify the ranges inside a byte, that cross one or more byte edges, that are byte aligned and reversed
+        for (int i = 0; i < 500; i++) {
+            var from = start.plusDays(random.nextInt(730));
+            var to = from.plusDays(i < 250 ? random.nextInt(20) - 10 : random.nextInt(800) - 400);
+
+            StepVerifier.create(repository.workingDaysBetween(from, to))
+                        .expectNext(calendar.workingDaysBetween(from, to))
+                        .verifyComplete();
+        }
+        for (int offset = 0; offset < 8; offset++)              // every start and end bit of three bytes
+            for (int length = 0; length <= 24; length++) {
+                var from = LocalDate.ofEpochDay((start.toEpochDay() / 8) * 8 + offset);
+                var to = from.plusDays(length);
+
+                StepVerifier.create(repository.workingDaysBetween(from, to))
+                            .expectNext(calendar.workingDaysBetween(from, to))
+                            .verifyComplete();
+            }
+        StepVerifier.create(repository.workingDaysBetween(monday.minusDays(1), monday))   // Sunday to the holiday
+                    .expectNext(0L)
+                    .verifyComplete();
+    }
+
+    @Test
+    void writeDeletesBitmapTest() {
+        var tuesday = monday.plusDays(1);
+
+        // Verify that the bitmap exists and the day is not a holiday
+        Assumptions.assumeFalse(systemDates.stream().anyMatch(date -> date.getDay().equals(tuesday)));
+        StepVerifier.create(repository.isHoliday(tuesday))
+                    .expectNext(false)
+                    .verifyComplete();
+
+        // A new holiday deletes the bitmap in the same script, the next read builds it again
+        StepVerifier.create(repository.save(new SystemDate(null, DayType.FESTIVO, tuesday, 0)))
+                    .expectNextCount(1)
+                    .verifyComplete();
+        StepVerifier.create(redisTemplate.hasKey(SystemDateRepositoryImpl.HOLIDAYS))
+                    .expectNext(false)
+                    .verifyComplete();
+        StepVerifier.create(repository.isHoliday(tuesday))
+                    .expectNext(true)
+                    .verifyComplete();
+    }
+}
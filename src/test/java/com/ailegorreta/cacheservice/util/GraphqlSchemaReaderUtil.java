@@ -27,6 +27,9 @@ import java.io.IOException;
 /**
  * Reader from resource directory for all GraphqlSchemas
  *
+ * The param-service requests are built by the GraphqlRequestRegistry. This is the old way, kept just to compare it
+ * with the registry (see GraphqlRequestRegistryTest).
+ *
  * @project: cache-service
  * @author rlh
  * @date July 2023
@@ -26,6 +26,7 @@ import com.ailegorreta.cacheservice.EnableTestContainers;
 import com.ailegorreta.cacheservice.config.ResourceServerConfig;
 import com.ailegorreta.cacheservice.config.ServiceConfig;
 import com.ailegorreta.cacheservice.controller.CacheController;
+import com.ailegorreta.cacheservice.controller.EncodedCatalogCache;
 import com.ailegorreta.cacheservice.model.DayType;
 import com.ailegorreta.cacheservice.model.DocumentType;
 import com.ailegorreta.cacheservice.model.SystemDate;
@@ -76,7 +77,7 @@ import static org.springframework.security.test.web.reactive.server.SecurityMock
 @WebFluxTest(CacheController.class)
 @EnableTestContainers
 @ExtendWith(MockitoExtension.class)
-@Import({ServiceConfig.class, ResourceServerConfig.class, CacheController.class})
+@Import({ServiceConfig.class, ResourceServerConfig.class, CacheController.class, EncodedCatalogCache.class})
 @ActiveProfiles("integration-tests-webflux")            // This is to permit duplicate singleton beans
 class ControllerWebFluxTestsX implements HasLogger {
 
@@ -132,7 +133,7 @@ class ControllerWebFluxTestsX implements HasLogger {
         var varName = "TIIF";
 
         when (paramService.getFromParamsSystemRate(varName)).thenReturn(
-                new SystemRate("1", varName, BigDecimal.TEN, 0));
+                Mono.just(new SystemRate("1", varName, BigDecimal.TEN, 0)));
 
         getLogger().debug("Read 'TIIF' from the param service");
         var res = webTestClient.mutateWith(mockJwt().authorities(Arrays.asList(new SimpleGrantedAuthority("SCOPE_iam.facultad"),
@@ -0,0 +1,107 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  BitmapCalendarTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.model
+
+import com.ailegorreta.commons.utils.HasLogger
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import java.time.DayOfWeek
+import java.time.LocalDate
+import kotlin.random.Random
+
+/**
+ * Unit tests for the per-day bitmap calendars: the same answers as the system calendar, custom weekends and the
+ * combined calendars.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class BitmapCalendarTest : HasLogger {
+    private val random = Random(49)
+    private val from = LocalDate.of(2000, 1, 1)
+    private val days = (LocalDate.of(2100, 12, 31).toEpochDay() - from.toEpochDay() + 1).toInt()
+    private val holidays = (1..2_000).map { LocalDate.of(2015, 1, 1).plusDays(random.nextLong(6_000)) }
+
+    @Test
+    fun `the bitmap gives the same answers as the system calendar`() {
+        val snapshot = CalendarSnapshot(1L, holidays.mapIndexed { i, day -> SystemDate("$i", DayType.FESTIVO, day) })
+        val bitmap = BitmapCalendar.of("system", 1L, from, days, BitmapCalendar.WEEKEND, holidays)
+
+        repeat(5_000) {
+            val day = LocalDate.of(2014, 1, 1).plusDays(random.nextLong(6_500))
+            val to = day.plusDays(random.nextLong(-700, 700))
+            val n = random.nextInt(-300, 300)
+
+            assertThat(bitmap.isHoliday(day)).describedAs("$day").isEqualTo(snapshot.isHoliday(day))
+            assertThat(bitmap.addWorkingDays(day, n)).describedAs("$day + $n").isEqualTo(snapshot.addWorkingDays(day, n))
+            assertThat(bitmap.workingDaysBetween(day, to)).describedAs("$day .. $to")
+                                                         .isEqualTo(snapshot.workingDaysBetween(day, to))
+            assertThat(bitmap.holidaysBetween(day, to)).isEqualTo(snapshot.holidaysBetween(day, to))
+        }
+
+        val start = LocalDate.of(2016, 3, 3)
+        var time = System.nanoTime()
+        repeat(100_000) { snapshot.workingDaysBetween(start, start.plusDays(it % 3_000L)) }
+        val indexed = (System.nanoTime() - time) / 100_000
+        time = System.nanoTime()
+        repeat(100_000) { bitmap.workingDaysBetween(start, start.plusDays(it % 3_000L)) }
+        val bitmapped = (System.nanoTime() - time) / 100_000
+
+        logger.info("Working days between: sorted index {} ns, bitmap {} ns ({} bytes a calendar)",
+                    indexed, bitmapped, (days + 63) / 64 * 8 * 2)
+    }
+
+    @Test
+    fun `custom weekends and combined calendars`() {
+        val thursday = LocalDate.of(2026, 10, 22)
+        val mx = BitmapCalendar.of("MX", 1L, from, days, BitmapCalendar.WEEKEND, listOf(LocalDate.of(2026, 11, 2)))
+        val ae = BitmapCalendar.of("AE", 1L, from, days, setOf(DayOfWeek.FRIDAY, DayOfWeek.SATURDAY),
+                                   listOf(LocalDate.of(2026, 10, 27)))
+        val both = ae or mx
+
+        assertThat(ae.isHoliday(LocalDate.of(2026, 10, 25))).isFalse                   // Sunday
+        assertThat(ae.nextWorkingDay(thursday)).isEqualTo(LocalDate.of(2026, 10, 25))
+        assertThat(both.name).isEqualTo("AE,MX")
+        assertThat(both.nextWorkingDay(thursday)).isEqualTo(LocalDate.of(2026, 10, 26))  // Monday
+        assertThat(both.addWorkingDays(thursday, 2)).isEqualTo(LocalDate.of(2026, 10, 28))
+        assertThat(both.holidaysBetween(LocalDate.of(2026, 10, 1), LocalDate.of(2026, 11, 30)))
+                .containsExactly(LocalDate.of(2026, 10, 27), LocalDate.of(2026, 11, 2))
+        assertThat(both.workingDaysBetween(thursday, LocalDate.of(2026, 11, 5))).isEqualTo(6L)
+    }
+
+    @Test
+    fun `the days out of the window are rejected`() {
+        val calendar = BitmapCalendar.of("MX", 1L, from, days, BitmapCalendar.WEEKEND, emptyList())
+
+        assertThat(calendar.previousWorkingDay(LocalDate.of(2000, 1, 4))).isEqualTo(LocalDate.of(2000, 1, 3))
+        assertThatThrownBy { calendar.isHoliday(LocalDate.of(1999, 12, 31)) }.isInstanceOf(IllegalArgumentException::class.java)
+        assertThatThrownBy { calendar.previousWorkingDay(LocalDate.of(2000, 1, 3)) }
+                .isInstanceOf(IllegalArgumentException::class.java)
+        assertThatThrownBy { calendar.addWorkingDays(LocalDate.of(2100, 12, 1), 30) }
+                .isInstanceOf(IllegalArgumentException::class.java)
+        assertThatThrownBy { calendar or BitmapCalendar.of("US", 1L, from, 365, BitmapCalendar.WEEKEND, emptyList()) }
+                .isInstanceOf(IllegalArgumentException::class.java)
+    }
+}
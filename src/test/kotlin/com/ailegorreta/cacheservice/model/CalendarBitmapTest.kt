@@ -0,0 +1,97 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CalendarBitmapTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.model
+
+import com.ailegorreta.commons.utils.HasLogger
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
+import com.fasterxml.jackson.module.kotlin.registerKotlinModule
+import com.fasterxml.jackson.module.kotlin.readValue
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import java.time.LocalDate
+import java.util.Base64
+
+/**
+ * Unit tests for the calendar bitmap export and its client decoding.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class CalendarBitmapTest : HasLogger {
+    private val systemDates = listOf(SystemDate("0", DayType.HOY, LocalDate.of(2026, 10, 19)),
+                                     SystemDate("1", DayType.FESTIVO, LocalDate.of(2024, 1, 1)),
+                                     SystemDate("2", DayType.FESTIVO, LocalDate.of(2026, 11, 2)),
+                                     SystemDate("3", DayType.FESTIVO, LocalDate.of(2026, 11, 16)),
+                                     SystemDate("4", DayType.FESTIVO, LocalDate.of(2028, 12, 31)),
+                                     SystemDate("5", DayType.FESTIVO, LocalDate.of(2030, 5, 1)))   // out of range
+    private val calendar = CalendarSnapshot(7L, systemDates)
+
+    @Test
+    fun `every day of the bitmap matches the calendar`() {
+        val bitmap = CalendarBitmap.of(calendar, 2024, 2028)
+        var day = LocalDate.of(2024, 1, 1)
+
+        assertThat(bitmap.days).isEqualTo(1827)
+        assertThat(bitmap.to).isEqualTo(LocalDate.of(2028, 12, 31))
+        while (day <= bitmap.to) {
+            assertThat(bitmap.isHoliday(day)).describedAs("$day").isEqualTo(calendar.isHoliday(day))
+            day = day.plusDays(1)
+        }
+        assertThat(bitmap.contains(LocalDate.of(2023, 12, 31))).isFalse
+        assertThatThrownBy { bitmap.isHoliday(LocalDate.of(2029, 1, 1)) }.isInstanceOf(IllegalArgumentException::class.java)
+        logger.info("Calendar 2024-2028: {} bytes binary vs {} bytes of system dates JSON",
+                    bitmap.toBinary().size, ObjectMapper().registerModule(JavaTimeModule())
+                                                          .writeValueAsBytes(systemDates).size)
+    }
+
+    @Test
+    fun `the client decodes the binary, base64 and JSON exports`() {
+        val bitmap = CalendarBitmap.of(calendar, 2026, 2026)
+        val mapper = ObjectMapper().registerKotlinModule().registerModule(JavaTimeModule())
+
+        assertThat(CalendarBitmap.fromBinary(bitmap.toBinary())).isEqualTo(bitmap)
+        assertThat(CalendarBitmap.fromBase64(Base64.getEncoder().encodeToString(bitmap.toBinary()))).isEqualTo(bitmap)
+        assertThat(mapper.readValue<CalendarBitmap>(mapper.writeValueAsString(bitmap))).isEqualTo(bitmap)
+        assertThat(mapper.readTree(mapper.writeValueAsString(bitmap))["version"].asText()).isEqualTo(bitmap.version)
+        assertThat(CalendarBitmap.fromBinary(bitmap.toBinary()).isHoliday(LocalDate.of(2026, 11, 2))).isTrue
+        assertThatThrownBy { CalendarBitmap.fromBinary(bitmap.toBinary().copyOf(30)) }
+                .isInstanceOf(IllegalArgumentException::class.java)
+    }
+
+    @Test
+    fun `the version changes with the holidays, not with the generation of the replica`() {
+        val bitmap = CalendarBitmap.of(calendar, 2026, 2027)
+
+        assertThat(CalendarBitmap.of(CalendarSnapshot(8L, systemDates), 2026, 2027)).isEqualTo(bitmap)
+        assertThat(CalendarBitmap.of(CalendarSnapshot(8L, systemDates), 2026, 2027).version).isEqualTo(bitmap.version)
+        assertThat(CalendarBitmap.of(CalendarSnapshot(8L, systemDates.dropLast(2)), 2026, 2027).version)
+                .isEqualTo(bitmap.version)
+        assertThat(CalendarBitmap.of(CalendarSnapshot(8L, systemDates - systemDates[2]), 2026, 2027).version)
+                .isNotEqualTo(bitmap.version)
+        assertThat(CalendarBitmap.of(calendar, 2026, 2028).version).isNotEqualTo(bitmap.version)
+        assertThatThrownBy { CalendarBitmap.of(calendar, 2027, 2026) }.isInstanceOf(IllegalArgumentException::class.java)
+    }
+}
@@ -0,0 +1,113 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CalendarSnapshotTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.model
+
+import com.ailegorreta.commons.utils.HasLogger
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import java.time.LocalDate
+import kotlin.random.Random
+
+/**
+ * Unit tests for the indexed working-day math of the CalendarSnapshot. The answers are compared with a day by day
+ * iteration, and the time of both is logged.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class CalendarSnapshotTest : HasLogger {
+    private val random = Random(47)
+    private val origin = LocalDate.of(2020, 1, 1)
+    private val calendar = CalendarSnapshot(1L,
+                                            listOf(SystemDate("0", DayType.HOY, LocalDate.of(2026, 10, 19))) +
+                                            (1..1_500).map { SystemDate("$it", DayType.FESTIVO,
+                                                                        origin.plusDays(random.nextLong(4_000))) } +
+                                            (0 until 20L).map { SystemDate("b$it", DayType.FESTIVO,   // a long block
+                                                                           LocalDate.of(2027, 3, 1).plusDays(it)) })
+
+    private fun iterAdd(from: LocalDate, days: Int): LocalDate {
+        var result = from
+        var left = kotlin.math.abs(days)
+
+        while (left > 0) {
+            result = if (days > 0) result.plusDays(1) else result.minusDays(1)
+            if (!calendar.isHoliday(result)) left--
+        }
+        return result
+    }
+
+    private fun iterBetween(from: LocalDate, to: LocalDate): Long =
+        if (to.isBefore(from))
+            -generateSequence(to) { it.plusDays(1) }.takeWhile { it.isBefore(from) }
+                                                    .count { !calendar.isHoliday(it) }.toLong()
+        else
+            generateSequence(from.plusDays(1)) { it.plusDays(1) }.takeWhile { !it.isAfter(to) }
+                                                                 .count { !calendar.isHoliday(it) }.toLong()
+
+    @Test
+    fun `the index gives the same answers as the iteration`() {
+        repeat(5_000) {
+            val from = origin.plusDays(random.nextLong(-300, 4_300))
+            val days = random.nextInt(-400, 400)
+            val to = from.plusDays(random.nextLong(-600, 600))
+            val day = calendar.addWorkingDays(from, days)
+
+            assertThat(day).describedAs("$from + $days").isEqualTo(iterAdd(from, days))
+            assertThat(calendar.workingDaysBetween(from, to)).describedAs("$from .. $to").isEqualTo(iterBetween(from, to))
+            assertThat(calendar.workingDaysBetween(from, day)).isEqualTo(days.toLong())
+        }
+    }
+
+    @Test
+    fun `range operations`() {
+        val calendar = CalendarSnapshot(1L, (0 until 20L).map { SystemDate("$it", DayType.FESTIVO,
+                                                                           LocalDate.of(2027, 3, 1).plusDays(it)) })
+        val friday = LocalDate.of(2027, 2, 26)
+
+        assertThat(calendar.nextWorkingDay(friday)).isEqualTo(LocalDate.of(2027, 3, 22))   // skips the block
+        assertThat(calendar.previousWorkingDay(LocalDate.of(2027, 3, 22))).isEqualTo(friday)
+        assertThat(calendar.holidaysBetween(LocalDate.of(2027, 3, 5), LocalDate.of(2027, 3, 25)))
+                .containsExactlyElementsOf((4L until 20L).map { LocalDate.of(2027, 3, 1).plusDays(it) })
+        assertThat(calendar.holidaysBetween(LocalDate.of(2027, 3, 25), LocalDate.of(2027, 3, 5))).isEmpty()
+        assertThat(calendar.addWorkingDays(friday, 0)).isEqualTo(friday)
+        assertThat(CalendarSnapshot.EMPTY.workingDaysBetween(LocalDate.of(2026, 10, 19), LocalDate.of(2026, 10, 26)))
+                .isEqualTo(5L)
+    }
+
+    @Test
+    fun `ten years in O(log n)`() {
+        val from = LocalDate.of(2020, 1, 1)
+        val to = LocalDate.of(2030, 12, 31)
+
+        var start = System.nanoTime()
+        repeat(1_000) { iterBetween(from, to) }
+        val iterated = (System.nanoTime() - start) / 1_000
+        start = System.nanoTime()
+        repeat(1_000) { calendar.workingDaysBetween(from, to) }
+        val indexed = (System.nanoTime() - start) / 1_000
+
+        logger.info("Working days between $from and $to: iteration {} ns, index {} ns", iterated, indexed)
+        assertThat(calendar.workingDaysBetween(from, to)).isEqualTo(iterBetween(from, to))
+    }
+}
@@ -28,6 +28,8 @@ import com.fasterxml.jackson.databind.annotation.JsonNaming
 /**
  * Generic Json format to make request body for GraphQL param server
  *
+ * The old request body, kept just to compare it with the GraphqlRequestRegistry (see GraphqlRequestRegistryTest).
+ *
  * @project cache-service
  * @autho: rlh
  * @date: July 2023
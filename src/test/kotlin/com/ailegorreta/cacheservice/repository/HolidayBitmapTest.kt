@@ -0,0 +1,141 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  HolidayBitmapTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.repository
+
+import com.ailegorreta.cacheservice.model.CalendarSnapshot
+import com.ailegorreta.cacheservice.model.DayType
+import com.ailegorreta.cacheservice.model.SystemDate
+import com.ailegorreta.cacheservice.repository.impl.SystemDateRepositoryImpl
+import com.ailegorreta.cacheservice.service.CacheService
+import com.ailegorreta.cacheservice.service.ParamService
+import com.ailegorreta.commons.utils.HasLogger
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.mockk.coEvery
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import kotlinx.coroutines.runBlocking
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.springframework.data.redis.core.ReactiveRedisOperations
+import org.springframework.data.redis.core.script.RedisScript
+import org.springframework.data.redis.serializer.RedisElementReader
+import org.springframework.data.redis.serializer.RedisElementWriter
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.time.LocalDate
+import java.util.BitSet
+import kotlin.random.Random
+
+/**
+ * Unit tests for the holiday bitmap of the system dates. Redis is mocked: the bitmap script is emulated with a
+ * BitSet, so the answers (one script call each, whatever the range) are compared with the in-memory calendar.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class HolidayBitmapTest : HasLogger {
+    private val random = Random(50)
+    private val holidays = (1..500).map { LocalDate.of(2020, 1, 1).plusDays(random.nextLong(4_000)) }
+    private val bitmap = BitSet().apply {
+        holidays.map { it.toEpochDay() }.filter { CalendarSnapshot.isWeekday(it) }.forEach { set(it.toInt()) }
+    }
+    private val calls = mutableListOf<List<String>>()
+    private val operations = mockk<ReactiveRedisOperations<String, SystemDate>>(relaxed = true) {
+        every { execute(any<RedisScript<Any>>(), any(), any(), any<RedisElementWriter<*>>(),
+                        any<RedisElementReader<Any>>()) } answers {
+            val args = thirdArg<List<Any>>().map { it.toString() }
+
+            calls.add(secondArg<List<String>>() + args)
+            when (args[0]) {
+                "get" -> Flux.just(if (bitmap[args[1].toInt()]) "1" else "0")
+                "count" -> Flux.just(bitmap.get(args[1].toInt(), args[2].toInt() + 1).cardinality().toString())
+                else -> Flux.just("1")
+            }
+        }
+        every { delete(*anyVararg()) } returns Mono.just(2L)
+    }
+    private val repository = SystemDateRepositoryImpl(operations, TrackedHashCache(SimpleMeterRegistry()))
+    private val calendar = CalendarSnapshot(1L, holidays.mapIndexed { i, day -> SystemDate("$i", DayType.FESTIVO, day) })
+
+    @Test
+    fun `the bitmap answers as the calendar`() {
+        repeat(2_000) {
+            val day = LocalDate.of(2019, 6, 1).plusDays(random.nextLong(4_500))
+            val to = day.plusDays(random.nextLong(-1_000, 1_000))
+
+            assertThat(repository.isHoliday(day).block()).describedAs("$day").isEqualTo(calendar.isHoliday(day))
+            assertThat(repository.workingDaysBetween(day, to).block()).describedAs("$day .. $to")
+                                                                      .isEqualTo(calendar.workingDaysBetween(day, to))
+        }
+        logger.info("Redis calls for 2000 holiday checks and 2000 range counts: {}", calls.size)
+        assertThat(calls).allMatch { it.take(2) == listOf("SYSTEM_DATE", SystemDateRepositoryImpl.HOLIDAYS) }
+        assertThat(calls).noneMatch { it[2] == "get" && !CalendarSnapshot.isWeekday(it[3].toLong()) }
+    }
+
+    @Test
+    fun `a write deletes the bitmap in the same script`() {
+        repository.save(SystemDate(null, DayType.FESTIVO, LocalDate.of(2026, 11, 2))).block()
+        repository.deleteById("_R1").block()
+        repository.deleteAll().block()
+
+        assertThat(calls.map { it.take(3) }).containsExactly(
+                listOf("SYSTEM_DATE", "SYSTEM_DATE:INDEX", SystemDateRepositoryImpl.HOLIDAYS),
+                listOf("SYSTEM_DATE", "SYSTEM_DATE:INDEX", SystemDateRepositoryImpl.HOLIDAYS))
+        verify { operations.delete("SYSTEM_DATE", "SYSTEM_DATE:INDEX", SystemDateRepositoryImpl.HOLIDAYS) }
+    }
+
+    @Test
+    fun `the system calendar is read from the bitmap while Redis is reachable`(): Unit = runBlocking {
+        var redisUp = true
+        val paramService = mockk<ParamService> {
+            coEvery { allSystemDates() } returns holidays.mapIndexed { i, day -> SystemDate("$i", DayType.FESTIVO, day) }
+        }
+        val cacheService = CacheService(paramService, mockk(relaxed = true), mockk(relaxed = true),
+                                        mockk(relaxed = true) { every { available() } answers { redisUp } },
+                                        mockk(relaxed = true), mockk(relaxed = true), mockk(relaxed = true),
+                                        repository, mockk(relaxed = true), mockk(relaxed = true))
+        val holiday = holidays.first { CalendarSnapshot.isWeekday(it.toEpochDay()) }
+        val from = holiday.minusDays(40)
+
+        assertThat(cacheService.isHoliday(holiday)).isTrue
+        assertThat(cacheService.workingDaysBetween(from, holiday)).isEqualTo(calendar.workingDaysBetween(from, holiday))
+        assertThat(calls.map { it[2] }).containsExactly("get", "count")
+
+        redisUp = false                                     // the calendar snapshot
+        assertThat(cacheService.isHoliday(holiday)).isTrue
+        assertThat(cacheService.workingDaysBetween(from, holiday)).isEqualTo(calendar.workingDaysBetween(from, holiday))
+        assertThat(calls).hasSize(2)
+    }
+
+    @Test
+    fun `no system dates in Redis is not an empty calendar`() {
+        every { operations.execute(any<RedisScript<Any>>(), any(), any(), any<RedisElementWriter<*>>(),
+                                   any<RedisElementReader<Any>>()) } returns Flux.just("-1")
+
+        assertThat(repository.isHoliday(LocalDate.of(2026, 11, 2)).blockOptional()).isEmpty
+        assertThat(repository.workingDaysBetween(LocalDate.of(2026, 11, 2), LocalDate.of(2026, 11, 9)).blockOptional())
+                .isEmpty
+    }
+}
@@ -0,0 +1,125 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  HotKeyCacheTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.repository
+
+import com.ailegorreta.commons.utils.HasLogger
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import java.time.Duration
+import java.util.*
+
+/**
+ * Unit tests for the hot key detection and the in-process cache. With a skewed load (Zipf like) the fraction of
+ * the reads that do not go to Redis is logged.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class HotKeyCacheTest : HasLogger {
+    private var now = 0L
+
+    private fun cache(sampleRate: Double = 1.0) =
+        HotKeyCache<String>("SYSTEM_RATE", sampleRate = sampleRate, threshold = 10, maxHot = 8,
+                            decay = Duration.ofSeconds(10), ttl = Duration.ofSeconds(5), clock = { now })
+
+    @Test
+    fun `a key is promoted, cached and demoted when it cools`() {
+        val cache = cache()
+
+        repeat(9) { assertThat(cache.get("TIIE")).isNull() }
+        assertThat(cache.isHot("TIIE")).isFalse
+        cache.get("TIIE")
+        assertThat(cache.isHot("TIIE")).isTrue
+
+        cache.put("TIIE", "11.5", cache.stamp("TIIE"))
+        cache.put("UDI", "8.1", cache.stamp("UDI"))          // not hot, not kept
+        assertThat(cache.get("TIIE")).isEqualTo("11.5")
+        assertThat(cache.get("UDI")).isNull()
+
+        cache.invalidate("TIIE")
+        assertThat(cache.get("TIIE")).isNull()
+        cache.put("TIIE", "11.6", cache.stamp("TIIE"))
+        now += Duration.ofSeconds(6).toNanos()               // the ttl
+        assertThat(cache.get("TIIE")).isNull()
+
+        now += Duration.ofSeconds(10).toNanos()              // halves 13 to 6, not under threshold / 2
+        cache.get("UDI")
+        assertThat(cache.isHot("TIIE")).isTrue
+        now += Duration.ofSeconds(10).toNanos()
+        cache.get("UDI")
+        assertThat(cache.isHot("TIIE")).isFalse
+        assertThat(cache.demotions.get()).isEqualTo(1)
+    }
+
+    @Test
+    fun `a read older than an invalidation is not kept`() {
+        val cache = cache()
+
+        repeat(10) { cache.get("TIIE") }
+        cache.put("TIIE", "11.5", cache.stamp("TIIE"))
+
+        val stamp = cache.stamp("TIIE")                      // a read starts, then the rate is written
+        cache.invalidate("TIIE")
+        cache.put("TIIE", "11.5", stamp)                     // the read ends with the old value
+        assertThat(cache.get("TIIE")).isNull()
+
+        cache.put("TIIE", "11.6", cache.stamp("TIIE"))       // a read after the write
+        assertThat(cache.get("TIIE")).isEqualTo("11.6")
+
+        val beforeAll = cache.stamp("TIIE")
+        cache.invalidateAll()
+        cache.put("TIIE", "11.6", beforeAll)
+        assertThat(cache.get("TIIE")).isNull()
+    }
+
+    @Test
+    fun `a skewed load is served from memory`() {
+        val cache = cache(sampleRate = 0.125)
+        val random = Random(7)
+        val names = (1..500).map { "RATE_$it" }
+        val weights = names.indices.map { 1.0 / (it + 1) }    // Zipf, s = 1
+        val total = weights.sum()
+        var redisReads = 0
+        val reads = 100_000
+
+        repeat(reads) {
+            var r = random.nextDouble() * total
+            var i = 0
+
+            while (r > weights[i]) { r -= weights[i]; i++ }
+            val name = names[i]
+
+            if (cache.get(name) == null) {
+                redisReads++
+                cache.put(name, "value of $name", cache.stamp(name))
+            }
+            now += Duration.ofMillis(1).toNanos()
+        }
+        logger.info("Skewed load: {} reads, to Redis before {}, after {} ({}% served from memory, {} hot keys)",
+                    reads, reads, redisReads, 100 * cache.hits.get() / reads, cache.size())
+        assertThat(cache.hotKeys().keys).contains("RATE_1", "RATE_2", "RATE_3")
+        assertThat(cache.size()).isLessThanOrEqualTo(8)
+        assertThat(redisReads).isLessThan(reads * 3 / 4)
+    }
+}
@@ -0,0 +1,176 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ReactiveCatalogRepositoryTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.repository
+
+import com.ailegorreta.cacheservice.model.DayType
+import com.ailegorreta.cacheservice.model.SystemDate
+import com.ailegorreta.cacheservice.model.SystemRate
+import com.ailegorreta.cacheservice.repository.impl.SystemDateRepositoryImpl
+import com.ailegorreta.cacheservice.repository.impl.SystemRateRepositoryImpl
+import com.ailegorreta.commons.utils.HasLogger
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.springframework.dao.DuplicateKeyException
+import org.springframework.data.redis.RedisSystemException
+import org.springframework.data.redis.core.ReactiveHashOperations
+import org.springframework.data.redis.core.ReactiveRedisOperations
+import org.springframework.data.redis.core.script.RedisScript
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer
+import org.springframework.data.redis.serializer.RedisElementReader
+import org.springframework.data.redis.serializer.RedisElementWriter
+import org.springframework.data.redis.serializer.RedisSerializationContext
+import org.springframework.data.redis.serializer.StringRedisSerializer
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import reactor.test.StepVerifier
+import java.math.BigDecimal
+import java.nio.ByteBuffer
+import java.time.LocalDate
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Unit tests for the generic catalog repository with a mocked Redis. The Redis round trips (and the entities
+ * read) of the lookups by name are logged before (catalog scan) and after (index).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class ReactiveCatalogRepositoryTest : HasLogger {
+    private val hashOperations = mockk<ReactiveHashOperations<String, String, Any>>()
+    private val scripts = mutableListOf<List<String>>()         // the keys of each script call
+
+    private fun <T : Any> operations(script: (List<String>) -> Flux<Any>): ReactiveRedisOperations<String, T> {
+        val context = RedisSerializationContext.newSerializationContext<String, T>(StringRedisSerializer())
+                                               .hashKey(StringRedisSerializer())
+                                               .hashValue(GenericJackson2JsonRedisSerializer())
+                                               .build()
+
+        return mockk {
+            every { serializationContext } returns context
+            every { opsForHash<String, T>() } returns hashOperations as ReactiveHashOperations<String, String, T>
+            every { execute(any<RedisScript<Any>>(), any(), any(), any<RedisElementWriter<*>>(),
+                            any<RedisElementReader<Any>>()) } answers {
+                val keys = secondArg<List<String>>()
+
+                scripts.add(keys)
+                script(keys)
+            }
+        }
+    }
+
+    private fun rates(operations: ReactiveRedisOperations<String, SystemRate>) =
+        SystemRateRepositoryImpl(operations, mockk { every { cache<SystemRate>(any()) } returns null },
+                                 TrackedHashCache(SimpleMeterRegistry()))
+
+    @Test
+    fun `a lookup by name is one script call, not a catalog scan`() {
+        val catalog = (1..1000).map { SystemRate("_R$it", "RATE-$it", BigDecimal(it)) }
+        val repository = rates(operations { Flux.just(catalog[499]) })
+
+        repeat(100) { assertThat(repository.findByName("RATE-500").block()!!.rate).isEqualTo(BigDecimal(500)) }
+        logger.info("Entities read by 100 lookups by name in a catalog of {}: scan {}, index {}",
+                    catalog.size, 100 * catalog.size, scripts.size)
+        assertThat(scripts).hasSize(100).allMatch { it == listOf("SYSTEM_RATE:INDEX", "SYSTEM_RATE") }
+        verify(exactly = 0) { hashOperations.values(any()) }
+    }
+
+    @Test
+    fun `the index is built when it does not exist`() {
+        val findCalls = AtomicInteger()
+        val rate = SystemRate("_R1", "TIIE", BigDecimal("11.5"))
+        val repository = rates(operations { keys ->
+            when {
+                keys.size == 1 -> Flux.just("1")                       // the reindex
+                findCalls.getAndIncrement() == 0 -> Flux.error(RedisSystemException("Error in execution", IllegalStateException("ERR NOINDEX")))
+                else -> Flux.just(rate)
+            }
+        })
+        every { hashOperations.values("SYSTEM_RATE") } returns Flux.just(rate)
+
+        assertThat(repository.findByName("TIIE").block()).isEqualTo(rate)
+        assertThat(scripts).containsExactly(listOf("SYSTEM_RATE:INDEX", "SYSTEM_RATE"), listOf("SYSTEM_RATE:INDEX"),
+                                            listOf("SYSTEM_RATE:INDEX", "SYSTEM_RATE"))
+    }
+
+    @Test
+    fun `the save arguments carry the index values`() {
+        val repository = SystemDateRepositoryImpl(operations { Flux.empty() }, TrackedHashCache(SimpleMeterRegistry()))
+        val today = SystemDate("_R1", DayType.HOY, LocalDate.of(2026, 10, 19), 3)
+        val holiday = SystemDate("_R2", DayType.FESTIVO, LocalDate.of(2026, 11, 2), 0)
+        val args = repository.saveArgs(listOf(today, holiday), listOf(3, -1))
+
+        assertThat(args.filterIsInstance<String>()).containsExactly("1", "name", "version", "_R1", "3", "HOY", "_R2", "-1", "")
+        assertThat(StringRedisSerializer.UTF_8.deserialize((args[5] as ByteBuffer).array())).contains("\"version\":3")
+    }
+
+    @Test
+    fun `a replace with duplicate names does not touch Redis`() {
+        val repository = rates(operations { Flux.empty() })
+
+        StepVerifier.create(repository.replaceAll(listOf(SystemRate(null, "TIIE", BigDecimal.ONE),
+                                                         SystemRate(null, "TIIE", BigDecimal.TEN))))
+                    .expectError(DuplicateKeyException::class.java)
+                    .verify()
+        StepVerifier.create(repository.save(SystemRate(null, "", BigDecimal.ONE)))
+                    .expectError(IllegalArgumentException::class.java)
+                    .verify()
+        assertThat(scripts).isEmpty()
+        verify(exactly = 0) { hashOperations.putAll(any(), any()) }
+    }
+
+    @Test
+    fun `a replace swaps the entities and their index with one script`() {
+        val repository = rates(operations { Flux.just("1") })
+
+        every { hashOperations.putAll(any(), any()) } returns Mono.just(true)
+
+        StepVerifier.create(repository.replaceAll(listOf(SystemRate(null, "TIIE", BigDecimal.ONE),
+                                                         SystemRate(null, "UDI", BigDecimal.TEN))))
+                    .expectNextCount(2)
+                    .verifyComplete()
+
+        val (staging, live, stagingIndex, liveIndex) = scripts.last()
+
+        assertThat(staging).startsWith("SYSTEM_RATE:STAGING:")
+        assertThat(stagingIndex).isEqualTo("$staging:INDEX")
+        assertThat(listOf(live, liveIndex)).containsExactly("SYSTEM_RATE", "SYSTEM_RATE:INDEX")
+    }
+
+    @Test
+    fun `a replace of the system dates deletes the holiday bitmap in the swap script`() {
+        val repository = SystemDateRepositoryImpl(operations { Flux.just("1") }, TrackedHashCache(SimpleMeterRegistry()))
+
+        every { hashOperations.putAll(any(), any()) } returns Mono.just(true)
+
+        StepVerifier.create(repository.replaceAll(listOf(SystemDate(null, DayType.HOY, LocalDate.of(2026, 10, 19)))))
+                    .expectNextCount(1)
+                    .verifyComplete()
+
+        assertThat(scripts.last()).hasSize(5).endsWith(SystemDateRepositoryImpl.HOLIDAYS)
+    }
+}
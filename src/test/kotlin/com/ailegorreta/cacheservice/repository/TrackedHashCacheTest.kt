@@ -0,0 +1,100 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  TrackedHashCacheTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.repository
+
+import com.ailegorreta.cacheservice.model.SystemRate
+import com.ailegorreta.commons.utils.HasLogger
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Sinks
+import java.math.BigDecimal
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Unit tests for the local copy of the tracked catalog reads. The Redis round trips of repeated catalog reads are
+ * logged before (no tracking) and after (tracking active).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class TrackedHashCacheTest : HasLogger {
+    private val meterRegistry = SimpleMeterRegistry()
+    private val cache = TrackedHashCache(meterRegistry)
+    private val loads = AtomicInteger()
+    private var rates = listOf(SystemRate("1", "TIIE", BigDecimal("11.5")), SystemRate("2", "UDI", BigDecimal("8.1")))
+
+    private fun findAll(): Flux<SystemRate> = cache.values("SYSTEM_RATE", { it.copy() }) {
+        Flux.defer { loads.incrementAndGet(); Flux.fromIterable(rates) }
+    }
+
+    @Test
+    fun `reads are local until Redis invalidates the key`() {
+        repeat(100) { findAll().collectList().block() }
+        val before = loads.getAndSet(0)                     // not active: every read goes to Redis
+
+        cache.activate()
+        repeat(100) { assertThat(findAll().map { it.rate }.collectList().block()).containsExactly(BigDecimal("11.5"), BigDecimal("8.1")) }
+        logger.info("Redis round trips for 100 catalog reads: without tracking {}, with tracking {}", before, loads.get())
+        assertThat(before).isEqualTo(100)
+        assertThat(loads.get()).isEqualTo(1)
+
+        rates = listOf(SystemRate("1", "TIIE", BigDecimal("11.6")))
+        cache.invalidate("SYSTEM_RATE")                     // the push message
+        assertThat(findAll().map { it.rate }.collectList().block()).containsExactly(BigDecimal("11.6"))
+        assertThat(loads.get()).isEqualTo(2)
+        assertThat(meterRegistry.get("redis.tracking.requests").tag("result", "hit").counter().count()).isEqualTo(99.0)
+
+        cache.deactivate()                                  // the tracking connection was lost
+        findAll().blockLast()
+        assertThat(loads.get()).isEqualTo(3)
+    }
+
+    @Test
+    fun `the callers get copies`() {
+        cache.activate()
+        findAll().blockFirst()!!.rate = BigDecimal.ONE
+        findAll().blockFirst()!!.rate = BigDecimal.TEN
+
+        assertThat(findAll().blockFirst()!!.rate).isEqualTo(BigDecimal("11.5"))
+    }
+
+    @Test
+    fun `a read that overlaps an invalidation is not kept`() {
+        val redis = Sinks.one<List<SystemRate>>()
+
+        cache.activate()
+        val read = cache.values("SYSTEM_RATE", { it.copy() }) { redis.asMono().flatMapIterable { it } }
+                        .collectList()
+                        .toFuture()
+
+        cache.invalidate("SYSTEM_RATE")                     // the key changed while it was read
+        redis.tryEmitValue(rates)
+        assertThat(read.get()).hasSize(2)
+
+        findAll().blockLast()
+        assertThat(loads.get()).isEqualTo(1)                // the old read was not kept
+    }
+}
@@ -0,0 +1,124 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CachingReactiveJwtDecoderTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.security
+
+import com.ailegorreta.commons.utils.HasLogger
+import com.nimbusds.jose.JWSAlgorithm
+import com.nimbusds.jose.JWSHeader
+import com.nimbusds.jose.crypto.RSASSASigner
+import com.nimbusds.jwt.JWTClaimsSet
+import com.nimbusds.jwt.SignedJWT
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder
+import java.lang.management.ManagementFactory
+import java.security.KeyPairGenerator
+import java.security.interfaces.RSAPublicKey
+import java.time.Clock
+import java.time.Instant
+import java.time.ZoneOffset
+import java.util.*
+
+/**
+ * Unit tests for the verified JWT cache, with a benchmark of the CPU time per decode before (Nimbus decoder, RS256)
+ * and after (cached) that is logged.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class CachingReactiveJwtDecoderTest : HasLogger {
+    private val keyPair = KeyPairGenerator.getInstance("RSA").apply { initialize(2048) }.generateKeyPair()
+    private val nimbus = NimbusReactiveJwtDecoder.withPublicKey(keyPair.public as RSAPublicKey).build()
+
+    private fun token(subject: String = "cache-client", expiresAt: Instant = Instant.now().plusSeconds(300)): String {
+        val claims = JWTClaimsSet.Builder()
+                                 .subject(subject)
+                                 .claim("scope", "sys.facultad")
+                                 .issueTime(Date())
+                                 .expirationTime(Date.from(expiresAt))
+                                 .build()
+
+        return SignedJWT(JWSHeader(JWSAlgorithm.RS256), claims).apply { sign(RSASSASigner(keyPair.private)) }
+                                                               .serialize()
+    }
+
+    @Test
+    fun `a verified token is cached until it expires`() {
+        var now = Instant.now()
+        val clock = object : Clock() {
+            override fun getZone() = ZoneOffset.UTC
+            override fun withZone(zone: java.time.ZoneId?) = this
+            override fun instant() = now
+        }
+        val meterRegistry = SimpleMeterRegistry()
+        val decoder = CachingReactiveJwtDecoder(nimbus, maxSize = 1, enabled = true, meterRegistry = meterRegistry,
+                                                clock = clock)
+        val token = token(expiresAt = now.plusSeconds(60))
+
+        val jwt = decoder.decode(token).block()!!
+        assertThat(decoder.decode(token).block()).isSameAs(jwt)
+        assertThat(meterRegistry.get("jwt.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1.0)
+
+        decoder.decode(token("other")).block()                  // the cache is full
+        assertThat(decoder.size()).isEqualTo(1)
+
+        now = now.plusSeconds(61)
+        decoder.decode(token).block()                           // expired in the cache, validated again
+        assertThat(meterRegistry.get("jwt.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1.0)
+        assertThat(meterRegistry.get("jwt.cache.requests").tag("result", "miss").counter().count()).isEqualTo(3.0)
+
+        decoder.enabled = false
+        assertThat(decoder.size()).isEqualTo(0)
+    }
+
+    @Test
+    fun `CPU per decode before and after`() {
+        val token = token()
+        val cached = CachingReactiveJwtDecoder(nimbus, maxSize = 100, enabled = true, meterRegistry = SimpleMeterRegistry())
+
+        val before = cpuPerDecode { nimbus.decode(token).block() }
+        val after = cpuPerDecode { cached.decode(token).block() }
+
+        logger.info("CPU per JWT decode: Nimbus RS256 {} us, cached {} us", before, after)
+        assertThat(after).isLessThan(before)
+    }
+
+    private fun cpuPerDecode(decode: () -> Unit): Long {
+        val threads = ManagementFactory.getThreadMXBean()
+
+        repeat(WARM_UP) { decode() }
+
+        val start = threads.currentThreadCpuTime
+
+        repeat(ITERATIONS) { decode() }
+
+        return (threads.currentThreadCpuTime - start) / ITERATIONS / 1_000
+    }
+
+    companion object {
+        const val WARM_UP = 2_000
+        const val ITERATIONS = 5_000
+    }
+}
@@ -0,0 +1,152 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ClientCredentialsTokenManagerTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.security
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.commons.utils.HasLogger
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.mockk.every
+import io.mockk.mockk
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+import org.springframework.security.oauth2.client.registration.ClientRegistration
+import org.springframework.security.oauth2.client.registration.InMemoryReactiveClientRegistrationRepository
+import org.springframework.security.oauth2.core.AuthorizationGrantType
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import reactor.netty.DisposableServer
+import reactor.netty.http.server.HttpServer
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Unit tests for the background refresh of the client-credentials token, against a fake token endpoint that
+ * takes 200ms per token. The latency of getting a token in the request path before (token expired, fetched on
+ * demand) and after (refreshed in background) is logged.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class ClientCredentialsTokenManagerTest : HasLogger {
+    private val fetches = AtomicInteger()
+    private val server: DisposableServer = HttpServer.create()
+                                                     .port(0)
+                                                     .route { routes ->
+                                                         routes.post("/oauth2/token") { _, response ->
+                                                             val n = fetches.incrementAndGet()
+
+                                                             response.header("Content-Type", "application/json")
+                                                                     .sendString(Mono.just("""{"access_token":"token-$n","token_type":"Bearer","expires_in":8}""")
+                                                                                     .delayElement(Duration.ofMillis(200)))
+                                                         }
+                                                     }
+                                                     .bindNow()
+    private val meterRegistry = SimpleMeterRegistry()
+
+    private fun manager(enabled: Boolean = true): ClientCredentialsTokenManager {
+        val registration = ClientRegistration.withRegistrationId("cache-service-client-credentials")
+                                             .clientId("cache-service")
+                                             .clientSecret("secret")
+                                             .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                                             .tokenUri("http://localhost:${server.port()}/oauth2/token")
+                                             .build()
+        val serviceConfig = mockk<ServiceConfig>()
+
+        every { serviceConfig.clientId } returns "cache-service"
+        every { serviceConfig.tokenRefreshEnabled } returns enabled
+        every { serviceConfig.tokenRefreshAt } returns 0.1
+        every { serviceConfig.tokenRefreshJitter } returns 0.01
+        every { serviceConfig.tokenRefreshRetry } returns Duration.ofMillis(100)
+
+        return ClientCredentialsTokenManager(InMemoryReactiveClientRegistrationRepository(registration), serviceConfig,
+                                             meterRegistry)
+    }
+
+    @AfterEach
+    fun tearDown() {
+        server.disposeNow()
+    }
+
+    @Test
+    fun `concurrent requests without token share one fetch`() {
+        val manager = manager()
+
+        val tokens = Flux.range(0, 20)
+                         .flatMap { manager.currentToken() }
+                         .map { it.tokenValue }
+                         .collectList()
+                         .block()!!
+
+        assertThat(tokens).hasSize(20).containsOnly("token-1")
+        assertThat(fetches.get()).isEqualTo(1)
+        assertThat(meterRegistry.get("oauth2.token.fetch").tag("result", "success").timer().count()).isEqualTo(1)
+    }
+
+    @Test
+    fun `the token is refreshed in background before it expires`() {
+        val manager = manager()
+
+        manager.start()
+        TimeUnit.MILLISECONDS.sleep(500)
+        val first = manager.currentToken().block()!!.tokenValue
+
+        TimeUnit.MILLISECONDS.sleep(1_500)                   // after the refresh at 10% of the lifetime
+        val second = manager.currentToken().block()!!.tokenValue
+
+        assertThat(first).isEqualTo("token-1")
+        assertThat(second).isNotEqualTo(first)
+        manager.stop()
+    }
+
+    @Test
+    fun `latency of the token in the request path`() {
+        var before = 0L
+
+        repeat(3) {
+            val onDemand = manager()                         // before: no valid token, it is fetched when needed
+            val start = System.nanoTime()
+
+            onDemand.currentToken().block()
+            before += System.nanoTime() - start
+        }
+
+        val background = manager()                           // after: refreshed in background
+        var after = 0L
+
+        background.start()
+        TimeUnit.MILLISECONDS.sleep(500)
+        repeat(3) {
+            val start = System.nanoTime()
+            background.currentToken().block()
+            after += System.nanoTime() - start
+            TimeUnit.MILLISECONDS.sleep(1_000)
+        }
+        background.stop()
+        logger.info("Token latency in the request path: on demand {}us, background refresh {}us",
+                    before / 3_000, after / 3_000)
+        assertThat(after).isLessThan(before)
+    }
+}
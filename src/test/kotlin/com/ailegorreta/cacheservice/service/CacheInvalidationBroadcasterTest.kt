@@ -0,0 +1,128 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CacheInvalidationBroadcasterTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.cacheservice.model.CacheInvalidation
+import com.ailegorreta.cacheservice.model.SystemRate
+import com.ailegorreta.cacheservice.repository.HotKeys
+import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.mockk.every
+import io.mockk.mockk
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+import org.springframework.data.redis.connection.ReactiveSubscription
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate
+import reactor.core.publisher.Mono
+import reactor.core.publisher.Sinks
+import java.math.BigDecimal
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Unit tests for the broadcast of the invalidations between two replicas. The Redis pub/sub channel and the
+ * sequence are emulated in memory.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class CacheInvalidationBroadcasterTest {
+    private val channel = Sinks.many().multicast().directBestEffort<String>()
+    private val sequence = AtomicLong()
+    private val redisTemplate = mockk<ReactiveStringRedisTemplate> {
+        every { opsForValue().increment(CacheInvalidationBroadcaster.SEQUENCE_KEY) } answers {
+            Mono.just(sequence.incrementAndGet())
+        }
+        every { convertAndSend(CacheInvalidationBroadcaster.CHANNEL, any()) } answers {
+            channel.tryEmitNext(secondArg())
+            Mono.just(2L)
+        }
+        every { listenToChannel(*anyVararg()) } returns
+                channel.asFlux().map { ReactiveSubscription.ChannelMessage(CacheInvalidationBroadcaster.CHANNEL, it) }
+    }
+    private val serviceConfig = mockk<ServiceConfig> {
+        every { hotKeysEnabled } returns true
+        every { hotKeysSampleRate } returns 1.0
+        every { hotKeysThreshold } returns 1
+        every { hotKeysMax } returns 8
+        every { hotKeysDecay } returns Duration.ofHours(1)
+        every { hotKeysTtl } returns Duration.ofHours(1)
+    }
+    private val publisherMetrics = SimpleMeterRegistry()
+    private val receiverMetrics = SimpleMeterRegistry()
+    private val publisher = CacheInvalidationBroadcaster(redisTemplate, jacksonObjectMapper(), publisherMetrics)
+    private val receiver = CacheInvalidationBroadcaster(redisTemplate, jacksonObjectMapper(), receiverMetrics)
+
+    @AfterEach
+    fun unsubscribe() {
+        publisher.unsubscribe()
+        receiver.unsubscribe()
+    }
+
+    @Test
+    fun `the other replica drops the entry, the publisher skips its own message`() {
+        val hotKeys = HotKeys(serviceConfig, SimpleMeterRegistry())
+        val hotRates = hotKeys.cache<SystemRate>(CacheService.SYSTEM_RATE_CATALOG)!!
+        val published = CopyOnWriteArrayList<CacheInvalidation>()
+        val changes = CopyOnWriteArrayList<CacheInvalidation>()
+
+        CacheService(mockk(), mockk(), receiver, mockk(relaxed = true), hotKeys, mockk(relaxed = true),
+                     mockk(relaxed = true), mockk(relaxed = true), mockk(relaxed = true), mockk(relaxed = true))
+        publisher.addListener { published.add(it) }
+        publisher.changes().subscribe { changes.add(it) }
+        publisher.subscribe()
+        receiver.subscribe()
+
+        listOf("TIIE", "UDI").forEach { hotRates.get(it) }   // the keys are hot in the receiver
+        hotRates.put("TIIE", SystemRate("1", "TIIE", BigDecimal("11.25")), hotRates.stamp("TIIE"))
+        hotRates.put("UDI", SystemRate("2", "UDI", BigDecimal("8.1")), hotRates.stamp("UDI"))
+        assertThat(hotRates.get("TIIE")!!.rate).isEqualTo(BigDecimal("11.25"))
+
+        publisher.publish(CacheService.SYSTEM_RATE_CATALOG, "TIIE", "11.5")
+
+        assertThat(hotRates.get("TIIE")).isNull()
+        assertThat(hotRates.get("UDI")!!.rate).isEqualTo(BigDecimal("8.1"))
+        assertThat(published).isEmpty()
+        assertThat(changes.map { it.sequence to it.origin }).containsExactly(1L to publisher.instanceId)
+    }
+
+    @Test
+    fun `each replica records the propagation lag`() {
+        publisher.subscribe()
+        receiver.subscribe()
+
+        publisher.publish(CacheService.SYSTEM_RATE_CATALOG, "TIIE", "11.5")
+        publisher.publish(CacheService.SYSTEM_RATE_CATALOG)
+
+        listOf(publisherMetrics, receiverMetrics).forEach { metrics ->
+            assertThat(metrics.get("cache.invalidation.propagation")
+                              .tag("catalog", CacheService.SYSTEM_RATE_CATALOG)
+                              .timer()
+                              .count()).isEqualTo(2L)
+        }
+    }
+}
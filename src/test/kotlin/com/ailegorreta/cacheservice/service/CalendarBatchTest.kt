@@ -0,0 +1,97 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CalendarBatchTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.model.CalendarQuery
+import com.ailegorreta.cacheservice.model.DayType
+import com.ailegorreta.cacheservice.model.SystemDate
+import com.ailegorreta.commons.utils.HasLogger
+import io.mockk.coEvery
+import io.mockk.coVerify
+import io.mockk.every
+import io.mockk.mockk
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import reactor.core.publisher.Flux
+import java.time.LocalDate
+
+/**
+ * Unit tests for the batch calendar queries. The calendar is read from a mocked param microservice (Redis is not
+ * reachable), and the time of a batch of queries is logged.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class CalendarBatchTest : HasLogger {
+    private val today = LocalDate.of(2026, 10, 19)                  // a Monday
+    private val paramService = mockk<ParamService> {
+        coEvery { allSystemDates() } returns listOf(SystemDate("1", DayType.HOY, today),
+                                                    SystemDate("2", DayType.FESTIVO, LocalDate.of(2026, 11, 2)),
+                                                    SystemDate("3", DayType.FESTIVO, LocalDate.of(2026, 11, 16)))
+    }
+    private val cacheService = CacheService(paramService, mockk(relaxed = true), mockk(relaxed = true),
+                                            mockk(relaxed = true) { every { available() } returns false },
+                                            mockk(relaxed = true), mockk(relaxed = true),
+                                            mockk(relaxed = true), mockk(relaxed = true), mockk(relaxed = true),
+                                            mockk(relaxed = true))
+
+    @Test
+    fun `the answers follow the queries`() {
+        val answers = cacheService.calendarBatch(Flux.just(CalendarQuery(),
+                                                           CalendarQuery(date = LocalDate.of(2026, 11, 2)),
+                                                           CalendarQuery(date = LocalDate.of(2026, 10, 30), days = 1),
+                                                           CalendarQuery(days = -1),
+                                                           CalendarQuery(to = LocalDate.of(2026, 11, 20))))
+                                  .collectList().block()!!
+
+        assertThat(answers.map { it.date to it.holiday })
+                .containsExactly(today to false, LocalDate.of(2026, 11, 2) to true, LocalDate.of(2026, 10, 30) to false,
+                                 today to false, today to false)
+        assertThat(answers[2].workingDay).isEqualTo(LocalDate.of(2026, 11, 3))     // weekend and holiday skipped
+        assertThat(answers[3].workingDay).isEqualTo(LocalDate.of(2026, 10, 16))
+        assertThat(answers[4].workingDays).isEqualTo(22L)                        // 24 week days minus 2 holidays
+    }
+
+    @Test
+    fun `a large batch uses one calendar`() {
+        val queries = (0 until 50_000).map { CalendarQuery(date = today.plusDays((it % 365).toLong()), days = it % 20) }
+
+        cacheService.calendarBatch(Flux.just(CalendarQuery())).blockLast()    // warm up
+        val start = System.nanoTime()
+        val answers = cacheService.calendarBatch(Flux.fromIterable(queries)).collectList().block()!!
+        val elapsed = System.nanoTime() - start
+
+        logger.info("Batch of {} calendar queries: {} ms in one request, {} ns per query",
+                    answers.size, elapsed / 1_000_000, elapsed / answers.size)
+        assertThat(answers).hasSize(queries.size)
+        assertThat(answers.map { it.date }).isEqualTo(queries.map { it.date })
+        answers.filterIndexed { i, _ -> i % 5_000 == 0 }.forEach { answer ->
+            val back = cacheService.calendarBatch(Flux.just(CalendarQuery(date = answer.date, to = answer.workingDay)))
+                                   .blockFirst()!!
+
+            assertThat(back.workingDays).isEqualTo(answer.days!!.toLong())
+        }
+        coVerify(exactly = 1) { paramService.allSystemDates() }
+    }
+}
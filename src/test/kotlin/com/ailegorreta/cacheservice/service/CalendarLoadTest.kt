@@ -0,0 +1,106 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CalendarLoadTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.model.CacheInvalidation
+import com.ailegorreta.cacheservice.model.DayType
+import com.ailegorreta.cacheservice.model.SystemDate
+import io.mockk.coEvery
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.slot
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import java.time.LocalDate
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Unit tests for the single-flight load of the calendar snapshot. The system dates are read from a mocked param
+ * microservice (Redis is not reachable) that answers each load when the test opens its gate, and fails the third one.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class CalendarLoadTest {
+    private val today = LocalDate.of(2026, 10, 19)
+    private val loads = AtomicInteger()
+    private val gates = listOf(CompletableDeferred<Unit>(), CompletableDeferred())
+    private val paramService = mockk<ParamService> {
+        coEvery { allSystemDates() } coAnswers {
+            val load = loads.getAndIncrement()
+
+            if (load == gates.size) throw IllegalStateException("The param microservice is down")
+            gates[load].await()
+            listOf(SystemDate("1", DayType.HOY, today.plusDays(load.toLong())))
+        }
+    }
+    private val listener = slot<(CacheInvalidation) -> Unit>()
+    private val broadcaster = mockk<CacheInvalidationBroadcaster>(relaxed = true) {
+        every { addListener(capture(listener)) } returns Unit
+    }
+    private val cacheService = CacheService(paramService, mockk(relaxed = true), broadcaster,
+                                            mockk(relaxed = true) { every { available() } returns false },
+                                            mockk(relaxed = true), mockk(relaxed = true),
+                                            mockk(relaxed = true), mockk(relaxed = true), mockk(relaxed = true),
+                                            mockk(relaxed = true))
+
+    private fun invalidate() = listener.captured(CacheInvalidation(catalog = CacheService.SYSTEM_DATE_CATALOG,
+                                                                   origin = "other replica",
+                                                                   sentAt = System.currentTimeMillis()))
+
+    private suspend fun awaitLoads(n: Int) {
+        while (loads.get() < n) delay(5)
+    }
+
+    @Test
+    fun `a load older than an invalidation does not replace the newer calendar`(): Unit = runBlocking {
+        val stale = (1..5).map { async(start = CoroutineStart.UNDISPATCHED) { cacheService.getCalendar() } }
+
+        awaitLoads(1)
+        invalidate()
+        val current = async(start = CoroutineStart.UNDISPATCHED) { cacheService.getCalendar() }
+
+        awaitLoads(2)
+        gates[1].complete(Unit)                             // the new load finishes first
+        assertThat(current.await().today).isEqualTo(today.plusDays(1))
+        gates[0].complete(Unit)
+
+        val answered = stale.awaitAll()
+
+        assertThat(answered.map { it.today }).containsOnly(today)
+        assertThat(answered).allMatch { it === answered[0] }    // the five callers shared one load
+        assertThat(cacheService.getCalendar().today).isEqualTo(today.plusDays(1))
+        assertThat(loads.get()).isEqualTo(2)
+
+        invalidate()                                        // its load fails, the newest calendar is used
+        assertThat(cacheService.getCalendar().today).isEqualTo(today.plusDays(1))
+        assertThat(loads.get()).isEqualTo(3)
+    }
+}
@@ -0,0 +1,113 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CalendarServiceTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.CatalogProperties
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.cacheservice.model.BitmapCalendar
+import com.ailegorreta.cacheservice.model.CalendarSnapshot
+import com.ailegorreta.cacheservice.model.DayType
+import com.ailegorreta.cacheservice.model.SystemDate
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.mockk.coEvery
+import io.mockk.coVerify
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.slot
+import kotlinx.coroutines.runBlocking
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import java.time.DayOfWeek
+import java.time.LocalDate
+
+/**
+ * Unit tests for the named calendars, read from mocked catalogs, and their combinations.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class CalendarServiceTest {
+    private val mapper = ObjectMapper()
+    private val properties = CatalogProperties(
+        calendars = mapOf("US" to CatalogProperties.Calendar("usHolidays"),
+                          "AE" to CatalogProperties.Calendar("aeHolidays", field = "date",
+                                                             weekend = listOf(DayOfWeek.FRIDAY, DayOfWeek.SATURDAY))))
+    private val listener = slot<(String) -> Unit>()
+    private val catalogs = mockk<CatalogCacheService>(relaxed = true) {
+        every { isCatalog(any()) } returns true
+        every { addListener(capture(listener)) } returns Unit
+        coEvery { getAll("usHolidays") } returns listOf(holiday("day", "2026-11-26"), holiday("day", "not a date"))
+        coEvery { getAll("aeHolidays") } returns listOf(holiday("date", "2026-12-02"))
+    }
+    private val serviceConfig = mockk<ServiceConfig> {
+        every { calendarFromYear } returns 2020
+        every { calendarToYear } returns 2030
+    }
+    private val service = CalendarService(properties, catalogs, serviceConfig)
+    private val system = CalendarSnapshot(3L, listOf(SystemDate("1", DayType.HOY, LocalDate.of(2026, 10, 19)),
+                                                     SystemDate("2", DayType.FESTIVO, LocalDate.of(2026, 11, 16))))
+
+    private fun holiday(field: String, day: String) = mapper.createObjectNode().put(field, day).put("name", "holiday")
+
+    @Test
+    fun `the calendars are combined and cached`(): Unit = runBlocking {
+        val combined = service.get("system, US,AE", system) as BitmapCalendar
+
+        assertThat(service.get("", system)).isSameAs(system)
+        assertThat(service.get("system", system)).isSameAs(system)
+        assertThat(combined.name).isEqualTo("AE,US,system")
+        assertThat(combined.holidaysBetween(LocalDate.of(2026, 11, 1), LocalDate.of(2026, 12, 31)))
+                .containsExactly(LocalDate.of(2026, 11, 16), LocalDate.of(2026, 11, 26), LocalDate.of(2026, 12, 2))
+        assertThat(combined.isHoliday(LocalDate.of(2026, 10, 23))).isTrue                   // Friday in AE
+        assertThat(service.get("US,system,AE", system)).isSameAs(combined)
+        assertThat(service.get("US", system).isHoliday(LocalDate.of(2026, 10, 23))).isFalse
+        coVerify(exactly = 1) { catalogs.getAll("usHolidays") }
+
+        val changed = CalendarSnapshot(4L, system.systemDates)                              // new system dates
+
+        assertThat(service.get("AE,US,system", changed)).isNotSameAs(combined)
+        coVerify(exactly = 1) { catalogs.getAll("usHolidays") }
+    }
+
+    @Test
+    fun `a changed catalog rebuilds its calendar`(): Unit = runBlocking {
+        val us = service.get("US", system)
+
+        coEvery { catalogs.getAll("usHolidays") } returns listOf(holiday("day", "2026-07-03"))
+        assertThat(service.get("US", system)).isSameAs(us)
+        listener.captured("usHolidays")
+        assertThat(service.get("US", system).isHoliday(LocalDate.of(2026, 11, 26))).isFalse
+        assertThat(service.get("US", system).isHoliday(LocalDate.of(2026, 7, 3))).isTrue
+        assertThat(service.get("US", system).generation).isEqualTo(2L)
+    }
+
+    @Test
+    fun `unknown calendars are rejected`() {
+        assertThatThrownBy { runBlocking { service.get("US,UK", system) } }.isInstanceOf(IllegalArgumentException::class.java)
+        assertThatThrownBy { CalendarService(CatalogProperties(calendars = mapOf("system" to CatalogProperties.Calendar("x"))),
+                                             catalogs, serviceConfig) }
+                .isInstanceOf(IllegalArgumentException::class.java)
+    }
+}
@@ -0,0 +1,82 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogCacheServiceTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.CatalogProperties
+import com.ailegorreta.commons.utils.HasLogger
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.ObjectNode
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import kotlinx.coroutines.runBlocking
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import reactor.core.publisher.Mono
+
+/**
+ * Unit tests for the configured catalogs. Redis is not reachable (degraded mode), so the catalogs are read from
+ * the param microservice once and then served from memory.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class CatalogCacheServiceTest : HasLogger {
+    private val mapper = ObjectMapper()
+    private val properties = CatalogProperties(mapOf(
+        "currencies" to CatalogProperties.Catalog("query allCurrencies { currencies { code name } }", "code", "MONEDA"),
+        "countries" to CatalogProperties.Catalog("allCountries", "iso", "PAIS")))
+    private val paramService = mockk<ParamService>()
+    private val redis = mockk<RedisAvailability>(relaxed = true) { every { available() } returns false }
+    private val service = CatalogCacheService(properties, mockk(relaxed = true), mockk(relaxed = true), paramService,
+                                              mockk(), mockk(relaxed = true), redis)
+
+    private fun currencies(vararg codes: String) =
+        codes.map { mapper.createObjectNode().put("code", it).put("name", "Currency $it") }
+
+    @Test
+    fun `a configured catalog is read once and then by key`(): Unit = runBlocking {
+        every { paramService.allCatalog("catalog:currencies") } returns Mono.just(currencies("MXN", "USD", "EUR"))
+
+        assertThat(service.names()).containsExactlyInAnyOrder("currencies", "countries")
+        assertThat(service.getAll("currencies").map { it["code"].asText() }).containsExactly("MXN", "USD", "EUR")
+        assertThat(service.get("currencies", "USD")!!["name"].asText()).isEqualTo("Currency USD")
+        assertThat(service.get("currencies", "JPY")).isNull()
+        verify(exactly = 1) { paramService.allCatalog(any()) }
+    }
+
+    @Test
+    fun `the events invalidate just their catalogs`(): Unit = runBlocking {
+        every { paramService.allCatalog("catalog:currencies") } returns Mono.just(currencies("MXN")) andThen
+                                                                     Mono.just(currencies("MXN", "USD"))
+
+        assertThat(service.getAll("currencies")).hasSize(1)
+        assertThat(service.invalidateByEvent("ALTA_VARIABLE_SISTEMA")).isEmpty()
+        service.invalidateByEvent("MODIFICA_MONEDA").also { assertThat(it).containsExactly("currencies") }
+        service.invalidate("currencies").join()
+
+        assertThat(service.getAll("currencies").map { it["code"].asText() }).containsExactly("MXN", "USD")
+        assertThat(service.getAll("currencies").first()).isInstanceOf(ObjectNode::class.java)
+    }
+}
@@ -0,0 +1,174 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogLoaderLockTests.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.EnableTestContainers
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.commons.utils.HasLogger
+import io.mockk.every
+import io.mockk.mockk
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.reactor.awaitSingle
+import kotlinx.coroutines.reactor.awaitSingleOrNull
+import kotlinx.coroutines.runBlocking
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.mock.mockito.MockBean
+import org.springframework.cloud.stream.function.StreamBridge
+import org.springframework.context.annotation.Import
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder
+import org.springframework.test.annotation.DirtiesContext
+import org.springframework.test.context.ActiveProfiles
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Class to check the catalog loader lease with a real Redis, i.e., the acquire, release and fenced swap scripts: one
+ * leader per catalog, the followers wait for it, a lease expires by itself, and the swap and the release of a loader
+ * whose lease expired are refused.
+ *
+ * The lease is short (300ms) so the expiration is tested without waiting the configured 30s.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@EnableTestContainers
+/* ^ This is a custom annotation to load the containers */
+@Import(ServiceConfig::class)
+@ActiveProfiles("integration-tests")
+@DirtiesContext
+class CatalogLoaderLockTests: HasLogger {
+
+    @MockBean
+    private val streamBridge: StreamBridge? = null
+
+    @MockBean
+    private val reactiveJwtDecoder: ReactiveJwtDecoder? = null
+
+    @Autowired
+    var redisTemplate: ReactiveStringRedisTemplate? = null
+
+    private val serviceConfig = mockk<ServiceConfig> {
+        every { loaderLockLease } returns Duration.ofMillis(300)
+        every { loaderLockWait } returns Duration.ofMillis(500)
+        every { loaderLockPoll } returns Duration.ofMillis(20)
+    }
+
+    private val lock by lazy { CatalogLoaderLock(redisTemplate!!, serviceConfig) }
+
+    @BeforeEach
+    fun setUpDB(): Unit = runBlocking {
+        redisTemplate!!.delete(LOCK, "$LOCK:FENCE", LIVE, "$LIVE:INDEX", DERIVED, "$LIVE:STAGING:1", "$LIVE:STAGING:2")
+                       .awaitSingle()
+    }
+
+    @Test
+    fun `just one replica loads the catalog, the others wait for it`(): Unit = runBlocking {
+        val leaders = AtomicInteger()
+        val results = (1..3).map {
+            async(Dispatchers.Default) {
+                lock.load(CATALOG, { _ -> leaders.incrementAndGet(); delay(200); "leader" }, { "follower" })
+            }
+        }.awaitAll()
+
+        assertThat(leaders.get()).isEqualTo(1)
+        assertThat(results).containsExactlyInAnyOrder("leader", "follower", "follower")
+        assertThat(redisTemplate!!.hasKey(LOCK).awaitSingle()).isFalse
+    }
+
+    @Test
+    fun `the follower stops waiting for a loader that does not release the lease`(): Unit = runBlocking {
+        redisTemplate!!.opsForValue().set(LOCK, "0", Duration.ofMinutes(1)).awaitSingle()     // a hung loader
+
+        val start = System.nanoTime()
+
+        assertThat(lock.load(CATALOG, { _ -> "leader" }, { "follower" })).isEqualTo("follower")
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(serviceConfig.loaderLockWait)
+    }
+
+    @Test
+    fun `a loader whose lease expired cannot swap nor release the new lease`(): Unit = runBlocking {
+        val stale = async(Dispatchers.Default) {
+            lock.load(CATALOG, { lease ->
+                delay(500)                                  // a long GC pause, the lease expires
+                stage("$LIVE:STAGING:1", "old")
+                lock.fencedSwap(lease).swap("$LIVE:STAGING:1", LIVE).awaitSingle()
+            }, { null })
+        }
+        delay(400)
+        val current = async(Dispatchers.Default) {
+            lock.load(CATALOG, { lease ->
+                delay(300)                                  // still the owner when the stale loader releases
+                stage("$LIVE:STAGING:2", "new")
+                lock.fencedSwap(lease).swap("$LIVE:STAGING:2", LIVE).awaitSingle()
+            }, { null })
+        }
+
+        assertThat(stale.await()).isFalse
+        assertThat(redisTemplate!!.hasKey(LOCK).awaitSingle()).isTrue
+        assertThat(current.await()).isTrue
+        assertThat(redisTemplate!!.opsForValue().get(LIVE).awaitSingleOrNull()).isEqualTo("new")
+        assertThat(redisTemplate!!.hasKey("$LIVE:STAGING:1").awaitSingle()).isFalse
+        assertThat(redisTemplate!!.opsForValue().get("$LOCK:FENCE").awaitSingle()).isEqualTo("2")
+    }
+
+    @Test
+    fun `the swap renames all the keys and deletes the derived ones at once`(): Unit = runBlocking {
+        redisTemplate!!.opsForValue().set(DERIVED, "old bitmap").awaitSingle()
+
+        val swapped = lock.load(CATALOG, { lease ->
+            stage("$LIVE:STAGING:1", "entities")
+            stage("$LIVE:STAGING:2", "index")
+            lock.fencedSwap(lease)
+                .swap(mapOf("$LIVE:STAGING:1" to LIVE, "$LIVE:STAGING:2" to "$LIVE:INDEX"), listOf(DERIVED))
+                .awaitSingle()
+        }, { null })
+
+        assertThat(swapped).isTrue
+        assertThat(redisTemplate!!.opsForValue().get(LIVE).awaitSingle()).isEqualTo("entities")
+        assertThat(redisTemplate!!.opsForValue().get("$LIVE:INDEX").awaitSingle()).isEqualTo("index")
+        listOf("$LIVE:STAGING:1", "$LIVE:STAGING:2", DERIVED).forEach {
+            assertThat(redisTemplate!!.hasKey(it).awaitSingle()).describedAs(it).isFalse
+        }
+    }
+
+    private suspend fun stage(key: String, value: String) {
+        redisTemplate!!.opsForValue().set(key, value).awaitSingle()
+    }
+
+    companion object {
+        private const val CATALOG = "LOCK_TEST"
+        private const val LOCK = "CATALOG_LOCK:$CATALOG"
+        private const val LIVE = "LOCK_TEST_CATALOG"
+        private const val DERIVED = "$LIVE:DERIVED"
+    }
+}
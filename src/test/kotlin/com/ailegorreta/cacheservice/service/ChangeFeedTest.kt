@@ -0,0 +1,102 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ChangeFeedTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.cacheservice.model.CacheChange
+import io.mockk.every
+import io.mockk.mockk
+import org.junit.jupiter.api.Test
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import reactor.test.StepVerifier
+import java.time.Duration
+
+/**
+ * Unit tests for the replay of the /cache/changes events.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class ChangeFeedTest {
+
+    private fun feed(sequence: Long? = null): ChangeFeed {
+        val broadcaster = mockk<CacheInvalidationBroadcaster>()
+        val serviceConfig = mockk<ServiceConfig>()
+
+        every { broadcaster.changes() } returns Flux.never()
+        every { broadcaster.currentSequence() } returns Mono.justOrEmpty(sequence)
+        every { serviceConfig.changesReplaySize } returns 3
+        every { serviceConfig.changesHeartbeat } returns Duration.ofHours(1)
+
+        return ChangeFeed(broadcaster, serviceConfig)
+    }
+
+    private fun change(sequence: Long) = CacheChange(sequence = sequence, catalog = "SYSTEM_RATE", key = "TIIE",
+                                                     value = "11.$sequence", changedAt = 0L)
+
+    @Test
+    fun `a client that reconnects receives the changes it missed`() {
+        val feed = feed()
+
+        (1L..5L).forEach { feed.emit(change(it)) }
+
+        StepVerifier.create(feed.changes(3L).map { it.id() })
+                    .expectNext("4", "5")
+                    .then { feed.emit(change(6L)) }
+                    .expectNext("6")
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(1))
+    }
+
+    @Test
+    fun `a new client just receives the new changes`() {
+        val feed = feed()
+
+        (1L..2L).forEach { feed.emit(change(it)) }
+
+        StepVerifier.create(feed.changes(null).map { it.id() })
+                    .then { feed.emit(change(3L)) }
+                    .expectNext("3")
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(1))
+    }
+
+    @Test
+    fun `a client that missed changes out of the buffer receives a reset`() {
+        val feed = feed()
+
+        (1L..5L).forEach { feed.emit(change(it)) }            // the buffer keeps 3, 4 and 5
+
+        StepVerifier.create(feed.changes(1L).map { it.event() })
+                    .expectNext(CacheChange.RESET, "SYSTEM_RATE", "SYSTEM_RATE", "SYSTEM_RATE")
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(1))
+
+        StepVerifier.create(feed(sequence = 7L).changes(5L).map { it.event() })
+                    .expectNext(CacheChange.RESET)               // empty buffer, the cluster is in change 7
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(1))
+    }
+}
@@ -0,0 +1,112 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  GraphqlRequestRegistryTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.CatalogProperties
+import com.ailegorreta.cacheservice.model.GraphqlRequestBody
+import com.ailegorreta.cacheservice.util.GraphqlSchemaReaderUtil
+import com.ailegorreta.commons.utils.HasLogger
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import java.lang.management.ManagementFactory
+
+/**
+ * Unit tests for the GraphqlRequestRegistry (no Spring context is needed).
+ *
+ * The microbenchmark compares the bytes allocated by the old way to build a request body (read the query from the
+ * classpath and serialize a GraphqlRequestBody) with the pre-encoded template.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class GraphqlRequestRegistryTest : HasLogger {
+    private val mapper = ObjectMapper()
+    private val registry = GraphqlRequestRegistry(mapper)
+
+    @Test
+    fun `the registry loads all the queries`() {
+        assertThat(registry.names()).contains("getSystemRate", "allSystemDates", "allDocumentTypes")
+    }
+
+    @Test
+    fun `the body is the same as the Jackson serialized request`() {
+        val expected = mapper.readTree(mapper.writeValueAsBytes(oldBody("getSystemRate", mapOf("input" to "IVA"))))
+
+        assertThat(mapper.readTree(registry.body("getSystemRate", mapOf("input" to "IVA")))).isEqualTo(expected)
+        assertThat(mapper.readTree(registry.body("allSystemDates")))
+                .isEqualTo(mapper.readTree(mapper.writeValueAsBytes(oldBody("allSystemDates"))))
+    }
+
+    @Test
+    fun `unknown queries and variables are rejected`() {
+        assertThatThrownBy { registry.body("notExists") }.isInstanceOf(IllegalArgumentException::class.java)
+        assertThatThrownBy { registry.body("getSystemRate", mapOf("name" to "IVA")) }
+                .isInstanceOf(IllegalArgumentException::class.java)
+    }
+
+    @Test
+    fun `the queries of the configured catalogs are registered and validated`() {
+        val catalogs = CatalogProperties(mapOf(
+            "currencies" to CatalogProperties.Catalog("query allCurrencies { currencies { code name } }", "code", "MONEDA"),
+            "rates" to CatalogProperties.Catalog("allSystemRates", "name", "VARIABLE_SISTEMA")))
+        val withCatalogs = GraphqlRequestRegistry(mapper, catalogs)
+
+        assertThat(withCatalogs.names()).contains("catalog:currencies", "allSystemRates")
+        assertThat(mapper.readTree(withCatalogs.body("catalog:currencies"))["query"].asText()).contains("currencies")
+        assertThatThrownBy {
+            GraphqlRequestRegistry(mapper, CatalogProperties(mapOf("x" to CatalogProperties.Catalog("notExists", "id", "X"))))
+        }.isInstanceOf(IllegalStateException::class.java)
+    }
+
+    @Test
+    fun `the pre-encoded body allocates less`() {
+        val threads = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val variables = mapOf("input" to "IVA")
+
+        fun allocated(body: () -> ByteArray): Long {
+            repeat(WARM_UP) { body() }
+            val start = threads.getThreadAllocatedBytes(Thread.currentThread().id)
+
+            repeat(ITERATIONS) { body() }
+
+            return (threads.getThreadAllocatedBytes(Thread.currentThread().id) - start) / ITERATIONS
+        }
+
+        val old = allocated { mapper.writeValueAsBytes(oldBody("getSystemRate", variables)) }
+        val new = allocated { registry.body("getSystemRate", variables) }
+
+        logger.info("Bytes allocated per request body: old $old new $new")
+        assertThat(new).isLessThan(old)
+    }
+
+    private fun oldBody(name: String, variables: Map<String, Any?>? = null) =
+        GraphqlRequestBody(GraphqlSchemaReaderUtil.getSchemaFromFileName(name), variables)
+
+    companion object {
+        const val WARM_UP = 5_000
+        const val ITERATIONS = 20_000
+    }
+}
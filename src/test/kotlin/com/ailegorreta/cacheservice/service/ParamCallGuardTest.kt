@@ -0,0 +1,92 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamCallGuardTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.service.ParamCallGuard.AimdLimit
+import com.ailegorreta.cacheservice.service.ParamCallGuard.CircuitBreaker
+import com.ailegorreta.cacheservice.service.ParamCallGuard.CircuitBreaker.State
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import java.time.Duration
+
+/**
+ * Unit tests for the adaptive concurrency limit and the circuit breaker of the param-service calls.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class ParamCallGuardTest {
+
+    @Test
+    fun `the limit rejects calls over it and adapts to the latency`() {
+        val limit = AimdLimit(initial = 2, min = 1, max = 10, latencyTarget = Duration.ofMillis(100), backoff = 0.5)
+
+        assertThat(limit.tryAcquire()).isTrue
+        assertThat(limit.tryAcquire()).isTrue
+        assertThat(limit.tryAcquire()).isFalse
+
+        repeat(3) {                                         // fast calls with the limit in use: 2 + 1/2 + 1/2.5 + 1/2.9
+            limit.release(latency = Duration.ofMillis(10).toNanos(), dropped = false)
+            assertThat(limit.tryAcquire()).isTrue
+        }
+        assertThat(limit.current()).isEqualTo(3)
+
+        limit.release(latency = Duration.ofMillis(10).toNanos(), dropped = false)
+        limit.release(latency = Duration.ofMillis(10).toNanos(), dropped = false)
+        assertThat(limit.current()).isEqualTo(3)            // 3.55, just the first release had the limit in use
+
+        limit.tryAcquire()
+        limit.release(latency = Duration.ofMillis(500).toNanos(), dropped = false)
+        assertThat(limit.current()).isEqualTo(1)            // slower than the target
+        limit.tryAcquire()
+        limit.release(latency = null, dropped = true)
+        assertThat(limit.current()).isEqualTo(1)            // never below the minimum
+        assertThat(limit.inFlight()).isEqualTo(0)
+    }
+
+    @Test
+    fun `the breaker opens, probes and closes`() {
+        var now = 0L
+        val breaker = CircuitBreaker(failureThreshold = 2, openDuration = Duration.ofSeconds(10), halfOpenProbes = 1,
+                                     clock = { now })
+
+        breaker.tryAcquire(); breaker.onFailure()
+        breaker.tryAcquire(); breaker.onFailure()
+        assertThat(breaker.state).isEqualTo(State.OPEN)
+        assertThat(breaker.tryAcquire()).isFalse
+
+        now += Duration.ofSeconds(10).toNanos()
+        assertThat(breaker.tryAcquire()).isTrue             // the probe
+        assertThat(breaker.state).isEqualTo(State.HALF_OPEN)
+        assertThat(breaker.tryAcquire()).isFalse
+        breaker.onFailure()
+        assertThat(breaker.state).isEqualTo(State.OPEN)
+
+        now += Duration.ofSeconds(10).toNanos()
+        assertThat(breaker.tryAcquire()).isTrue
+        breaker.onSuccess()
+        assertThat(breaker.state).isEqualTo(State.CLOSED)
+        assertThat(breaker.tryAcquire()).isTrue
+    }
+}
@@ -0,0 +1,100 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamRequestHedgerTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.mockk.every
+import io.mockk.mockk
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import reactor.core.publisher.Mono
+import reactor.test.StepVerifier
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Unit tests for the hedged requests to the param microservice.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class ParamRequestHedgerTest {
+
+    private fun hedger(budget: Double): ParamRequestHedger {
+        val serviceConfig = mockk<ServiceConfig>()
+
+        every { serviceConfig.paramClientHedgeEnabled } returns true
+        every { serviceConfig.paramClientHedgePercentile } returns 0.95
+        every { serviceConfig.paramClientHedgeMinDelay } returns Duration.ofMillis(100)
+        every { serviceConfig.paramClientHedgeBudget } returns budget
+
+        return ParamRequestHedger(serviceConfig, SimpleMeterRegistry())
+    }
+
+    @Test
+    fun `a slow request is hedged and the first response wins`() {
+        val hedger = hedger(budget = 1.0)
+        val requests = AtomicInteger()
+        val request = {
+            if (requests.getAndIncrement() == 0) Mono.just("slow").delayElement(Duration.ofSeconds(5))
+            else Mono.just("hedge")
+        }
+
+        StepVerifier.withVirtualTime { hedger.hedge("test", request) }
+                    .thenAwait(Duration.ofMillis(100))
+                    .expectNext("hedge")
+                    .verifyComplete()
+        assertThat(requests.get()).isEqualTo(2)
+    }
+
+    @Test
+    fun `no hedge without budget or when the first request fails`() {
+        val hedger = hedger(budget = 0.1)
+        val requests = AtomicInteger()
+
+        StepVerifier.withVirtualTime {
+                        hedger.hedge("test") {
+                            requests.incrementAndGet()
+                            Mono.just("slow").delayElement(Duration.ofSeconds(5))
+                        }
+                    }
+                    .thenAwait(Duration.ofSeconds(5))
+                    .expectNext("slow")
+                    .verifyComplete()
+        assertThat(requests.get()).isEqualTo(1)
+
+        StepVerifier.create(hedger.hedge("test") { Mono.error<String>(IllegalStateException("down")) })
+                    .expectError(IllegalStateException::class.java)
+                    .verify(Duration.ofSeconds(1))
+    }
+
+    @Test
+    fun `the percentile of the latencies`() {
+        val latencies = ParamRequestHedger.LatencyPercentile(0.9, size = 100, every = 10)
+
+        (1..100).forEach { latencies.record(it.toLong()) }
+        assertThat(latencies.percentile()).isEqualTo(90L)
+    }
+}
@@ -0,0 +1,101 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamServiceTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.cacheservice.service.ParamCallGuard.CircuitBreaker.State
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.mockk.every
+import io.mockk.mockk
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
+import org.springframework.web.reactive.function.client.ClientResponse
+import org.springframework.web.reactive.function.client.WebClient
+import reactor.core.publisher.Mono
+import java.math.BigDecimal
+import java.time.Duration
+
+/**
+ * Unit tests for the answers of the param microservice, with a WebClient that answers a fixed GraphQL response.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class ParamServiceTest {
+    private val serviceConfig = mockk<ServiceConfig>(relaxed = true).also {
+        every { it.getParamProvider() } returns "http://param-service"
+        every { it.paramClientTimeout } returns Duration.ofSeconds(1)
+        every { it.paramClientLimitInitial } returns 10
+        every { it.paramClientLimitMin } returns 1
+        every { it.paramClientLimitMax } returns 10
+        every { it.paramClientLatencyTarget } returns Duration.ofSeconds(1)
+        every { it.paramClientLimitBackoff } returns 0.5
+        every { it.paramClientBreakerFailures } returns 1   // any failure opens the breaker
+        every { it.paramClientBreakerOpen } returns Duration.ofMinutes(1)
+        every { it.paramClientBreakerProbes } returns 1
+    }
+    private val guard = ParamCallGuard(serviceConfig, SimpleMeterRegistry())
+
+    private fun paramService(answer: String): ParamService {
+        val webClient = WebClient.builder()
+                                 .exchangeFunction {
+                                     Mono.just(ClientResponse.create(HttpStatus.OK)
+                                                             .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                                             .body(answer)
+                                                             .build())
+                                 }
+                                 .build()
+
+        return ParamService(webClient, webClient, serviceConfig, GraphqlRequestRegistry(ObjectMapper()), guard,
+                            mockk {
+                                every { enabled } returns false
+                                every { hedge(any(), any<() -> Mono<Any>>()) } answers { secondArg<() -> Mono<Any>>()() }
+                            },
+                            mockk { every { enabled } returns false })
+    }
+
+    @Test
+    fun `a rate is read from param`() {
+        val rate = paramService("""{"data":{"systemRate":{"id":"1","name":"TIIE","rate":11.5,"version":2}}}""")
+                        .getFromParamsSystemRate("TIIE")
+                        .block()!!
+
+        assertThat(rate.name).isEqualTo("TIIE")
+        assertThat(rate.rate).isEqualByComparingTo(BigDecimal("11.5"))
+    }
+
+    @Test
+    fun `a rate that param does not have is empty and not a failure`() {
+        val paramService = paramService("""{"data":{"systemRate":null}}""")
+
+        repeat(3) {
+            assertThat(paramService.getFromParamsSystemRate("NOT_A_RATE").blockOptional()).isEmpty
+        }
+        assertThat(guard.breaker.state).isEqualTo(State.CLOSED)
+    }
+}
@@ -0,0 +1,116 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RateHistoryServiceTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.cacheservice.model.RateAsOf
+import com.ailegorreta.cacheservice.model.RateAsOfQuery
+import com.ailegorreta.cacheservice.model.SystemRate
+import com.ailegorreta.cacheservice.repository.RateHistoryRepository
+import com.ailegorreta.commons.utils.HasLogger
+import io.mockk.every
+import io.mockk.mockk
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import reactor.core.publisher.Mono
+import java.math.BigDecimal
+import java.time.LocalDate
+import java.time.LocalTime
+import java.util.TreeMap
+
+/**
+ * Unit tests for the rate history. The Redis sorted set is simulated with a TreeMap by score (the same floor
+ * lookup that ZREVRANGEBYSCORE ... LIMIT 1 does).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class RateHistoryServiceTest : HasLogger {
+    private val today = LocalDate.now()
+    private val history = TreeMap<Double, String>()
+    private val repository = mockk<RateHistoryRepository> {
+        every { record(any(), any(), any(), any()) } answers {
+            val score = RateHistoryRepository.score(thirdArg(), arg(3))
+
+            history[score] = "$score|${secondArg<BigDecimal>().toPlainString()}"
+            Mono.just(true)
+        }
+        every { asOf("TIIE", any()) } answers {
+            Mono.justOrEmpty(history.lowerEntry((secondArg<LocalDate>().toEpochDay() + 1).toDouble())?.value)
+                .map(RateHistoryRepository::rate)
+        }
+        every { asOf("UDI", any()) } returns Mono.empty()
+    }
+    private val cacheService = mockk<CacheService> {
+        every { getSystemRate("UDI") } returns Mono.just(SystemRate("_R1", "UDI", BigDecimal("8.1")))
+    }
+    private val service = RateHistoryService(repository, cacheService,
+                                             mockk { every { rateHistoryEnabled } returns true })
+
+    @Test
+    fun `the changes of the same day keep their order`() {
+        val morning = RateHistoryRepository.score(today, LocalTime.of(9, 0))
+        val night = RateHistoryRepository.score(today, LocalTime.of(23, 59, 59))
+
+        assertThat(morning).isLessThan(night)
+        assertThat(night).isLessThan((today.toEpochDay() + 1).toDouble())
+        assertThat(RateHistoryRepository.rate("$night|11.25")).isEqualTo(BigDecimal("11.25"))
+    }
+
+    @Test
+    fun `the rate as of a date is the last change effective on or before it`() {
+        service.record("TIIE", BigDecimal("11.00"), today.minusDays(30)).block()
+        service.record("TIIE", BigDecimal("11.25"), today.minusDays(10)).block()
+        service.record("TIIE", BigDecimal("11.50"), today).block()
+
+        assertThat(service.asOf("TIIE", today.minusDays(40)).block()).isNull()
+        assertThat(service.asOf("TIIE", today.minusDays(30)).block()).isEqualTo(BigDecimal("11.00"))
+        assertThat(service.asOf("TIIE", today.minusDays(11)).block()).isEqualTo(BigDecimal("11.00"))
+        assertThat(service.asOf("TIIE", today.minusDays(10)).block()).isEqualTo(BigDecimal("11.25"))
+        assertThat(service.asOf("TIIE", today).block()).isEqualTo(BigDecimal("11.50"))
+    }
+
+    @Test
+    fun `a rate without history is its current value just for today or later`() {
+        assertThat(service.asOf("UDI", today).block()).isEqualTo(BigDecimal("8.1"))
+        assertThat(service.asOf("UDI", today.minusDays(1)).block()).isNull()
+    }
+
+    @Test
+    fun `the batch answers in the same order`() {
+        service.record("TIIE", BigDecimal("11.00"), today.minusDays(5)).block()
+
+        every { repository.asOf("USD", any()) } returns Mono.error(IllegalStateException("Redis is down"))
+
+        val answers = service.asOf(listOf(RateAsOfQuery("UDI", today), RateAsOfQuery("TIIE", today.minusDays(1)),
+                                          RateAsOfQuery("UDI", today.minusDays(9)), RateAsOfQuery("USD", today)))
+                             .collectList().block()!!
+
+        assertThat(answers.map { it.nombre to it.rate })
+                .containsExactly("UDI" to BigDecimal("8.1"), "TIIE" to BigDecimal("11.00"), "UDI" to null, "USD" to null)
+        assertThat(answers.map { it.status })
+                .containsExactly(RateAsOf.Status.FOUND, RateAsOf.Status.FOUND, RateAsOf.Status.NO_HISTORY,
+                                 RateAsOf.Status.ERROR)
+    }
+}
@@ -0,0 +1,138 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RateNameFilterTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.cacheservice.repository.SystemRateRepository
+import com.ailegorreta.cacheservice.service.RateNameFilter.BloomFilter
+import com.ailegorreta.commons.utils.HasLogger
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.mockk.every
+import io.mockk.mockk
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import org.springframework.dao.DataRetrievalFailureException
+import reactor.core.publisher.Mono
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executors
+
+/**
+ * Unit tests for the Bloom filter of the rate names. The measured false positive rate and the memory are logged.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class RateNameFilterTest : HasLogger {
+
+    @Test
+    fun `no false negatives and the expected false positive rate`() {
+        val filter = BloomFilter(capacity = 10_000, fpp = 0.01)
+        val names = (1..10_000).map { "RATE_$it" }
+
+        names.forEach { filter.add(it) }
+        assertThat(names).allMatch { filter.mightContain(it) }
+
+        val unknown = (1..100_000).map { "UNKNOWN_$it" }
+        val falsePositives = unknown.count { filter.mightContain(it) }
+        val fpp = falsePositives.toDouble() / unknown.size
+
+        logger.info("Bloom filter of 10000 names: {} bytes, {} hashes, measured fpp {}, expected fpp {}",
+                    filter.bytes(), filter.hashes, fpp, filter.expectedFpp())
+        assertThat(fpp).isLessThan(0.02)
+        assertThat(filter.bytes()).isLessThan(16 * 1024)
+    }
+
+    @Test
+    fun `it is built from param and updated with the events`() {
+        val paramService = mockk<ParamService>()
+        val serviceConfig = mockk<ServiceConfig>()
+        val meterRegistry = SimpleMeterRegistry()
+
+        every { serviceConfig.rateFilterFpp } returns 0.01
+        every { paramService.allSystemRateNames() } returns Mono.just(listOf("TIIE", "UDI", "USD"))
+
+        val filter = RateNameFilter(paramService, serviceConfig, meterRegistry)
+
+        assertThat(filter.mightContain("NOT_A_RATE")).isTrue    // not built yet, nothing is rejected
+        assertThat(filter.rebuild().block()).isEqualTo(3)
+        assertThat(filter.mightContain("TIIE")).isTrue
+        assertThat(filter.mightContain("NOT_A_RATE")).isFalse
+
+        filter.add("EUR")                                       // a VARIABLE_SISTEMA event
+        assertThat(filter.mightContain("EUR")).isTrue
+        filter.rebuild().block()                                // param does not return it yet
+        assertThat(filter.mightContain("EUR")).isTrue
+        assertThat(meterRegistry.get("rate.filter.rejected").counter().count()).isEqualTo(1.0)
+        assertThat(meterRegistry.get("rate.filter.names").gauge().value()).isEqualTo(4.0)
+    }
+
+    @Test
+    fun `a name added while the filter is built is not lost`() {
+        val serviceConfig = mockk<ServiceConfig>()
+
+        every { serviceConfig.rateFilterFpp } returns 0.01
+
+        val filter = RateNameFilter(mockk(), serviceConfig, SimpleMeterRegistry())
+        val allNames = (1..1_000).map { "RATE_$it" }
+        val added = (1..4_000).map { "NEW_$it" }
+        val executor = Executors.newFixedThreadPool(4)
+
+        val inParam = ConcurrentLinkedQueue<String>()
+
+        filter.build(allNames)
+        val adds = added.chunked(1_000).map { chunk ->
+            executor.submit { chunk.forEach { filter.add(it); inParam.add(it) } }   // the event, then param has it
+        }
+
+        while (adds.any { !it.isDone }) filter.build(allNames + inParam)
+        adds.forEach { it.get() }
+        executor.shutdown()
+
+        assertThat(added).allMatch { filter.mightContain(it) }
+        assertThat(allNames).allMatch { filter.mightContain(it) }
+    }
+
+    @Test
+    fun `a name accepted by the filter that param does not have is a false positive`() {
+        val paramService = mockk<ParamService>()
+        val serviceConfig = mockk<ServiceConfig>()
+        val systemRateRepository = mockk<SystemRateRepository>()
+        val meterRegistry = SimpleMeterRegistry()
+
+        every { serviceConfig.rateFilterFpp } returns 0.01
+        every { paramService.getFromParamsSystemRate("GHOST") } returns Mono.empty()    // param answers a null rate
+        every { systemRateRepository.findByName("GHOST") } returns Mono.empty()
+
+        val filter = RateNameFilter(paramService, serviceConfig, meterRegistry)
+        val cacheService = CacheService(paramService, mockk(relaxed = true), mockk(relaxed = true),
+                                        mockk(relaxed = true) { every { available() } returns true }, mockk(relaxed = true), filter,
+                                        systemRateRepository, mockk(relaxed = true), mockk(relaxed = true), mockk(relaxed = true))
+
+        filter.build(listOf("TIIE", "GHOST"))                   // deleted in param after the build
+        assertThatThrownBy { cacheService.getSystemRate("GHOST").block() }
+            .isInstanceOf(DataRetrievalFailureException::class.java)
+        assertThat(meterRegistry.get("rate.filter.false.positives").counter().count()).isEqualTo(1.0)
+    }
+}
@@ -0,0 +1,179 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RedisAvailabilityTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.service
+
+import com.ailegorreta.cacheservice.config.ServiceConfig
+import com.ailegorreta.cacheservice.model.SystemRate
+import com.ailegorreta.cacheservice.repository.SystemRateRepository
+import com.ailegorreta.commons.utils.HasLogger
+import io.lettuce.core.RedisCommandTimeoutException
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.springframework.dao.QueryTimeoutException
+import org.springframework.data.redis.RedisConnectionFailureException
+import org.springframework.data.redis.core.ReactiveRedisCallback
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.math.BigDecimal
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Unit tests for the degraded (local only) mode while Redis is not reachable. The latency of a system rate read
+ * with Redis down is logged before (each request waits the 1s Redis timeout) and after (served from memory).
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class RedisAvailabilityTest : HasLogger {
+    @Volatile private var redisUp = true
+
+    private val serviceConfig = mockk<ServiceConfig>().also {
+        every { it.redisProbeInterval } returns Duration.ofMillis(50)
+        every { it.redisProbeTimeout } returns Duration.ofMillis(20)
+        every { it.redisProbeFailures } returns 2
+        every { it.redisLocalRefresh } returns Duration.ofMinutes(1)
+    }
+    private val redisTemplate = mockk<ReactiveStringRedisTemplate>().also {
+        every { it.execute(any<ReactiveRedisCallback<String>>()) } answers {
+            if (redisUp) Flux.just("PONG") else Flux.never()
+        }
+    }
+    private val meterRegistry = SimpleMeterRegistry()
+
+    private fun availability() = RedisAvailability(redisTemplate, serviceConfig, meterRegistry)
+
+    @Test
+    fun `the probe changes the mode`() {
+        val availability = availability()
+        val modes = mutableListOf<RedisAvailability.Mode>()
+
+        availability.addListener { modes.add(it) }
+        availability.start()
+        redisUp = false
+        TimeUnit.MILLISECONDS.sleep(400)
+        assertThat(availability.mode).isEqualTo(RedisAvailability.Mode.LOCAL_ONLY)
+        assertThat(availability.health().block()!!.details["mode"]).isEqualTo(RedisAvailability.Mode.LOCAL_ONLY)
+        assertThat(meterRegistry.get("redis.available").gauge().value()).isEqualTo(0.0)
+
+        redisUp = true
+        TimeUnit.MILLISECONDS.sleep(400)
+        assertThat(availability.available()).isTrue
+        assertThat(modes).containsExactly(RedisAvailability.Mode.LOCAL_ONLY, RedisAvailability.Mode.REDIS)
+        availability.stop()
+    }
+
+    @Test
+    fun `a connection failure in a request changes the mode at once`() {
+        val availability = availability()
+
+        availability.failed(IllegalArgumentException("not a Redis failure"))
+        assertThat(availability.available()).isTrue
+        availability.failed(RuntimeException(QueryTimeoutException("Redis command timed out", RedisCommandTimeoutException("Command timed out"))))
+        assertThat(availability.available()).isFalse
+    }
+
+    @Test
+    fun `a param-service timeout does not change the mode`() {
+        val availability = availability()
+        val modes = mutableListOf<RedisAvailability.Mode>()
+
+        availability.addListener { modes.add(it) }
+        availability.failed(QueryTimeoutException("The param-service call allDocumentTypes exceeded its deadline of PT2S"))
+        availability.failed(RuntimeException(TimeoutException("param-service")))
+        assertThat(availability.available()).isTrue
+        assertThat(modes).isEmpty()
+    }
+
+    @Test
+    fun `degraded mode serves from memory and reconciles the writes`() {
+        val paramService = mockk<ParamService>()
+        val systemRateRepository = mockk<SystemRateRepository>()
+        val availability = availability()
+        val cacheService = CacheService(paramService, mockk(relaxed = true), mockk(relaxed = true), availability,
+                                         mockk(relaxed = true), mockk(relaxed = true) { every { mightContain(any()) } returns true },
+                                         systemRateRepository, mockk(relaxed = true), mockk(relaxed = true), mockk(relaxed = true))
+
+        every { paramService.getFromParamsSystemRate("TIIE") } returns Mono.just(SystemRate("1", "TIIE", BigDecimal.TEN))
+        every { systemRateRepository.findByName("TIIE") } answers {
+            if (redisUp) Mono.just(SystemRate("1", "TIIE", BigDecimal.ONE))
+            else Mono.delay(Duration.ofSeconds(1)).then(Mono.error(QueryTimeoutException("Redis command timed out", RedisCommandTimeoutException("Command timed out"))))
+        }
+        every { systemRateRepository.save(any()) } answers { Mono.just(firstArg()) }
+
+        redisUp = false
+        var start = System.nanoTime()
+        assertThat(cacheService.getSystemRate("TIIE").block()!!.rate).isEqualTo(BigDecimal.TEN)
+        val before = System.nanoTime() - start              // the request that found Redis down
+
+        start = System.nanoTime()
+        repeat(10) { assertThat(cacheService.getSystemRate("TIIE").block()!!.rate).isEqualTo(BigDecimal.TEN) }
+        val after = (System.nanoTime() - start) / 10
+        logger.info("System rate read with Redis down: Redis timeout {}us, degraded mode {}us", before / 1_000, after / 1_000)
+        assertThat(after).isLessThan(Duration.ofMillis(50).toNanos())
+        verify(exactly = 1) { systemRateRepository.findByName("TIIE") }
+        verify(exactly = 1) { paramService.getFromParamsSystemRate("TIIE") }
+
+        assertThat(cacheService.updateSystemRate("TIIE", BigDecimal("7.5")).block()!!.rate).isEqualTo(BigDecimal("7.5"))
+        assertThat(cacheService.getSystemRate("TIIE").block()!!.rate).isEqualTo(BigDecimal("7.5"))
+        verify(exactly = 0) { systemRateRepository.save(any()) }
+
+        redisUp = true
+        availability.start()                                // the probe finds Redis and reconciles
+        TimeUnit.MILLISECONDS.sleep(400)
+        verify { systemRateRepository.save(match { it.name == "TIIE" && it.rate == BigDecimal("7.5") }) }
+        availability.stop()
+    }
+
+    @Test
+    fun `a write pending is kept when Redis fails again during the reconcile`() {
+        val systemRateRepository = mockk<SystemRateRepository>()
+        val availability = availability()
+        val cacheService = CacheService(mockk(), mockk(relaxed = true), mockk(relaxed = true), availability,
+                                         mockk(relaxed = true), mockk(relaxed = true) { every { mightContain(any()) } returns true },
+                                         systemRateRepository, mockk(relaxed = true), mockk(relaxed = true), mockk(relaxed = true))
+        val saveFailures = AtomicInteger(1)
+
+        every { systemRateRepository.findByName("TIIE") } returns Mono.just(SystemRate("1", "TIIE", BigDecimal.ONE))
+        every { systemRateRepository.save(any()) } answers {
+            if (saveFailures.getAndDecrement() > 0) Mono.error(RedisConnectionFailureException("Redis is down again"))
+            else Mono.just(firstArg())
+        }
+
+        availability.failed(RedisConnectionFailureException("Redis is down"))
+        cacheService.updateSystemRate("TIIE", BigDecimal("7.5")).block()
+        availability.start()                                // reconcile fails, the next probe reconciles again
+        TimeUnit.MILLISECONDS.sleep(400)
+        verify(exactly = 2) { systemRateRepository.save(match { it.name == "TIIE" && it.rate == BigDecimal("7.5") }) }
+        assertThat(availability.available()).isTrue
+        availability.stop()
+    }
+}
@@ -0,0 +1,94 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  BinaryCodecsTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.web
+
+import com.ailegorreta.cacheservice.config.CodecConfig
+import com.ailegorreta.cacheservice.model.DayType
+import com.ailegorreta.cacheservice.model.DocumentType
+import com.ailegorreta.cacheservice.model.SystemDate
+import com.ailegorreta.cacheservice.model.SystemRate
+import com.ailegorreta.commons.utils.HasLogger
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.SerializationFeature
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
+import com.fasterxml.jackson.module.kotlin.KotlinModule
+import com.fasterxml.jackson.module.kotlin.readValue
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import java.math.BigDecimal
+import java.time.LocalDate
+
+/**
+ * Payload size and decode cost of the JSON, CBOR and Smile encodings of the three DTOs (see CodecConfig).
+ *
+ * The numbers are logged, the assertions just check that the binary encodings are smaller and decode the same
+ * values.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class BinaryCodecsTest : HasLogger {
+    private val json = ObjectMapper().registerModules(KotlinModule.Builder().build(), JavaTimeModule())
+                                     .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+    private val mappers = mapOf("json" to json,
+                                "cbor" to CodecConfig.cborMapper(json),
+                                "smile" to CodecConfig.smileMapper(json))
+
+    private val systemRates = (1..100).map { SystemRate("_R$it", "TIIE_$it", BigDecimal("11.2$it"), 0) }
+    private val systemDates = (1..100).map { SystemDate("_R$it", DayType.FESTIVO, LocalDate.of(2026, 1, 1).plusDays(it * 3L), 0) }
+    private val documentTypes = (1..100).map { DocumentType("_R$it", "Documento $it", "12m", 0) }
+
+    @Test
+    fun `system rates`() = compare("SystemRate", systemRates) { mapper, bytes -> mapper.readValue<List<SystemRate>>(bytes) }
+
+    @Test
+    fun `system dates`() = compare("SystemDate", systemDates) { mapper, bytes -> mapper.readValue<List<SystemDate>>(bytes) }
+
+    @Test
+    fun `document types`() = compare("DocumentType", documentTypes) { mapper, bytes -> mapper.readValue<List<DocumentType>>(bytes) }
+
+    private fun <T> compare(dto: String, values: List<T>, decode: (ObjectMapper, ByteArray) -> List<T>) {
+        val sizes = mappers.mapValues { (_, mapper) -> mapper.writeValueAsBytes(values) }
+
+        sizes.forEach { (format, bytes) ->
+            val mapper = mappers[format]!!
+
+            assertThat(decode(mapper, bytes)).isEqualTo(values)
+            repeat(WARM_UP) { decode(mapper, bytes) }
+
+            val start = System.nanoTime()
+
+            repeat(ITERATIONS) { decode(mapper, bytes) }
+            logger.info("{} x {} in {}: {} bytes, decode {} us", dto, values.size, format, bytes.size,
+                        (System.nanoTime() - start) / ITERATIONS / 1_000)
+        }
+        assertThat(sizes["cbor"]!!.size).isLessThan(sizes["json"]!!.size)
+        assertThat(sizes["smile"]!!.size).isLessThan(sizes["json"]!!.size)
+    }
+
+    companion object {
+        const val WARM_UP = 2_000
+        const val ITERATIONS = 5_000
+    }
+}
@@ -0,0 +1,168 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CacheRSocketControllerTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.web
+
+import com.ailegorreta.cacheservice.config.RSocketSecurityConfig
+import com.ailegorreta.cacheservice.controller.CacheRSocketController
+import com.ailegorreta.cacheservice.model.SystemRate
+import com.ailegorreta.cacheservice.service.CacheService
+import io.mockk.coEvery
+import io.mockk.every
+import io.mockk.mockk
+import io.rsocket.core.RSocketServer
+import io.rsocket.metadata.WellKnownMimeType
+import io.rsocket.transport.netty.server.TcpServerTransport
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import org.springframework.context.annotation.AnnotationConfigApplicationContext
+import org.springframework.dao.DataRetrievalFailureException
+import org.springframework.http.codec.cbor.Jackson2CborDecoder
+import org.springframework.http.codec.cbor.Jackson2CborEncoder
+import org.springframework.messaging.rsocket.RSocketRequester
+import org.springframework.messaging.rsocket.RSocketStrategies
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler
+import org.springframework.security.oauth2.jwt.Jwt
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder
+import org.springframework.security.rsocket.core.PayloadSocketAcceptorInterceptor
+import org.springframework.security.rsocket.metadata.BearerTokenAuthenticationEncoder
+import org.springframework.security.rsocket.metadata.BearerTokenMetadata
+import org.springframework.util.MimeTypeUtils
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.math.BigDecimal
+import java.time.Duration
+import java.time.LocalDate
+import java.util.function.Supplier
+
+/**
+ * Unit tests for the RSocket routes, with the handlers called directly or through a local RSocket server.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class CacheRSocketControllerTest {
+    private val cacheService = mockk<CacheService>()
+    private val controller = CacheRSocketController(cacheService, mockk(relaxed = true))
+
+    @Test
+    fun `the batch of rates keeps the order and a bad name does not end it`() {
+        every { cacheService.getSystemRate("TIIE") } returns
+                Mono.delay(Duration.ofMillis(50)).map { SystemRate("1", "TIIE", BigDecimal("11.25")) }
+        every { cacheService.getSystemRate("NOT_A_RATE") } returns
+                Mono.error(DataRetrievalFailureException("No variable NOT_A_RATE found in SystemRate"))
+        every { cacheService.getSystemRate("UDI") } returns Mono.just(SystemRate("2", "UDI", BigDecimal("8.1")))
+
+        val rates = controller.systemRates(Flux.just("TIIE", "NOT_A_RATE", "UDI")).collectList().block()!!
+
+        assertThat(rates.map { it.name }).containsExactly("TIIE", "NOT_A_RATE", "UDI")
+        assertThat(rates.map { it.rate }).containsExactly(BigDecimal("11.25"), BigDecimal.ZERO, BigDecimal("8.1"))
+    }
+
+    @Test
+    fun `the calendar routes select the calendar`() {
+        val day = LocalDate.of(2026, 11, 26)
+        val strategies = RSocketStrategies.builder()
+                                          .encoders { it.add(Jackson2CborEncoder()) }
+                                          .decoders { it.add(Jackson2CborDecoder()) }
+                                          .build()
+        val handler = RSocketMessageHandler().apply {
+            rSocketStrategies = strategies
+            setHandlers(listOf(controller))
+            afterPropertiesSet()
+        }
+        val server = RSocketServer.create(handler.responder()).bind(TcpServerTransport.create("localhost", 0)).block()!!
+        val requester = RSocketRequester.builder().rsocketStrategies(strategies).tcp("localhost", server.address().port)
+
+        coEvery { cacheService.isHoliday(day, null) } returns false
+        coEvery { cacheService.isHoliday(day, "US") } returns true
+        coEvery { cacheService.isHoliday(day, "system,US") } returns true
+        coEvery { cacheService.getDay(1, "US") } returns day.plusDays(1)
+        coEvery { cacheService.addDay(1, "US") } returns day.plusDays(1)
+
+        try {
+            assertThat(requester.route("cache.holiday").data(day).retrieveMono(Boolean::class.java).block()).isFalse
+            assertThat(requester.route("cache.holiday.US").data(day).retrieveMono(Boolean::class.java).block()).isTrue
+            assertThat(requester.route("cache.holidays.system,US").data(Flux.just(day, day))
+                                .retrieveFlux(Boolean::class.java).collectList().block()).containsExactly(true, true)
+            assertThat(requester.route("cache.day.US").data(1).retrieveMono(LocalDate::class.java).block())
+                    .isEqualTo(day.plusDays(1))
+            assertThat(requester.route("cache.addday.US").data(1).retrieveMono(LocalDate::class.java).block())
+                    .isEqualTo(day.plusDays(1))
+        } finally {
+            requester.dispose()
+            server.dispose()
+        }
+    }
+
+    @Test
+    fun `the calendar routes need the cache scopes`() {
+        val day = LocalDate.of(2026, 11, 26)
+        val strategies = RSocketStrategies.builder()
+                                          .encoders { it.add(Jackson2CborEncoder()) }
+                                          .decoders { it.add(Jackson2CborDecoder()) }
+                                          .build()
+        val jwtDecoder = ReactiveJwtDecoder { token ->
+            Mono.just(Jwt.withTokenValue(token)
+                         .header("alg", "none")
+                         .claim("scope", if (token == "scoped") "acme.facultad" else "openid")
+                         .build())
+        }
+        val context = AnnotationConfigApplicationContext().apply {
+            registerBean(RSocketStrategies::class.java, Supplier { strategies })
+            registerBean(ReactiveJwtDecoder::class.java, Supplier { jwtDecoder })
+            registerBean(CacheRSocketController::class.java, Supplier { controller })
+            register(RSocketSecurityConfig::class.java)
+            refresh()
+        }
+        val interceptor = context.getBean(PayloadSocketAcceptorInterceptor::class.java)
+        val server = RSocketServer.create(context.getBean(RSocketMessageHandler::class.java).responder())
+                                  .interceptors { it.forSocketAcceptor(interceptor) }
+                                  .bind(TcpServerTransport.create("localhost", 0))
+                                  .block()!!
+        val authentication = MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.string)
+        val clientStrategies = strategies.mutate().encoder(BearerTokenAuthenticationEncoder()).build()
+        fun requester(token: String) =
+            RSocketRequester.builder()
+                            .rsocketStrategies(clientStrategies)
+                            .setupMetadata(BearerTokenMetadata(token), authentication)
+                            .tcp("localhost", server.address().port)
+        val scoped = requester("scoped")
+        val unscoped = requester("unscoped")
+
+        coEvery { cacheService.isHoliday(day, "US") } returns true
+
+        try {
+            assertThat(scoped.route("cache.holiday.US").data(day).retrieveMono(Boolean::class.java).block()).isTrue
+            assertThatThrownBy {
+                unscoped.route("cache.holiday.US").data(day).retrieveMono(Boolean::class.java).block()
+            }.hasMessageContaining("Access Denied")
+        } finally {
+            scoped.dispose()
+            unscoped.dispose()
+            server.dispose()
+            context.close()
+        }
+    }
+}
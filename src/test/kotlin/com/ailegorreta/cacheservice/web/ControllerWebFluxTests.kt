@@ -26,6 +26,7 @@ import com.ailegorreta.cacheservice.EnableTestContainers
 import com.ailegorreta.cacheservice.config.ResourceServerConfig
 import com.ailegorreta.cacheservice.config.ServiceConfig
 import com.ailegorreta.cacheservice.controller.CacheController
+import com.ailegorreta.cacheservice.controller.EncodedCatalogCache
 import com.ailegorreta.cacheservice.model.DayType
 import com.ailegorreta.cacheservice.model.DocumentType
 import com.ailegorreta.cacheservice.model.SystemDate
@@ -58,6 +59,7 @@ import org.springframework.test.context.ActiveProfiles
 import org.springframework.test.web.reactive.server.EntityExchangeResult
 import org.springframework.test.web.reactive.server.WebTestClient
 import org.springframework.web.util.UriComponentsBuilder
+import reactor.core.publisher.Mono
 import reactor.test.StepVerifier
 import java.math.BigDecimal
 import java.time.LocalDate
@@ -81,7 +83,7 @@ import java.util.*
 @WebFluxTest(CacheController::class)
 @EnableTestContainers
 @ExtendWith(MockitoExtension::class)
-@Import(ServiceConfig::class, ResourceServerConfig::class, CacheController::class)
+@Import(ServiceConfig::class, ResourceServerConfig::class, CacheController::class, EncodedCatalogCache::class)
 @ActiveProfiles("integration-tests-webflux")
 internal class ControllerWebFluxTests : HasLogger {
     @Autowired
@@ -143,7 +145,7 @@ internal class ControllerWebFluxTests : HasLogger {
         val varName = "TIIF"
 
         mockkObject(paramService!!)
-        every { runBlocking { paramService.getFromParamsSystemRate(varName) }} returns SystemRate("1", varName, BigDecimal.TEN, 0)
+        every { runBlocking { paramService.getFromParamsSystemRate(varName) }} returns Mono.just(SystemRate("1", varName, BigDecimal.TEN, 0))
 
         logger.debug("Read 'TIIF' from the param service")
         var res = webTestClient!!.mutateWith(SecurityMockServerConfigurers.mockJwt().authorities(
@@ -0,0 +1,119 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  EncodedCatalogCacheTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.web
+
+import com.ailegorreta.cacheservice.config.CodecConfig
+import com.ailegorreta.cacheservice.controller.EncodedCatalogCache
+import com.ailegorreta.cacheservice.controller.EncodedCatalogCache.EncodedCatalog
+import com.ailegorreta.cacheservice.model.DocumentType
+import com.fasterxml.jackson.databind.ObjectMapper
+import kotlinx.coroutines.runBlocking
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.springframework.http.HttpHeaders
+import org.springframework.http.MediaType
+import java.util.zip.GZIPInputStream
+import java.util.zip.InflaterInputStream
+
+/**
+ * Unit tests for the pre-encoded catalog responses.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class EncodedCatalogCacheTest {
+    private val documents = (1..50).map { DocumentType("$it", "Documento $it", "12m", 0) }
+
+    @Test
+    fun `the catalog is encoded once per generation`(): Unit = runBlocking {
+        val cache = EncodedCatalogCache(ObjectMapper())
+        var loads = 0
+        val load: suspend () -> Any = { loads++; documents }
+
+        val first = cache.get("DOCUMENT_TYPE", MediaType.APPLICATION_JSON, 1L, load)
+
+        assertThat(cache.get("DOCUMENT_TYPE", MediaType.APPLICATION_JSON, 1L, load)).isSameAs(first)
+        assertThat(loads).isEqualTo(1)
+        assertThat(cache.get("DOCUMENT_TYPE", MediaType.APPLICATION_JSON, 2L, load).generation).isEqualTo(2L)
+        assertThat(loads).isEqualTo(2)
+    }
+
+    @Test
+    fun `the variant follows the accept encoding`() {
+        val encoded = EncodedCatalog.encode(1L, MediaType.APPLICATION_JSON, ObjectMapper().writeValueAsBytes(documents))
+
+        val gzip = encoded.response("deflate;q=0.5, gzip;q=0.8")
+        assertThat(gzip.headers.getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip")
+        assertThat(GZIPInputStream(gzip.body!!.inputStream()).readAllBytes()).isEqualTo(encoded.identity)
+
+        val deflate = encoded.response("gzip;q=0, deflate")
+        assertThat(deflate.headers.getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("deflate")
+        assertThat(InflaterInputStream(deflate.body!!.inputStream()).readAllBytes()).isEqualTo(encoded.identity)
+
+        val identity = encoded.response(null)
+        assertThat(identity.headers.getFirst(HttpHeaders.CONTENT_ENCODING)).isNull()
+        assertThat(identity.body).isSameAs(encoded.identity)
+        assertThat(encoded.response("br").body).isSameAs(encoded.identity)
+        assertThat(encoded.response("gzip;q=0.5, identity").body).isSameAs(encoded.identity)  // q-value first
+        assertThat(encoded.response("gzip, *;q=0").headers.getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip")
+    }
+
+    @Test
+    fun `the smaller variant is sent between the ones with the same q-value`() {
+        val encoded = EncodedCatalog.encode(1L, MediaType.APPLICATION_JSON, ObjectMapper().writeValueAsBytes(documents))
+        val smaller = if (encoded.gzip.size <= encoded.deflate.size) "gzip" else "deflate"
+
+        assertThat(encoded.response("gzip, deflate").headers.getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo(smaller)
+        assertThat(encoded.response("deflate, gzip").headers.getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo(smaller)
+
+        val tiny = EncodedCatalog.encode(1L, MediaType.APPLICATION_JSON, "[]".toByteArray())
+
+        assertThat(tiny.response("gzip, deflate").body).isSameAs(tiny.identity)   // compressed is bigger
+    }
+
+    @Test
+    fun `empty and fallback loads are not cached`(): Unit = runBlocking {
+        val cache = EncodedCatalogCache(ObjectMapper())
+        var loads = 0
+
+        cache.get("DOCUMENT_TYPE", MediaType.APPLICATION_JSON, 1L) { loads++; emptyList<DocumentType>() }
+        cache.get("DOCUMENT_TYPE", MediaType.APPLICATION_JSON, 1L) { loads++; EncodedCatalogCache.Uncached(documents) }
+        val current = cache.get("DOCUMENT_TYPE", MediaType.APPLICATION_JSON, 1L) { loads++; documents }
+
+        assertThat(cache.get("DOCUMENT_TYPE", MediaType.APPLICATION_JSON, 1L) { loads++; documents }).isSameAs(current)
+        assertThat(loads).isEqualTo(3)
+    }
+
+    @Test
+    fun `the media type follows the accept header`() {
+        val cache = EncodedCatalogCache(ObjectMapper())
+
+        assertThat(cache.mediaType(null)).isEqualTo(MediaType.APPLICATION_JSON)
+        assertThat(cache.mediaType("*/*")).isEqualTo(MediaType.APPLICATION_JSON)
+        assertThat(cache.mediaType("application/cbor")).isEqualTo(MediaType.APPLICATION_CBOR)
+        assertThat(cache.mediaType("application/json;q=0.5, application/x-jackson-smile"))
+                .isEqualTo(CodecConfig.APPLICATION_SMILE)
+        assertThat(cache.mediaType("text/html")).isEqualTo(MediaType.APPLICATION_JSON)
+    }
+}
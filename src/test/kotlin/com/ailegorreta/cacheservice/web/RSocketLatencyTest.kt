@@ -0,0 +1,151 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RSocketLatencyTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.cacheservice.web
+
+import com.ailegorreta.cacheservice.controller.CacheController
+import com.ailegorreta.cacheservice.controller.CacheRSocketController
+import com.ailegorreta.cacheservice.controller.EncodedCatalogCache
+import com.ailegorreta.cacheservice.model.SystemRate
+import com.ailegorreta.cacheservice.service.CacheService
+import com.ailegorreta.cacheservice.service.ChangeFeed
+import com.ailegorreta.commons.utils.HasLogger
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.mockk.every
+import io.mockk.mockk
+import io.rsocket.core.RSocketServer
+import io.rsocket.transport.netty.server.TcpServerTransport
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.springframework.context.annotation.AnnotationConfigApplicationContext
+import org.springframework.context.annotation.Configuration
+import org.springframework.http.codec.cbor.Jackson2CborDecoder
+import org.springframework.http.codec.cbor.Jackson2CborEncoder
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter
+import org.springframework.messaging.rsocket.RSocketRequester
+import org.springframework.messaging.rsocket.RSocketStrategies
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler
+import org.springframework.web.reactive.config.EnableWebFlux
+import org.springframework.web.reactive.function.client.WebClient
+import org.springframework.web.reactive.function.client.bodyToMono
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder
+import reactor.core.publisher.Mono
+import reactor.netty.http.server.HttpServer
+import java.math.BigDecimal
+import java.util.function.Supplier
+
+/**
+ * Latency of a system rate lookup over RSocket (cache.sysvar) compared with the REST call (/cache/sysvar).
+ *
+ * Both servers run in this JVM with a mocked CacheService, so the numbers are just the transport and codec cost
+ * (the JWT validation per REST call is not included). The numbers are logged.
+ *
+ * @project cache-service
+ * @author rlh
+ * @date October 2026
+ */
+internal class RSocketLatencyTest : HasLogger {
+
+    @Configuration(proxyBeanMethods = false)
+    @EnableWebFlux
+    class WebConfig
+
+    @Test
+    fun `compare the latency of RSocket and REST`() {
+        val cacheService = mockk<CacheService>()
+        val changeFeed = mockk<ChangeFeed>(relaxed = true)
+
+        every { cacheService.getSystemRate(any()) } returns Mono.just(SystemRate("1", "TIIE", BigDecimal("11.25"), 0))
+
+        // RSocket server and requester
+        val strategies = RSocketStrategies.builder()
+                                          .encoders { it.add(Jackson2CborEncoder()) }
+                                          .decoders { it.add(Jackson2CborDecoder()) }
+                                          .build()
+        val handler = RSocketMessageHandler().apply {
+            rSocketStrategies = strategies
+            setHandlers(listOf(CacheRSocketController(cacheService, changeFeed)))
+            afterPropertiesSet()
+        }
+        val rsocketServer = RSocketServer.create(handler.responder())
+                                         .bind(TcpServerTransport.create("localhost", 0))
+                                         .block()!!
+        val requester = RSocketRequester.builder()
+                                        .rsocketStrategies(strategies)
+                                        .tcp("localhost", rsocketServer.address().port)
+
+        // REST server and client
+        val context = AnnotationConfigApplicationContext().apply {
+            register(WebConfig::class.java)
+            registerBean(CacheController::class.java, Supplier { CacheController(cacheService,
+                                                                                 EncodedCatalogCache(ObjectMapper()),
+                                                                                 changeFeed) })
+            refresh()
+        }
+        val httpServer = HttpServer.create()
+                                   .host("localhost")
+                                   .port(0)
+                                   .handle(ReactorHttpHandlerAdapter(WebHttpHandlerBuilder.applicationContext(context).build()))
+                                   .bindNow()
+        val webClient = WebClient.create("http://localhost:${httpServer.port()}")
+
+        try {
+            val rsocket = measure("RSocket") {
+                requester.route("cache.sysvar").data("TIIE").retrieveMono(BigDecimal::class.java).block()!!
+            }
+            val rest = measure("REST") {
+                webClient.get().uri("/cache/sysvar?nombre=TIIE").retrieve().bodyToMono<BigDecimal>().block()!!
+            }
+
+            logger.info("System rate lookup, RSocket avg {} us p99 {} us, REST avg {} us p99 {} us",
+                        rsocket.first, rsocket.second, rest.first, rest.second)
+        } finally {
+            requester.dispose()
+            rsocketServer.dispose()
+            httpServer.disposeNow()
+            context.close()
+        }
+    }
+
+    /**
+     * Average and p99 (microseconds) of sequential calls.
+     */
+    private fun measure(name: String, call: () -> BigDecimal): Pair<Long, Long> {
+        repeat(WARM_UP) { assertThat(call()).isEqualByComparingTo("11.25") }
+
+        val latencies = LongArray(ITERATIONS) {
+            val start = System.nanoTime()
+
+            call()
+            (System.nanoTime() - start) / 1_000
+        }.apply { sort() }
+
+        logger.debug("{} calls: {}", name, ITERATIONS)
+
+        return latencies.average().toLong() to latencies[(ITERATIONS * 0.99).toInt()]
+    }
+
+    companion object {
+        const val WARM_UP = 2_000
+        const val ITERATIONS = 5_000
+    }
+}